@@ -4,6 +4,7 @@ import java.util.List;
 
 import com.ruoyi.common.utils.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.apache.shiro.session.UnknownSessionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,6 +18,7 @@ import com.ruoyi.common.enums.BusinessType;
 import com.ruoyi.common.enums.OnlineStatus;
 import com.ruoyi.framework.shiro.session.OnlineSession;
 import com.ruoyi.framework.shiro.session.OnlineSessionDAO;
+import com.ruoyi.framework.shiro.session.SessionStore;
 import com.ruoyi.framework.util.ShiroUtils;
 import com.ruoyi.common.page.TableDataInfo;
 import com.ruoyi.system.domain.SysUserOnline;
@@ -36,10 +38,14 @@ public class SysUserOnlineController extends BaseController {
 
     private final OnlineSessionDAO onlineSessionDAO;
 
+    private final SessionStore sessionStore;
+
     @Autowired
-    public SysUserOnlineController(SysUserOnlineServiceImpl userOnlineService, OnlineSessionDAO onlineSessionDAO) {
+    public SysUserOnlineController(SysUserOnlineServiceImpl userOnlineService, OnlineSessionDAO onlineSessionDAO,
+                                   SessionStore sessionStore) {
         this.userOnlineService = userOnlineService;
         this.onlineSessionDAO = onlineSessionDAO;
+        this.sessionStore = sessionStore;
     }
 
     @RequiresPermissions("monitor:online:view")
@@ -58,6 +64,16 @@ public class SysUserOnlineController extends BaseController {
         return getDataTable(list);
     }
 
+    /**
+     * 会话存储指标 堆外存储包括内存占用、碎片率和各级别slab的使用情况
+     */
+    @RequiresPermissions("monitor:online:list")
+    @GetMapping("/storeMetrics")
+    @ResponseBody
+    public AjaxResult storeMetrics() {
+        return AjaxResult.success().put("data", sessionStore.getMetrics());
+    }
+
     @RequiresPermissions("monitor:online:batchForceLogout")
     @Log(title = "在线用户", businessType = BusinessType.FORCE)
     @PostMapping("/batchForceLogout")
@@ -92,7 +108,13 @@ public class SysUserOnlineController extends BaseController {
         if (online == null) {
             return "用户已下线";
         }
-        OnlineSession onlineSession = (OnlineSession) onlineSessionDAO.readSession(online.getSessionId());
+        OnlineSession onlineSession;
+        try {
+            onlineSession = (OnlineSession) onlineSessionDAO.readSession(online.getSessionId());
+        } catch (UnknownSessionException e) {
+            // 会话已不在内存注册表中
+            onlineSession = null;
+        }
         if (onlineSession == null) {
             return "用户已下线";
         }
@@ -1,9 +1,6 @@
 package com.ruoyi.web.controller.system;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
-import javax.annotation.Resource;
-import javax.imageio.ImageIO;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -11,12 +8,14 @@ import javax.servlet.http.HttpSession;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 import com.google.code.kaptcha.Constants;
-import com.google.code.kaptcha.Producer;
+import com.ruoyi.framework.shiro.service.SysCaptchaService;
+import com.ruoyi.framework.shiro.service.SysCaptchaTokenService;
 import com.ruoyi.framework.web.base.BaseController;
 
 /**
@@ -30,42 +29,46 @@ public class SysCaptchaController extends BaseController {
 
     private static final Logger log = LoggerFactory.getLogger(SysCaptchaController.class);
 
-    @Resource(name = "captchaProducer")
-    private Producer captchaProducer;
+    private final SysCaptchaService captchaService;
 
-    @Resource(name = "captchaProducerMath")
-    private Producer captchaProducerMath;
+    private final SysCaptchaTokenService captchaTokenService;
+
+    @Autowired
+    public SysCaptchaController(SysCaptchaService captchaService, SysCaptchaTokenService captchaTokenService) {
+        this.captchaService = captchaService;
+        this.captchaTokenService = captchaTokenService;
+    }
 
     /**
-     * 验证码生成
+     * 验证码生成 图片已由后台预先生成，这里只输出编码后的字节
+     * 令牌模式下答案签名后写入Cookie，不创建会话
      */
     @GetMapping(value = "/captchaImage")
     public ModelAndView getKaptchaImage(HttpServletRequest request, HttpServletResponse response) {
         ServletOutputStream out = null;
         try {
-            HttpSession session = request.getSession();
             response.setDateHeader("Expires", 0);
             response.setHeader("Cache-Control", "no-store, no-cache, must-revalidate");
             response.addHeader("Cache-Control", "post-check=0, pre-check=0");
             response.setHeader("Pragma", "no-cache");
             response.setContentType("image/jpeg");
 
-            String type = request.getParameter("type");
-            String capStr;
-            String code = null;
-            BufferedImage bi = null;
-            if ("math".equals(type)) {
-                String capText = captchaProducerMath.createText();
-                capStr = capText.substring(0, capText.lastIndexOf('@'));
-                code = capText.substring(capText.lastIndexOf('@') + 1);
-                bi = captchaProducerMath.createImage(capStr);
-            } else if ("char".equals(type)) {
-                capStr = code = captchaProducer.createText();
-                bi = captchaProducer.createImage(capStr);
+            SysCaptchaService.Captcha captcha = captchaService.take(request.getParameter("type"));
+            if (captchaTokenService.isTokenMode()) {
+                if (captcha == null) {
+                    return null;
+                }
+                captchaTokenService.issue(captcha.getCode(), response);
+            } else {
+                HttpSession session = request.getSession();
+                session.setAttribute(Constants.KAPTCHA_SESSION_KEY, captcha != null ? captcha.getCode() : null);
+                if (captcha == null) {
+                    return null;
+                }
             }
-            session.setAttribute(Constants.KAPTCHA_SESSION_KEY, code);
+            response.setContentLength(captcha.getImage().length);
             out = response.getOutputStream();
-            ImageIO.write(bi, "jpg", out);
+            out.write(captcha.getImage());
             out.flush();
 
         } catch (Exception e) {
@@ -81,4 +84,4 @@ public class SysCaptchaController extends BaseController {
         }
         return null;
     }
-}
\ No newline at end of file
+}
@@ -66,8 +66,9 @@ public class SysMenuController extends BaseController {
         if (menuService.selectCountRoleMenuByMenuId(menuId) > 0) {
             return error(1, "菜单已分配,不允许删除");
         }
-        ShiroUtils.clearCachedAuthorizationInfo();
-        return toAjax(menuService.deleteMenuById(menuId));
+        int rows = menuService.deleteMenuById(menuId);
+        ShiroUtils.refreshCachedAuthorizationInfo();
+        return toAjax(rows);
     }
 
     /**
@@ -96,8 +97,9 @@ public class SysMenuController extends BaseController {
     @ResponseBody
     public AjaxResult addSave(SysMenu menu) {
         menu.setCreateBy(ShiroUtils.getLoginName());
-        ShiroUtils.clearCachedAuthorizationInfo();
-        return toAjax(menuService.insertMenu(menu));
+        int rows = menuService.insertMenu(menu);
+        ShiroUtils.refreshCachedAuthorizationInfo();
+        return toAjax(rows);
     }
 
     /**
@@ -118,8 +120,9 @@ public class SysMenuController extends BaseController {
     @ResponseBody
     public AjaxResult editSave(SysMenu menu) {
         menu.setUpdateBy(ShiroUtils.getLoginName());
-        ShiroUtils.clearCachedAuthorizationInfo();
-        return toAjax(menuService.updateMenu(menu));
+        int rows = menuService.updateMenu(menu);
+        ShiroUtils.refreshCachedAuthorizationInfo();
+        return toAjax(rows);
     }
 
     /**
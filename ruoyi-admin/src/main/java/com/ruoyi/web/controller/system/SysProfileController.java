@@ -17,6 +17,7 @@ import com.ruoyi.common.annotation.Log;
 import com.ruoyi.common.base.AjaxResult;
 import com.ruoyi.common.config.Global;
 import com.ruoyi.common.enums.BusinessType;
+import com.ruoyi.framework.shiro.realm.SysUserPrincipal;
 import com.ruoyi.framework.shiro.service.SysPasswordService;
 import com.ruoyi.framework.util.FileUploadUtils;
 import com.ruoyi.framework.util.ShiroUtils;
@@ -55,7 +56,7 @@ public class SysProfileController extends BaseController {
      */
     @GetMapping()
     public String profile(ModelMap mmap) {
-        SysUser user = getSysUser();
+        SysUser user = SysUserPrincipal.copyOf(getSysUser());
         user.setSex(dictDataService.selectDictLabel("sys_user_sex", user.getSex()));
         mmap.put("user", user);
         mmap.put("roleGroup", userService.selectUserRoleGroup(user.getUserId()));
@@ -106,7 +106,7 @@ public class SysRoleController extends BaseController {
     @ResponseBody
     public AjaxResult editSave(SysRole role) {
         role.setUpdateBy(ShiroUtils.getLoginName());
-        ShiroUtils.clearCachedAuthorizationInfo();
+        ShiroUtils.refreshCachedAuthorizationInfo(role.getRoleId());
         return toAjax(roleService.updateRole(role));
     }
 
@@ -1,7 +1,9 @@
 package com.ruoyi.web.core.config;
 
+import com.ruoyi.web.core.interceptor.AccessLogInterceptor;
 import com.ruoyi.web.core.interceptor.LoginAuthInterceptor;
 import com.ruoyi.web.core.resolver.LoginUserArgumentResolver;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -20,8 +22,20 @@ import java.util.List;
 @Configuration
 public class InterceptorConfig implements WebMvcConfigurer {
 
+    /**
+     * 是否记录访问日志
+     */
+    @Value("${ruoyi.accessLog.enabled:true}")
+    private boolean accessLogEnabled;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        //访问日志 不记录静态资源
+        if (accessLogEnabled) {
+            registry.addInterceptor(new AccessLogInterceptor())
+                    .excludePathPatterns("/favicon.ico", "/ruoyi.png", "/css/**", "/docs/**", "/fonts/**", "/img/**",
+                            "/ajax/**", "/js/**", "/ruoyi/**", "/file/**", "/profile/**", "/webjars/**", "/swagger-resources/**");
+        }
         //登录拦截
         registry.addInterceptor(new LoginAuthInterceptor());
     }
@@ -0,0 +1,21 @@
+package com.ruoyi.web.core.interceptor;
+
+import com.ruoyi.framework.util.LogUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 访问日志拦截器 在进入处理方法前记录访问日志，静态资源在注册时排除
+ *
+ * @author ruoyi
+ */
+public class AccessLogInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        LogUtils.logAccess(request);
+        return true;
+    }
+}
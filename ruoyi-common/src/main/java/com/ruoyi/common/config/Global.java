@@ -66,6 +66,22 @@ public class Global {
         return value;
     }
 
+    /**
+     * 获取整数配置 未配置或格式错误时返回默认值
+     */
+    private static int getInt(String key, int defaultValue) {
+        String value = getConfig(key);
+        if (StringUtils.isEmpty(value) || "null".equals(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("全局配置格式错误 {}={}" , key, value);
+            return defaultValue;
+        }
+    }
+
     /**
      * 获取项目名称
      */
@@ -95,6 +111,42 @@ public class Global {
         return Boolean.valueOf(getConfig("ruoyi.addressEnabled"));
     }
 
+    /**
+     * 获取离线IP地址库文件 未配置时返回null
+     */
+    public static String getAddressDatabase() {
+        String path = getConfig("ruoyi.addressDatabase");
+        return StringUtils.isEmpty(path) || "null".equals(path) ? null : path;
+    }
+
+    /**
+     * 离线IP地址库未收录时是否查询在线接口
+     */
+    public static Boolean isAddressRemoteFallback() {
+        return Boolean.valueOf(getConfig("ruoyi.addressRemoteFallback"));
+    }
+
+    /**
+     * 获取http连接超时 单位毫秒
+     */
+    public static int getHttpConnectTimeout() {
+        return getInt("ruoyi.http.connectTimeout", 3000);
+    }
+
+    /**
+     * 获取http读取超时 单位毫秒
+     */
+    public static int getHttpReadTimeout() {
+        return getInt("ruoyi.http.readTimeout", 5000);
+    }
+
+    /**
+     * 获取每个主机同时进行的最大http请求数
+     */
+    public static int getHttpMaxPerHost() {
+        return getInt("ruoyi.http.maxPerHost", 16);
+    }
+
     /**
      * 获取文件上传路径
      */
@@ -0,0 +1,492 @@
+package com.ruoyi.common.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * 审计日志的本地追加日志文件 写入数据库之前先追加到这里，由回放线程按批次写入数据库
+ * 日志分为固定大小的段文件，通过内存映射写入，写入只是一次内存复制；后台线程定期刷盘，多次写入共用一次刷盘
+ * 切换段时写入线程不刷盘，写满的段交给后台线程刷盘
+ * 进程崩溃时已写入映射内存的记录不会丢失，操作系统崩溃时最多丢失一个刷盘间隔内的记录
+ * 记录格式为 总长度(4字节) 校验和(4字节) 类型(1字节) 内容，段内长度为0表示尚未写入，为-1表示本段结束
+ * 位置用 段序号 << 32 | 段内偏移 表示，回放完成的位置保存在检查点文件中，重启后从检查点继续回放
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public class AuditJournal implements Closeable {
+
+    /**
+     * 操作日志
+     */
+    public static final byte TYPE_OPER_LOG = 1;
+
+    /**
+     * 登录日志
+     */
+    public static final byte TYPE_LOGININFOR = 2;
+
+    /**
+     * 定时任务日志
+     */
+    public static final byte TYPE_JOB_LOG = 3;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final int HEADER_SIZE = 9;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private final File dir;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final long flushIntervalMillis;
+
+    private final Object lock = new Object();
+
+    private final LongAdder appended = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder flushes = new LongAdder();
+
+    /**
+     * 当前写入的段 由lock保护
+     */
+    private int writeSegment;
+
+    private MappedByteBuffer writeBuffer;
+
+    private int writeOffset;
+
+    private boolean dirty;
+
+    /**
+     * 已写满、尚未刷盘的段 由lock保护
+     */
+    private List<MappedByteBuffer> retired = new ArrayList<>();
+
+    /**
+     * 已写入的位置 读取不超过该位置
+     */
+    private volatile long writePosition;
+
+    private volatile long checkpoint;
+
+    /**
+     * 最早的未回放段
+     */
+    private volatile int firstSegment;
+
+    /**
+     * 当前读取的段 只由回放线程使用
+     */
+    private int readSegment = -1;
+
+    private MappedByteBuffer readBuffer;
+
+    private volatile boolean closed;
+
+    private final Thread flusher;
+
+    /**
+     * 打开日志目录 上次未正常关闭时截断最后一个段中不完整的记录，并从新的段开始写入
+     *
+     * @param dir                 日志目录
+     * @param segmentSize         段文件大小 单位字节
+     * @param maxSegments         最多保留的未回放段数 超过后拒绝写入
+     * @param flushIntervalMillis 刷盘间隔 单位毫秒
+     */
+    public AuditJournal(File dir, int segmentSize, int maxSegments, long flushIntervalMillis) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(2, maxSegments);
+        this.flushIntervalMillis = flushIntervalMillis;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("create journal dir failed: " + dir);
+        }
+        int[] segments = listSegments();
+        int last = segments.length == 0 ? -1 : segments[segments.length - 1];
+        if (last >= 0) {
+            recover(last);
+        }
+        long saved = readCheckpoint();
+        int first = segments.length == 0 ? 0 : segments[0];
+        if (saved < 0 || segmentOf(saved) < first) {
+            saved = position(first, 0);
+        }
+        for (int segment : segments) {
+            if (segment < segmentOf(saved)) {
+                deleteSegment(segment);
+            }
+        }
+        this.checkpoint = saved;
+        this.firstSegment = Math.max(first, segmentOf(saved));
+        synchronized (lock) {
+            openSegment(last + 1);
+        }
+        this.flusher = new Thread(this::flushLoop, "audit-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        log.info("audit journal opened at [{}], replay from segment {} offset {}.", dir, segmentOf(saved), offsetOf(saved));
+    }
+
+    /**
+     * 追加记录
+     *
+     * @param type    记录类型
+     * @param payload 记录内容
+     * @return 日志已关闭、已满或记录超过段大小时返回false
+     */
+    public boolean append(byte type, byte[] payload) {
+        int size = HEADER_SIZE + payload.length;
+        // 每段末尾保留4字节写入结束标记
+        if (size + 4 > segmentSize) {
+            rejected.increment();
+            log.error("journal record of [{}] bytes exceeds the segment size.", size);
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        int checksum = (int) crc.getValue();
+        synchronized (lock) {
+            if (closed) {
+                rejected.increment();
+                return false;
+            }
+            if (writeOffset + size + 4 > segmentSize) {
+                if (writeSegment - firstSegment + 1 >= maxSegments) {
+                    rejected.increment();
+                    return false;
+                }
+                try {
+                    roll();
+                } catch (IOException e) {
+                    rejected.increment();
+                    log.error("roll journal segment error.", e);
+                    return false;
+                }
+            }
+            writeBuffer.putInt(writeOffset + 4, checksum);
+            writeBuffer.put(writeOffset + 8, type);
+            writeBuffer.position(writeOffset + HEADER_SIZE);
+            writeBuffer.put(payload);
+            // 最后写入长度 长度不为0即表示记录完整
+            writeBuffer.putInt(writeOffset, size);
+            writeOffset += size;
+            writePosition = position(writeSegment, writeOffset);
+            dirty = true;
+        }
+        appended.increment();
+        return true;
+    }
+
+    /**
+     * 读取记录 只能由一个回放线程调用
+     *
+     * @param from       开始位置
+     * @param maxRecords 最多读取的记录数
+     * @param records    读取的记录
+     * @return 读取结束的位置
+     */
+    public long read(long from, int maxRecords, List<JournalRecord> records) throws IOException {
+        long position = from;
+        while (records.size() < maxRecords && !closed) {
+            long limit = writePosition;
+            if (position >= limit) {
+                break;
+            }
+            int segment = segmentOf(position);
+            int offset = offsetOf(position);
+            MappedByteBuffer buffer = readBuffer(segment);
+            if (buffer == null) {
+                position = position(segment + 1, 0);
+                continue;
+            }
+            int capacity = buffer.capacity();
+            int size = offset + 4 <= capacity ? buffer.getInt(offset) : END_OF_SEGMENT;
+            if (size == END_OF_SEGMENT) {
+                position = position(segment + 1, 0);
+                continue;
+            }
+            if (size == 0 && segment == segmentOf(limit)) {
+                break;
+            }
+            if (size < HEADER_SIZE || offset + size > capacity || checksum(buffer, offset, size) != buffer.getInt(offset + 4)) {
+                log.error("journal segment {} is corrupt at offset {}, skip the rest of it.", segment, offset);
+                position = position(segment + 1, 0);
+                continue;
+            }
+            byte[] payload = new byte[size - HEADER_SIZE];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + HEADER_SIZE);
+            view.get(payload);
+            position = position(segment, offset + size);
+            records.add(new JournalRecord(buffer.get(offset + 8), payload, position));
+        }
+        return position;
+    }
+
+    /**
+     * 保存检查点 并删除检查点之前的段
+     *
+     * @param position 已回放完成的位置
+     */
+    public void commit(long position) throws IOException {
+        File tmp = new File(dir, CHECKPOINT_FILE + TMP_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(file)) {
+            out.writeLong(position);
+            out.writeLong(~position);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp.toPath(), new File(dir, CHECKPOINT_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = position;
+        int segment = segmentOf(position);
+        for (int s = firstSegment; s < segment; s++) {
+            if (s == readSegment) {
+                readSegment = -1;
+                readBuffer = null;
+            }
+            deleteSegment(s);
+        }
+        if (segment > firstSegment) {
+            firstSegment = segment;
+        }
+    }
+
+    /**
+     * 已回放完成的位置
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * 各项指标
+     */
+    public Map<String, Object> getMetrics() {
+        long write = writePosition;
+        long done = checkpoint;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("dir", dir.getAbsolutePath());
+        metrics.put("segments", segmentOf(write) - firstSegment + 1);
+        metrics.put("maxSegments", maxSegments);
+        metrics.put("backlogBytes", (long) (segmentOf(write) - segmentOf(done)) * segmentSize + offsetOf(write) - offsetOf(done));
+        metrics.put("appended", appended.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("flushes", flushes.sum());
+        return metrics;
+    }
+
+    /**
+     * 刷盘后关闭 之后的写入都返回false
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            for (MappedByteBuffer buffer : retired) {
+                buffer.force();
+            }
+            retired.clear();
+            writeBuffer.force();
+        }
+    }
+
+    public static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    public static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private static long position(int segment, int offset) {
+        return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+            MappedByteBuffer buffer;
+            List<MappedByteBuffer> full;
+            synchronized (lock) {
+                if (!dirty) {
+                    continue;
+                }
+                dirty = false;
+                buffer = writeBuffer;
+                full = retired;
+                retired = new ArrayList<>();
+            }
+            // 刷盘不持有锁 刷盘期间的写入在下一次刷盘
+            for (MappedByteBuffer segment : full) {
+                segment.force();
+            }
+            buffer.force();
+            flushes.increment();
+        }
+    }
+
+    /**
+     * 结束当前段并打开下一个段 写满的段由刷盘线程在锁外刷盘，避免写入线程等待整段刷盘
+     */
+    private void roll() throws IOException {
+        writeBuffer.putInt(writeOffset, END_OF_SEGMENT);
+        MappedByteBuffer full = writeBuffer;
+        openSegment(writeSegment + 1);
+        retired.add(full);
+        dirty = true;
+        LockSupport.unpark(flusher);
+    }
+
+    private void openSegment(int segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "rw")) {
+            file.setLength(segmentSize);
+            writeBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        writeSegment = segment;
+        writeOffset = 0;
+        writePosition = position(segment, 0);
+    }
+
+    /**
+     * 找到最后一个段中最后一条完整的记录，在其后写入结束标记
+     */
+    private void recover(int segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "rw")) {
+            int capacity = (int) file.length();
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            int offset = 0;
+            while (offset + 4 <= capacity) {
+                int size = buffer.getInt(offset);
+                if (size < HEADER_SIZE || offset + size > capacity || checksum(buffer, offset, size) != buffer.getInt(offset + 4)) {
+                    break;
+                }
+                offset += size;
+            }
+            if (offset + 4 <= capacity) {
+                buffer.putInt(offset, END_OF_SEGMENT);
+                buffer.force();
+            }
+            log.info("recover journal segment {}, valid data ends at offset {}.", segment, offset);
+        }
+    }
+
+    private MappedByteBuffer readBuffer(int segment) throws IOException {
+        if (segment == readSegment) {
+            return readBuffer;
+        }
+        File file = segmentFile(segment);
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            readBuffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        readSegment = segment;
+        return readBuffer;
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, int size) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + HEADER_SIZE);
+        view.limit(offset + size);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private long readCheckpoint() {
+        File file = new File(dir, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long position = in.readLong();
+            if (in.readLong() == ~position) {
+                return position;
+            }
+            log.error("journal checkpoint [{}] is corrupt, replay from the first segment.", file);
+        } catch (IOException e) {
+            log.error("read journal checkpoint [{}] error, replay from the first segment.", file, e);
+        }
+        return -1;
+    }
+
+    private int[] listSegments() {
+        String[] names = dir.list((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (names == null) {
+            return new int[0];
+        }
+        int[] segments = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                segments[count] = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                count++;
+            } catch (NumberFormatException e) {
+                log.warn("ignore unknown journal file [{}].", name);
+            }
+        }
+        segments = Arrays.copyOf(segments, count);
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private void deleteSegment(int segment) {
+        File file = segmentFile(segment);
+        if (file.exists() && !file.delete()) {
+            log.warn("delete replayed journal segment [{}] failed.", file);
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(dir, String.format("%s%010d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,42 @@
+package com.ruoyi.common.journal;
+
+/**
+ * 日志文件中的一条记录
+ *
+ * @author ruoyi
+ */
+public final class JournalRecord {
+
+    private final byte type;
+
+    private final byte[] payload;
+
+    private final long nextPosition;
+
+    JournalRecord(byte type, byte[] payload, long nextPosition) {
+        this.type = type;
+        this.payload = payload;
+        this.nextPosition = nextPosition;
+    }
+
+    /**
+     * 记录类型
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * 记录内容
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * 下一条记录的位置 处理完本条记录后以此作为检查点
+     */
+    public long getNextPosition() {
+        return nextPosition;
+    }
+}
@@ -0,0 +1,194 @@
+package com.ruoyi.common.json;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+/**
+ * 有长度上限的JSON写入 写入固定容量的缓冲区，达到上限后停止生成
+ * 输出为紧凑格式，内容超出上限时结果与完整JSON截断到相同长度一致
+ * 支持字符串、数字、布尔、Map、集合和数组，其他对象按toString写为字符串
+ *
+ * @author ruoyi
+ */
+public final class BoundedJsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final char[] buffer;
+
+    private int length;
+
+    private boolean truncated;
+
+    public BoundedJsonWriter(int maxLength) {
+        this.buffer = new char[Math.max(0, maxLength)];
+    }
+
+    /**
+     * 序列化为JSON 超出上限的部分不生成
+     *
+     * @param value     对象
+     * @param maxLength 最大长度
+     * @return JSON字符串
+     */
+    public static String toJson(Object value, int maxLength) {
+        BoundedJsonWriter writer = new BoundedJsonWriter(maxLength);
+        writer.writeValue(value);
+        return writer.toString();
+    }
+
+    /**
+     * 写入对象
+     *
+     * @param value 对象
+     * @return 当前写入器
+     */
+    public BoundedJsonWriter writeValue(Object value) {
+        if (truncated) {
+            return this;
+        }
+        if (value == null) {
+            append("null");
+        } else if (value instanceof CharSequence) {
+            writeString((CharSequence) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            append(value.toString());
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value);
+        } else if (value instanceof Iterable) {
+            writeIterable((Iterable<?>) value);
+        } else if (value.getClass().isArray()) {
+            writeArray(value);
+        } else {
+            writeString(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * 是否因达到上限而截断
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * 已写入的长度
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 清空已写入的内容 以便复用缓冲区
+     */
+    public void reset() {
+        length = 0;
+        truncated = false;
+    }
+
+    /**
+     * 将已写入的内容追加到目标 不生成中间字符串
+     */
+    public void appendTo(StringBuilder target) {
+        target.append(buffer, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    private void writeMap(Map<?, ?> map) {
+        append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (truncated) {
+                return;
+            }
+            if (!first) {
+                append(',');
+            }
+            first = false;
+            writeString(String.valueOf(entry.getKey()));
+            append(':');
+            writeValue(entry.getValue());
+        }
+        append('}');
+    }
+
+    private void writeIterable(Iterable<?> values) {
+        append('[');
+        boolean first = true;
+        for (Object value : values) {
+            if (truncated) {
+                return;
+            }
+            if (!first) {
+                append(',');
+            }
+            first = false;
+            writeValue(value);
+        }
+        append(']');
+    }
+
+    private void writeArray(Object array) {
+        append('[');
+        int size = Array.getLength(array);
+        for (int i = 0; i < size && !truncated; i++) {
+            if (i > 0) {
+                append(',');
+            }
+            writeValue(Array.get(array, i));
+        }
+        append(']');
+    }
+
+    private void writeString(CharSequence value) {
+        append('"');
+        for (int i = 0, size = value.length(); i < size && !truncated; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    append("\\\"");
+                    break;
+                case '\\':
+                    append("\\\\");
+                    break;
+                case '\n':
+                    append("\\n");
+                    break;
+                case '\r':
+                    append("\\r");
+                    break;
+                case '\t':
+                    append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        append("\\u00");
+                        append(HEX[c >> 4]);
+                        append(HEX[c & 0xF]);
+                    } else {
+                        append(c);
+                    }
+            }
+        }
+        append('"');
+    }
+
+    private void append(String text) {
+        for (int i = 0, size = text.length(); i < size; i++) {
+            append(text.charAt(i));
+        }
+    }
+
+    private void append(char c) {
+        if (length < buffer.length) {
+            buffer[length++] = c;
+        } else {
+            truncated = true;
+        }
+    }
+}
@@ -4,10 +4,19 @@ import com.ruoyi.common.config.Global;
 import com.ruoyi.common.json.JSON;
 import com.ruoyi.common.json.JSONObject;
 import com.ruoyi.common.utils.http.HttpUtils;
+import com.ruoyi.common.utils.ip.IpGeoDatabase;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
- * 获取地址类
+ * 获取地址类 优先查询离线IP地址库，在线接口只作为未收录时的可选补充
+ * 查询结果放在分段的按访问顺序淘汰的缓存中，各段单独加锁；未查到的IP也缓存一段时间，避免反复请求在线接口
+ * 地址库文件修改后自动重新加载并清空缓存
  *
  * @author ruoyi
  */
@@ -20,30 +29,178 @@ public class AddressUtils {
 
     private static final String IP_URL = "http://ip.taobao.com/service/getIpInfo.php" ;
 
-    public static String getRealAddressByIP(String ip) {
-        String address = "XX XX" ;
+    private static final String UNKNOWN_ADDRESS = "XX XX" ;
+
+    /**
+     * 缓存分段数 必须为2的幂
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * 每段最多缓存的查询结果
+     */
+    private static final int SEGMENT_CAPACITY = 256;
+
+    /**
+     * 未查到地址的IP的缓存时长
+     */
+    private static final long NEGATIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * 检查地址库文件是否修改的间隔
+     */
+    private static final long CHECK_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
+    private static final Segment[] CACHE = new Segment[SEGMENTS];
+
+    private static final AtomicBoolean RELOADING = new AtomicBoolean();
+
+    private static volatile IpGeoDatabase database;
+
+    private static volatile long nextCheckTime;
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            CACHE[i] = new Segment();
+        }
+    }
+
+    public static String getRealAddressByIP(String ip) {
         // 内网不查询
         if (IpUtils.internalIp(ip)) {
             return "内网IP" ;
         }
-        if (Global.isAddressEnabled()) {
-            String rspStr = HttpUtils.sendPost(IP_URL, "ip=" + ip);
-            if (StringUtils.isEmpty(rspStr)) {
-                log.error("获取地理位置异常 {}" , ip);
-                return address;
+        if (!Global.isAddressEnabled()) {
+            return UNKNOWN_ADDRESS;
+        }
+        Segment segment = segmentFor(String.valueOf(ip));
+        long now = System.currentTimeMillis();
+        CachedAddress cached;
+        synchronized (segment) {
+            cached = segment.get(ip);
+        }
+        if (cached != null && !cached.isExpired(now)) {
+            return cached.address != null ? cached.address : UNKNOWN_ADDRESS;
+        }
+        // 查询放在锁外 并发查询同一个IP的结果相同，后写入的覆盖先写入的
+        String address = null;
+        IpGeoDatabase current = getDatabase();
+        if (current != null) {
+            address = current.find(ip);
+        }
+        if (address == null && Global.isAddressRemoteFallback()) {
+            address = queryRemote(ip);
+        }
+        cached = address != null ? new CachedAddress(address, Long.MAX_VALUE) : new CachedAddress(null, now + NEGATIVE_TTL_MILLIS);
+        synchronized (segment) {
+            segment.put(ip, cached);
+        }
+        return address != null ? address : UNKNOWN_ADDRESS;
+    }
+
+    /**
+     * 重新加载离线IP地址库 加载成功后替换当前地址库并清空缓存，失败时继续使用原地址库
+     *
+     * @return 是否加载成功
+     */
+    public static boolean reloadDatabase() {
+        String path = Global.getAddressDatabase();
+        if (path == null) {
+            return false;
+        }
+        if (!RELOADING.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            IpGeoDatabase loaded = IpGeoDatabase.load(new File(path));
+            database = loaded;
+            for (Segment segment : CACHE) {
+                synchronized (segment) {
+                    segment.clear();
+                }
             }
-            JSONObject obj;
-            try {
-                obj = JSON.unmarshal(rspStr, JSONObject.class);
-                JSONObject data = obj.getObj("data");
-                String region = data.getStr("region");
-                String city = data.getStr("city");
-                address = region + " " + city;
-            } catch (Exception e) {
-                log.error("获取地理位置异常 {}" , ip);
+            log.info("加载离线IP地址库 {} 共{}个IP段" , path, loaded.size());
+            return true;
+        } catch (Exception e) {
+            log.error("加载离线IP地址库异常 {}" , path, e);
+            return false;
+        } finally {
+            nextCheckTime = System.currentTimeMillis() + CHECK_INTERVAL_MILLIS;
+            RELOADING.set(false);
+        }
+    }
+
+    /**
+     * 当前的离线地址库 首次使用时加载，之后每隔一段时间检查文件是否修改
+     */
+    private static IpGeoDatabase getDatabase() {
+        if (System.currentTimeMillis() >= nextCheckTime) {
+            String path = Global.getAddressDatabase();
+            IpGeoDatabase current = database;
+            if (path != null && (current == null || current.getLastModified() != new File(path).lastModified())) {
+                reloadDatabase();
+            } else {
+                nextCheckTime = System.currentTimeMillis() + CHECK_INTERVAL_MILLIS;
             }
         }
-        return address;
+        return database;
+    }
+
+    private static String queryRemote(String ip) {
+        String rspStr = HttpUtils.sendPost(IP_URL, "ip=" + ip);
+        if (StringUtils.isEmpty(rspStr)) {
+            log.error("获取地理位置异常 {}" , ip);
+            return null;
+        }
+        try {
+            JSONObject obj = JSON.unmarshal(rspStr, JSONObject.class);
+            JSONObject data = obj.getObj("data");
+            String region = data.getStr("region");
+            String city = data.getStr("city");
+            return region + " " + city;
+        } catch (Exception e) {
+            log.error("获取地理位置异常 {}" , ip);
+            return null;
+        }
+    }
+
+    private static Segment segmentFor(String ip) {
+        int h = ip.hashCode();
+        h ^= (h >>> 16);
+        return CACHE[h & (SEGMENTS - 1)];
+    }
+
+    /**
+     * 缓存分段 按访问顺序淘汰最久未使用的条目
+     */
+    private static final class Segment extends LinkedHashMap<String, CachedAddress> {
+        private static final long serialVersionUID = 1L;
+
+        Segment() {
+            super(SEGMENT_CAPACITY * 4 / 3 + 1, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedAddress> eldest) {
+            return size() > SEGMENT_CAPACITY;
+        }
+    }
+
+    /**
+     * 缓存的查询结果 地址为null表示未查到，到期后重新查询
+     */
+    private static final class CachedAddress {
+        private final String address;
+
+        private final long expireAt;
+
+        CachedAddress(String address, long expireAt) {
+            this.address = address;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expireAt;
+        }
     }
 }
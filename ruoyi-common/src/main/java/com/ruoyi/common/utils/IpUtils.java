@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import javax.servlet.http.HttpServletRequest;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Set;
 
 import static com.ruoyi.common.constant.Constants.LOCAL_IP;
 
@@ -45,6 +46,40 @@ public class IpUtils {
         return "0:0:0:0:0:0:0:1".equals(ip) ? LOCAL_IP : ip;
     }
 
+    /**
+     * 只信任指定代理转发的来源地址 用于限流等安全判断，客户端自行添加的代理头不起作用
+     * 直连地址不是可信代理时直接使用；是可信代理时从 X-Forwarded-For 右侧起跳过可信代理，取第一个地址
+     *
+     * @param request        请求
+     * @param trustedProxies 可信代理地址
+     * @return 来源地址
+     */
+    public static String getTrustedIpAddr(HttpServletRequest request, Set<String> trustedProxies) {
+        if (request == null) {
+            return "unknown";
+        }
+        String ip = normalize(request.getRemoteAddr());
+        if (!trustedProxies.contains(ip)) {
+            return ip;
+        }
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded == null || forwarded.isEmpty()) {
+            return ip;
+        }
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = normalize(hops[i].trim());
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return ip;
+    }
+
+    private static String normalize(String ip) {
+        return "0:0:0:0:0:0:0:1".equals(ip) || "::1".equals(ip) ? LOCAL_IP : ip;
+    }
+
     public static boolean internalIp(String ip) {
         byte[] addr = textToNumericFormatV4(ip);
         return internalIp(addr) || LOCAL_IP.equals(ip);
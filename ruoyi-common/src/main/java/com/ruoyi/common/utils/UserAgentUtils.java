@@ -0,0 +1,172 @@
+package com.ruoyi.common.utils;
+
+import eu.bitwalker.useragentutils.UserAgent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端User-Agent解析 解析结果按原始字符串缓存
+ * 访问的客户端种类通常只有几百种，而每次解析都要逐个匹配浏览器和操作系统的规则
+ * 缓存分为若干段，每段是一个按访问顺序淘汰的LinkedHashMap，各段单独加锁
+ *
+ * @author ruoyi
+ */
+public class UserAgentUtils {
+
+    /**
+     * 缓存分段数 必须为2的幂
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * 每段最多缓存的条目
+     */
+    private static final int SEGMENT_CAPACITY = 64;
+
+    /**
+     * 超过该长度的User-Agent只解析不缓存
+     */
+    private static final int MAX_CACHEABLE_LENGTH = 512;
+
+    private static final ClientAgent UNKNOWN = new ClientAgent(UserAgent.parseUserAgentString(""));
+
+    private static final Segment[] CACHE = new Segment[SEGMENTS];
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            CACHE[i] = new Segment();
+        }
+    }
+
+    private UserAgentUtils() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 解析User-Agent
+     *
+     * @param userAgent 请求头中的User-Agent
+     * @return 浏览器与操作系统
+     */
+    public static ClientAgent parse(String userAgent) {
+        if (StringUtils.isEmpty(userAgent)) {
+            return UNKNOWN;
+        }
+        if (userAgent.length() > MAX_CACHEABLE_LENGTH) {
+            MISSES.increment();
+            return new ClientAgent(UserAgent.parseUserAgentString(userAgent));
+        }
+        Segment segment = segmentFor(userAgent);
+        ClientAgent agent;
+        synchronized (segment) {
+            agent = segment.get(userAgent);
+        }
+        if (agent != null) {
+            HITS.increment();
+            return agent;
+        }
+        MISSES.increment();
+        // 解析放在锁外，并发解析同一个字符串的结果相同，后写入的覆盖先写入的
+        agent = new ClientAgent(UserAgent.parseUserAgentString(userAgent));
+        synchronized (segment) {
+            segment.put(userAgent, agent);
+        }
+        return agent;
+    }
+
+    /**
+     * 命中次数
+     */
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * 当前缓存的条目数
+     */
+    public static int size() {
+        int size = 0;
+        for (Segment segment : CACHE) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 清空缓存和统计
+     */
+    public static void clear() {
+        for (Segment segment : CACHE) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    private static Segment segmentFor(String userAgent) {
+        int h = userAgent.hashCode();
+        h ^= (h >>> 16);
+        return CACHE[h & (SEGMENTS - 1)];
+    }
+
+    /**
+     * 缓存分段 按访问顺序淘汰最久未使用的条目
+     */
+    private static final class Segment extends LinkedHashMap<String, ClientAgent> {
+        private static final long serialVersionUID = 1L;
+
+        Segment() {
+            super(SEGMENT_CAPACITY * 4 / 3 + 1, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClientAgent> eldest) {
+            return size() > SEGMENT_CAPACITY;
+        }
+    }
+
+    /**
+     * 解析结果 只保留浏览器与操作系统的名称
+     */
+    public static final class ClientAgent {
+        private final String browser;
+
+        private final String os;
+
+        private ClientAgent(UserAgent userAgent) {
+            this.browser = userAgent.getBrowser().getName();
+            this.os = userAgent.getOperatingSystem().getName();
+        }
+
+        /**
+         * 客户端浏览器
+         */
+        public String getBrowser() {
+            return browser;
+        }
+
+        /**
+         * 客户端操作系统
+         */
+        public String getOs() {
+            return os;
+        }
+    }
+}
@@ -1,33 +1,68 @@
 package com.ruoyi.common.utils.http;
 
+import com.ruoyi.common.config.Global;
 import com.ruoyi.common.support.CharsetKit;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.ObjectUtils;
 
 import javax.net.ssl.*;
-import java.io.*;
-import java.net.ConnectException;
-import java.net.SocketTimeoutException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 通用http发送方法
+ * 连接由JDK的keep-alive连接池复用，响应体必须完整读取后关闭才能归还连接
+ * JDK连接池每个主机默认只保留5个空闲连接，ruoyi.http.maxPerHost 调大时应同时在启动参数中设置 -Dhttp.maxConnections
+ * 每个请求都有连接和读取超时，每个主机同时进行的请求数有上限，超出时等待不超过连接超时
+ * 相同的GET请求正在进行时，后来的调用直接等待其结果，不再重复请求；POST请求可能有副作用，每次都发出
  *
  * @author ruoyi
  */
 @Slf4j
 public class HttpUtils {
-    
+
     private HttpUtils(){
         throw new IllegalStateException("Utility class");
     }
 
     private static final String RECV = "recv - {}";
 
+    private static final String USER_AGENT = "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1;SV1)";
+
+    private static final int CONNECT_TIMEOUT = Global.getHttpConnectTimeout();
+
+    private static final int READ_TIMEOUT = Global.getHttpReadTimeout();
+
+    private static final int MAX_PER_HOST = Global.getHttpMaxPerHost();
+
+    /**
+     * 正在进行的GET请求 键为请求地址
+     */
+    private static final Map<String, CompletableFuture<String>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private static final Map<String, HostStats> HOSTS = new ConcurrentHashMap<>();
+
+    private static volatile SSLSocketFactory sslSocketFactory;
+
     /**
      * 向指定 URL 发送GET方法的请求
      *
@@ -36,30 +71,7 @@ public class HttpUtils {
      * @return 所代表远程资源的响应结果
      */
     public static String sendGet(String url, String param) {
-        StringBuilder result = new StringBuilder();
-
-        try {
-            String urlNameString = url + "?" + param;
-            log.info("sendGet - {}", urlNameString);
-            URLConnection connection = getUrlConnection(urlNameString);
-            connection.connect();
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));) {
-                String line;
-                while ((line = in.readLine()) != null) {
-                    result.append(line);
-                }
-                log.info(RECV, result);
-            }
-        } catch (ConnectException e) {
-            log.error(String.format("调用HttpUtils.sendGet ConnectException, url=%s,param=%s", url,param), e);
-        } catch (SocketTimeoutException e) {
-            log.error(String.format("调用HttpUtils.sendGet SocketTimeoutException, url=%s,param=%s", url,param), e);
-        } catch (IOException e) {
-            log.error(String.format("调用HttpUtils.sendGet IOException, url=%s,param=%s", url,param), e);
-        } catch (Exception e) {
-            log.error(String.format("调用HttpsUtil.sendGet Exception, url=%s,param=%s", url,param), e);
-        }
-        return result.toString();
+        return coalesce("sendGet", url + "?" + param);
     }
 
     /**
@@ -70,81 +82,249 @@ public class HttpUtils {
      * @return 所代表远程资源的响应结果
      */
     public static String sendPost(String url, String param) {
+        return send("sendPost", "POST", url + "?" + param, param, false);
+    }
 
+    public static String sendSSLPost(String url, String param) {
+        return send("sendSSLPost", "POST", url + "?" + param, "", true);
+    }
+
+    /**
+     * 各主机的请求指标
+     *
+     * @return 主机 - 指标
+     */
+    public static Map<String, Map<String, Object>> getMetrics() {
+        Map<String, Map<String, Object>> metrics = new TreeMap<>();
+        for (HostStats stats : HOSTS.values()) {
+            metrics.put(stats.host, stats.toMap());
+        }
+        return metrics;
+    }
 
-        StringBuilder result = new StringBuilder();
+    /**
+     * 合并相同的GET请求 由第一个调用者发出请求，其余调用者等待同一个结果
+     */
+    private static String coalesce(String name, String url) {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = IN_FLIGHT.putIfAbsent(url, call);
+        if (inFlight != null) {
+            return await(name, url, inFlight);
+        }
+        String result = "";
+        try {
+            result = send(name, "GET", url, null, false);
+        } finally {
+            IN_FLIGHT.remove(url, call);
+            call.complete(result);
+        }
+        return result;
+    }
+
+    private static String await(String name, String url, CompletableFuture<String> inFlight) {
+        HostStats stats = statsFor(url);
+        if (stats != null) {
+            stats.coalesced.increment();
+        }
+        try {
+            return inFlight.get((long) CONNECT_TIMEOUT * 2 + READ_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.error("调用HttpUtils.{} 等待相同请求超时, url={}", name, url);
+        } catch (Exception e) {
+            log.error("调用HttpUtils.{} Exception, url={}", name, url, e);
+        }
+        return "";
+    }
+
+    private static String send(String name, String method, String url, String body, boolean ssl) {
+        HostStats stats;
+        URL realUrl;
         try {
-            String urlNameString = url + "?" + param;
-            log.info("sendPost - {}", urlNameString);
-            URLConnection conn = getUrlConnection(urlNameString);
+            realUrl = new URL(url);
+            stats = HOSTS.computeIfAbsent(hostOf(realUrl), HostStats::new);
+        } catch (IOException e) {
+            log.error("调用HttpUtils.{} 地址错误, url={}", name, url, e);
+            return "";
+        }
+        try {
+            if (!stats.permits.tryAcquire(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                stats.rejected.increment();
+                log.warn("调用HttpUtils.{} 主机并发请求数已满, url={}", name, url);
+                return "";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            log.debug("{} - {}", name, url);
+            String result = request(realUrl, method, body, ssl);
+            log.debug(RECV, result);
+            success = result != null;
+            return success ? result : "";
+        } catch (Exception e) {
+            log.error("调用HttpUtils.{} {}, url={}", name, e.getClass().getSimpleName(), url, e);
+            return "";
+        } finally {
+            stats.permits.release();
+            stats.record(System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * 发出请求并完整读取响应
+     *
+     * @return 响应内容 响应状态码表示错误时返回null
+     */
+    private static String request(URL url, String method, String body, boolean ssl) throws IOException, GeneralSecurityException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        conn.setRequestMethod(method);
+        conn.setRequestProperty("accept", "*/*");
+        conn.setRequestProperty("connection", "Keep-Alive");
+        conn.setRequestProperty("user-agent", USER_AGENT);
+        if (ssl && conn instanceof HttpsURLConnection) {
+            HttpsURLConnection https = (HttpsURLConnection) conn;
+            https.setSSLSocketFactory(getSslSocketFactory());
+            https.setHostnameVerifier(new TrustAnyHostnameVerifier());
+        }
+        if (body != null) {
             conn.setRequestProperty("Accept-Charset", CharsetKit.UTF8);
             conn.setRequestProperty("contentType", CharsetKit.UTF8);
             conn.setDoOutput(true);
-            conn.setDoInput(true);
-            try(PrintWriter out = new PrintWriter(conn.getOutputStream())){
-                out.print(param);
-                out.flush();
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
             }
-            try(BufferedReader in =new BufferedReader(new InputStreamReader(conn.getInputStream(), CharsetKit.UTF8))) {
-                String line;
-                while ((line = in.readLine()) != null) {
-                    result.append(line);
+        }
+        int status = conn.getResponseCode();
+        boolean ok = status < HttpURLConnection.HTTP_BAD_REQUEST;
+        String content = readFully(ok ? conn.getInputStream() : conn.getErrorStream(), charsetOf(conn.getContentType()));
+        if (!ok) {
+            log.warn("http请求返回错误 {} {}, url={}", status, content, url);
+            return null;
+        }
+        return content;
+    }
+
+    /**
+     * 读取并关闭响应流 读完后连接才能被复用
+     */
+    private static String readFully(InputStream in, Charset charset) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), charset);
+        }
+    }
+
+    private static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                String name = contentType.substring(index + 8).replace("\"", "").trim();
+                int end = name.indexOf(';');
+                try {
+                    return Charset.forName(end >= 0 ? name.substring(0, end).trim() : name);
+                } catch (Exception e) {
+                    log.debug("未知的响应编码 {}", name);
                 }
-                log.info(RECV, result);
             }
-        } catch (ConnectException e) {
-            log.error(String.format("调用HttpUtils.sendPost ConnectException, url=%s,param=%s", url,param), e);
-        } catch (SocketTimeoutException e) {
-            log.error(String.format("调用HttpUtils.sendPost SocketTimeoutException, url=%s,param=%s", url,param), e);
-        } catch (IOException e) {
-            log.error(String.format("调用HttpUtils.sendPost IOException, url=%s,param=%s", url,param), e);
-        } catch (Exception e) {
-            log.error(String.format("调用HttpsUtil.sendPost Exception, url=%s,param=%s", url,param), e);
         }
-        return result.toString();
+        return StandardCharsets.UTF_8;
     }
 
-    public static String sendSSLPost(String url, String param) {
-        StringBuilder result = new StringBuilder();
-        String urlNameString = url + "?" + param;
+    private static String hostOf(URL url) {
+        int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+        return url.getHost() + ":" + port;
+    }
+
+    private static HostStats statsFor(String url) {
         try {
-            log.info("sendSSLPost - {}", urlNameString);
-            SSLContext sc = SSLContext.getInstance("TLSv1.2");
-            sc.init(null, new TrustManager[]{new TrustAnyTrustManager()}, new java.security.SecureRandom());
-            URL console = new URL(urlNameString);
-            HttpsURLConnection conn = (HttpsURLConnection) console.openConnection();
-            conn.setRequestProperty("accept", "*/*");
-            conn.setRequestProperty("connection", "Keep-Alive");
-            conn.setRequestProperty("user-agent", "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1;SV1)");
-            conn.setRequestProperty("Accept-Charset", CharsetKit.UTF8);
-            conn.setRequestProperty("contentType", CharsetKit.UTF8);
-            conn.setDoOutput(true);
-            conn.setDoInput(true);
-
-            conn.setSSLSocketFactory(sc.getSocketFactory());
-            conn.setHostnameVerifier(new TrustAnyHostnameVerifier());
-            conn.connect();
-            InputStream is = conn.getInputStream();
-            BufferedReader br = new BufferedReader(new InputStreamReader(is));
-            String ret = "";
-            while ((ret = br.readLine()) != null) {
-                if (!"".equals(ret.trim())) {
-                    result.append(new String(ret.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8));
+            return HOSTS.computeIfAbsent(hostOf(new URL(url)), HostStats::new);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 信任所有证书的SSL连接工厂 所有请求共用，连接池按连接工厂区分连接
+     */
+    private static SSLSocketFactory getSslSocketFactory() throws GeneralSecurityException {
+        SSLSocketFactory factory = sslSocketFactory;
+        if (factory == null) {
+            synchronized (HttpUtils.class) {
+                factory = sslSocketFactory;
+                if (factory == null) {
+                    SSLContext sc = SSLContext.getInstance("TLSv1.2");
+                    sc.init(null, new TrustManager[]{new TrustAnyTrustManager()}, new java.security.SecureRandom());
+                    factory = sc.getSocketFactory();
+                    sslSocketFactory = factory;
                 }
             }
-            log.info(RECV, result);
-            conn.disconnect();
-            br.close();
-        } catch (ConnectException e) {
-            log.error(String.format("调用HttpUtils.sendSSLPost ConnectException, url=%s,param=%s", url,param), e);
-        } catch (SocketTimeoutException e) {
-            log.error(String.format("调用HttpUtils.sendSSLPost SocketTimeoutException, url=%s,param=%s", url,param), e);
-        } catch (IOException e) {
-            log.error(String.format("调用HttpUtils.sendSSLPost IOException, url=%s,param=%s", url,param), e);
-        } catch (Exception e) {
-            log.error(String.format("调用HttpsUtil.sendSSLPost Exception, url=%s,param=%s", url,param), e);
         }
-        return result.toString();
+        return factory;
+    }
+
+    /**
+     * 单个主机的并发限制与请求指标
+     */
+    private static final class HostStats {
+        private final String host;
+
+        private final Semaphore permits = new Semaphore(MAX_PER_HOST);
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private final LongAdder coalesced = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        HostStats(String host) {
+            this.host = host;
+        }
+
+        void record(long nanos, boolean success) {
+            requests.increment();
+            if (!success) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // 其他线程同时更新了最大值 重新比较
+            }
+        }
+
+        Map<String, Object> toMap() {
+            long count = requests.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", count);
+            map.put("errors", errors.sum());
+            map.put("rejected", rejected.sum());
+            map.put("coalesced", coalesced.sum());
+            map.put("active", MAX_PER_HOST - permits.availablePermits());
+            map.put("avgMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / count));
+            map.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            return map;
+        }
     }
 
     private static class TrustAnyTrustManager implements X509TrustManager {
@@ -176,13 +356,4 @@ public class HttpUtils {
             return requestedHost.equalsIgnoreCase(remoteServerSession.getPeerHost());
         }
     }
-
-    private static URLConnection getUrlConnection(String urlNameString) throws IOException {
-        URL realUrl = new URL(urlNameString);
-        URLConnection connection = realUrl.openConnection();
-        connection.setRequestProperty("accept", "*/*");
-        connection.setRequestProperty("connection", "Keep-Alive");
-        connection.setRequestProperty("user-agent", "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1;SV1)");
-        return connection;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,298 @@
+package com.ruoyi.common.utils.ip;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 离线IP地址库 加载后不可修改
+ * 数据文件每行为 起始IP|结束IP|省份|城市，之后的字段忽略，空行和#开头的行跳过
+ * 文件通过内存映射读取，IP段保存在基本类型数组中，查询为二分查找，不产生临时对象
+ * 为了用有符号比较代替无符号比较，数组中的IP均翻转了最高位
+ *
+ * @author ruoyi
+ */
+public final class IpGeoDatabase {
+
+    private static final int SIGN_BIT = 0x80000000;
+
+    private final File file;
+
+    private final long lastModified;
+
+    private final int[] starts;
+
+    private final int[] ends;
+
+    private final int[] regionIds;
+
+    private final String[] regions;
+
+    private IpGeoDatabase(File file, long lastModified, int[] starts, int[] ends, int[] regionIds, String[] regions) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.starts = starts;
+        this.ends = ends;
+        this.regionIds = regionIds;
+        this.regions = regions;
+    }
+
+    /**
+     * 加载数据文件
+     *
+     * @param file 数据文件
+     * @return 地址库
+     */
+    public static IpGeoDatabase load(File file) throws IOException {
+        long lastModified = file.lastModified();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("ip database file is too large: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return parse(file, lastModified, buffer);
+        }
+    }
+
+    /**
+     * 数据文件
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 加载时数据文件的修改时间
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * IP段数量
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * 查询IPv4地址所在地
+     *
+     * @param ip IPv4地址
+     * @return 所在地 不是合法的IPv4地址或未收录时返回null
+     */
+    public String find(String ip) {
+        long address = parseIpv4(ip);
+        return address < 0 ? null : find((int) address);
+    }
+
+    /**
+     * 查询IPv4地址所在地
+     *
+     * @param ip 整数形式的IPv4地址
+     * @return 所在地 未收录时返回null
+     */
+    public String find(int ip) {
+        int key = ip ^ SIGN_BIT;
+        int low = 0;
+        int high = starts.length - 1;
+        // 找到最后一个起始IP不大于key的段
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0 || ends[high] < key) {
+            return null;
+        }
+        return regions[regionIds[high]];
+    }
+
+    /**
+     * 解析IPv4地址
+     *
+     * @return 无符号的整数形式 格式错误时返回-1
+     */
+    public static long parseIpv4(CharSequence ip) {
+        if (ip == null) {
+            return -1;
+        }
+        return parseIpv4(ip, 0, ip.length());
+    }
+
+    private static long parseIpv4(CharSequence ip, int from, int to) {
+        long address = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i < to; i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                address = (address << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (octets != 3 || value < 0) {
+            return -1;
+        }
+        return (address << 8) | value;
+    }
+
+    private static IpGeoDatabase parse(File file, long lastModified, MappedByteBuffer buffer) throws IOException {
+        int capacity = 1024;
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        int[] regionIds = new int[capacity];
+        Map<String, Integer> regionIndex = new HashMap<>();
+        byte[] line = new byte[256];
+        Line fields = new Line();
+        int count = 0;
+        int lineNumber = 0;
+        boolean sorted = true;
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            int length = 0;
+            while (position < limit) {
+                byte b = buffer.get(position++);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == '\r') {
+                    continue;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, line.length << 1);
+                }
+                line[length++] = b;
+            }
+            lineNumber++;
+            if (length == 0 || line[0] == '#') {
+                continue;
+            }
+            if (!fields.split(line, length)) {
+                throw new IOException("malformed ip database line " + lineNumber + " in " + file);
+            }
+            long start = parseIpv4(fields.text(line, 0), 0, fields.length(0));
+            long end = parseIpv4(fields.text(line, 1), 0, fields.length(1));
+            if (start < 0 || end < start) {
+                throw new IOException("malformed ip range at line " + lineNumber + " in " + file);
+            }
+            String region = fields.region(line);
+            Integer regionId = regionIndex.get(region);
+            if (regionId == null) {
+                regionId = regionIndex.size();
+                regionIndex.put(region, regionId);
+            }
+            if (count == capacity) {
+                capacity <<= 1;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                regionIds = Arrays.copyOf(regionIds, capacity);
+            }
+            starts[count] = (int) start ^ SIGN_BIT;
+            ends[count] = (int) end ^ SIGN_BIT;
+            regionIds[count] = regionId;
+            if (count > 0 && starts[count] < starts[count - 1]) {
+                sorted = false;
+            }
+            count++;
+        }
+        starts = Arrays.copyOf(starts, count);
+        ends = Arrays.copyOf(ends, count);
+        regionIds = Arrays.copyOf(regionIds, count);
+        if (!sorted) {
+            sort(starts, ends, regionIds);
+        }
+        String[] regions = new String[regionIndex.size()];
+        for (Map.Entry<String, Integer> entry : regionIndex.entrySet()) {
+            regions[entry.getValue()] = entry.getKey();
+        }
+        return new IpGeoDatabase(file, lastModified, starts, ends, regionIds, regions);
+    }
+
+    /**
+     * 按起始IP排序 起始IP放在高32位，原下标放在低32位
+     */
+    private static void sort(int[] starts, int[] ends, int[] regionIds) {
+        long[] keys = new long[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            keys[i] = ((long) starts[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] sortedEnds = new int[ends.length];
+        int[] sortedRegionIds = new int[regionIds.length];
+        for (int i = 0; i < keys.length; i++) {
+            int index = (int) keys[i];
+            starts[i] = (int) (keys[i] >> 32);
+            sortedEnds[i] = ends[index];
+            sortedRegionIds[i] = regionIds[index];
+        }
+        System.arraycopy(sortedEnds, 0, ends, 0, ends.length);
+        System.arraycopy(sortedRegionIds, 0, regionIds, 0, regionIds.length);
+    }
+
+    /**
+     * 一行数据的字段位置
+     */
+    private static final class Line {
+        private final int[] offsets = new int[5];
+
+        private int fieldCount;
+
+        /**
+         * 记录前四个字段的起止位置
+         */
+        boolean split(byte[] line, int length) {
+            fieldCount = 0;
+            offsets[0] = 0;
+            for (int i = 0; i < length && fieldCount < 4; i++) {
+                if (line[i] == '|') {
+                    offsets[++fieldCount] = i + 1;
+                }
+            }
+            if (fieldCount < 4) {
+                // 城市之后没有其他字段
+                offsets[++fieldCount] = length + 1;
+            }
+            return fieldCount >= 3;
+        }
+
+        int length(int field) {
+            return offsets[field + 1] - offsets[field] - 1;
+        }
+
+        CharSequence text(byte[] line, int field) {
+            return new String(line, offsets[field], length(field), StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * 省份和城市 以空格连接，与在线接口返回的格式一致
+         */
+        String region(byte[] line) {
+            String province = new String(line, offsets[2], length(2), StandardCharsets.UTF_8).trim();
+            if (fieldCount < 4) {
+                return province;
+            }
+            String city = new String(line, offsets[3], length(3), StandardCharsets.UTF_8).trim();
+            return city.isEmpty() ? province : province + " " + city;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.ruoyi.framework.aspectj;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.Signature;
@@ -8,17 +10,19 @@ import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import com.ruoyi.common.annotation.DataScope;
 import com.ruoyi.common.base.BaseEntity;
-import com.ruoyi.common.utils.StringUtils;
 import com.ruoyi.framework.util.ShiroUtils;
 import com.ruoyi.system.domain.SysRole;
 import com.ruoyi.system.domain.SysUser;
+import com.ruoyi.system.service.ISysRoleService;
 import org.springframework.util.ObjectUtils;
 
 /**
- * 数据过滤处理
+ * 数据过滤处理 自定义数据权限的角色换算为可见部门ID列表，作为绑定参数传给映射文件中的过滤条件
  *
  * @author ruoyi
  */
@@ -36,9 +40,24 @@ public class DataScopeAspect {
     private static final String DATA_SCOPE_CUSTOM = "2" ;
 
     /**
-     * 数据权限过滤关键字
+     * 数据权限过滤关键字 值为可见的部门ID列表
      */
-    private static final String DATA_SCOPE = "dataScope" ;
+    private static final String DATA_SCOPE_DEPT_IDS = "dataScopeDeptIds" ;
+
+    /**
+     * 数据权限过滤的部门字段 按注解中的表别名拼接，映射文件中原样拼入语句
+     */
+    private static final String DATA_SCOPE_DEPT_COLUMN = "dataScopeDeptColumn" ;
+
+    /**
+     * 角色服务本身带有数据权限注解 调用时再获取，避免切面与被切的服务互相依赖
+     */
+    private final ObjectProvider<ISysRoleService> roleService;
+
+    @Autowired
+    public DataScopeAspect(ObjectProvider<ISysRoleService> roleService) {
+        this.roleService = roleService;
+    }
 
     /**
      * 配置织入点
@@ -69,25 +88,36 @@ public class DataScopeAspect {
     /**
      * 数据范围过滤
      */
-    private static void dataScopeFilter(JoinPoint joinPoint, SysUser user, String alias) {
-        StringBuilder sqlString = new StringBuilder();
+    private void dataScopeFilter(JoinPoint joinPoint, SysUser user, String alias) {
+        List<Long> roleIds = new ArrayList<>();
 
         for (SysRole role : user.getRoles()) {
             String dataScope = role.getDataScope();
             if (DATA_SCOPE_ALL.equals(dataScope)) {
-                sqlString = new StringBuilder();
-                break;
+                return;
             } else if (DATA_SCOPE_CUSTOM.equals(dataScope)) {
-                sqlString.append(StringUtils.format(
-                        " OR {}.dept_id IN ( SELECT dept_id FROM sys_role_dept WHERE role_id = {} ) " , alias,
-                        role.getRoleId()));
+                roleIds.add(role.getRoleId());
             }
         }
 
-        if (StringUtils.isNotBlank(sqlString.toString())) {
+        if (!roleIds.isEmpty()) {
             BaseEntity baseEntity = (BaseEntity) joinPoint.getArgs()[0];
-            baseEntity.getParams().put(DATA_SCOPE, " AND (" + sqlString.substring(4) + ")");
+            baseEntity.getParams().put(DATA_SCOPE_DEPT_COLUMN, deptColumn(alias));
+            baseEntity.getParams().put(DATA_SCOPE_DEPT_IDS, roleService.getObject().selectDataScopeDeptIds(roleIds));
+        }
+    }
+
+    /**
+     * 部门字段 别名只允许字母、数字和下划线
+     */
+    private static String deptColumn(String alias) {
+        if (alias.isEmpty()) {
+            return "dept_id" ;
+        }
+        if (!alias.matches("\\w+")) {
+            throw new IllegalArgumentException("非法的数据权限表别名: " + alias);
         }
+        return alias + ".dept_id" ;
     }
 
     /**
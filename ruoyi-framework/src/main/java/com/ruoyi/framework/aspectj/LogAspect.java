@@ -2,10 +2,9 @@ package com.ruoyi.framework.aspectj;
 
 import com.ruoyi.common.annotation.Log;
 import com.ruoyi.common.enums.BusinessStatus;
-import com.ruoyi.common.json.JSON;
+import com.ruoyi.common.json.BoundedJsonWriter;
 import com.ruoyi.common.utils.StringUtils;
-import com.ruoyi.framework.manager.AsyncManager;
-import com.ruoyi.framework.manager.factory.AsyncFactory;
+import com.ruoyi.framework.manager.OperLogWriter;
 import com.ruoyi.framework.util.ServletUtils;
 import com.ruoyi.framework.util.ShiroUtils;
 import com.ruoyi.system.domain.SysOperLog;
@@ -20,6 +19,7 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
@@ -35,6 +35,18 @@ import java.util.Map;
 public class LogAspect {
     private static final Logger log = LoggerFactory.getLogger(LogAspect.class);
 
+    /**
+     * 请求参数字段的长度
+     */
+    private static final int OPER_PARAM_MAX_LENGTH = 255;
+
+    private final OperLogWriter operLogWriter;
+
+    @Autowired
+    public LogAspect(OperLogWriter operLogWriter) {
+        this.operLogWriter = operLogWriter;
+    }
+
     /**
      * 配置织入点
      */
@@ -100,8 +112,8 @@ public class LogAspect {
             operLog.setMethod(className + "." + methodName + "()");
             // 处理设置注解上的参数
             getControllerMethodDescription(controllerLog, operLog);
-            // 保存数据库
-            AsyncManager.me().execute(AsyncFactory.recordOper(operLog));
+            // 交给写入线程批量保存到数据库
+            operLogWriter.offer(operLog);
         } catch (Exception exp) {
             // 记录本地异常日志
             log.error("==前置通知异常==",exp);
@@ -136,8 +148,7 @@ public class LogAspect {
      */
     private void setRequestValue(SysOperLog operLog) throws Exception {
         Map<String, String[]> map = ServletUtils.getRequest().getParameterMap();
-        String params = JSON.marshal(map);
-        operLog.setOperParam(StringUtils.substring(params, 0, 255));
+        operLog.setOperParam(BoundedJsonWriter.toJson(map, OPER_PARAM_MAX_LENGTH));
     }
 
     /**
@@ -0,0 +1,53 @@
+package com.ruoyi.framework.config;
+
+import com.ruoyi.common.journal.AuditJournal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 审计日志本地日志文件配置
+ *
+ * @author ruoyi
+ */
+@Configuration
+public class JournalConfig {
+
+    /**
+     * 日志目录
+     */
+    @Value("${ruoyi.journal.dir:${java.io.tmpdir}/ruoyi/journal}")
+    private String dir;
+
+    /**
+     * 段文件大小 单位MB，内存映射的段不能超过2GB
+     */
+    @Value("${ruoyi.journal.segmentSize:64}")
+    private int segmentSize;
+
+    /**
+     * 最多保留的未回放段数
+     */
+    @Value("${ruoyi.journal.maxSegments:64}")
+    private int maxSegments;
+
+    /**
+     * 刷盘间隔 单位毫秒
+     */
+    @Value("${ruoyi.journal.flushMillis:10}")
+    private long flushMillis;
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "ruoyi.journal.enabled", havingValue = "true")
+    public AuditJournal auditJournal() throws IOException {
+        long segmentBytes = segmentSize * 1024L * 1024L;
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("journal segment size must be between 1MB and 2047MB: " + segmentSize);
+        }
+        return new AuditJournal(new File(dir), (int) segmentBytes, maxSegments, flushMillis);
+    }
+}
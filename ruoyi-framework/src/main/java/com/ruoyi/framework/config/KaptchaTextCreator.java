@@ -1,30 +1,22 @@
 package com.ruoyi.framework.config;
 
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Random;
 
 import com.google.code.kaptcha.text.impl.DefaultTextCreator;
-import lombok.extern.slf4j.Slf4j;
 
 /**
  * 验证码文本生成器
  *
  * @author ruoyi
  */
-@Slf4j
 public class KaptchaTextCreator extends DefaultTextCreator {
     private static final String[] CNUMBERS = "0,1,2,3,4,5,6,7,8,9,10".split(",");
 
-    private Random random;
-
-    {
-        try {
-            random = SecureRandom.getInstanceStrong();
-        } catch (NoSuchAlgorithmException e) {
-            log.error(e.getMessage(),e);
-        }
-    }
+    /**
+     * 非阻塞的随机数源 getInstanceStrong在熵不足时会阻塞
+     */
+    private final Random random = new SecureRandom();
 
     @Override
     public String getText() {
@@ -32,7 +24,7 @@ public class KaptchaTextCreator extends DefaultTextCreator {
         int x = random.nextInt(10);
         int y = random.nextInt(10);
         StringBuilder suChinese = new StringBuilder();
-        int randomoperands = (int) Math.round(Math.random() * 2);
+        int randomoperands = random.nextInt(3);
         if (randomoperands == 0) {
             result = x * y;
             suChinese.append(CNUMBERS[x]);
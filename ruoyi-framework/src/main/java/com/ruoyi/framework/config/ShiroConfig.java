@@ -1,5 +1,6 @@
 package com.ruoyi.framework.config;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.servlet.Filter;
@@ -14,14 +15,27 @@ import org.apache.shiro.web.mgt.DefaultWebSecurityManager;
 import org.apache.shiro.web.servlet.SimpleCookie;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import com.ruoyi.common.utils.StringUtils;
 import com.ruoyi.framework.shiro.realm.UserRealm;
+import com.ruoyi.framework.shiro.service.CaptchaNonceRegistry;
+import com.ruoyi.framework.shiro.service.LocalCaptchaNonceRegistry;
 import com.ruoyi.framework.shiro.session.OnlineSessionDAO;
 import com.ruoyi.framework.shiro.session.OnlineSessionFactory;
+import com.ruoyi.framework.shiro.session.OnlineSessionRegistry;
+import com.ruoyi.framework.shiro.session.SessionStore;
+import com.ruoyi.framework.shiro.session.offheap.OffHeapSessionStore;
+import com.ruoyi.framework.shiro.session.remote.RemoteCaptchaNonceRegistry;
+import com.ruoyi.framework.shiro.session.remote.RemoteLoginAttemptStore;
+import com.ruoyi.framework.shiro.session.remote.RemoteSessionStore;
+import com.ruoyi.framework.shiro.session.remote.SessionStoreServer;
+import com.ruoyi.framework.shiro.throttle.LocalLoginAttemptStore;
+import com.ruoyi.framework.shiro.throttle.LoginAttemptStore;
 import com.ruoyi.framework.shiro.web.filter.LogoutFilter;
 import com.ruoyi.framework.shiro.web.filter.captcha.CaptchaValidateFilter;
+import com.ruoyi.framework.shiro.web.filter.mgt.RadixShiroFilterFactoryBean;
 import com.ruoyi.framework.shiro.web.filter.online.OnlineSessionFilter;
 import com.ruoyi.framework.shiro.web.filter.sync.SyncOnlineSessionFilter;
 import com.ruoyi.framework.shiro.web.session.OnlineWebSessionManager;
@@ -49,6 +63,114 @@ public class ShiroConfig {
     @Value("${shiro.session.validationInterval}")
     private int validationInterval;
 
+    /**
+     * 会话存储类型 local本机内存 offheap本机堆外内存 remote集群共享存储
+     */
+    @Value("${shiro.session.store.type:local}")
+    private String sessionStoreType;
+
+    /**
+     * 堆外会话存储的分段锁数量
+     */
+    @Value("${shiro.session.registrySegments:64}")
+    private int registrySegments;
+
+    /**
+     * 集群共享会话存储的地址
+     */
+    @Value("${shiro.session.store.host:127.0.0.1}")
+    private String sessionStoreHost;
+
+    /**
+     * 集群共享会话存储的端口
+     */
+    @Value("${shiro.session.store.port:7379}")
+    private int sessionStorePort;
+
+    /**
+     * 集群共享会话存储的近缓存免校验时长，单位毫秒
+     */
+    @Value("${shiro.session.store.nearCacheMillis:1000}")
+    private long nearCacheMillis;
+
+    /**
+     * 集群共享会话存储的近缓存最大条目数
+     */
+    @Value("${shiro.session.store.nearCacheMaxSize:10000}")
+    private int nearCacheMaxSize;
+
+    /**
+     * 集群共享会话存储的近缓存条目未使用后的保留时长，单位秒
+     */
+    @Value("${shiro.session.store.nearCacheMaxIdle:300}")
+    private int nearCacheMaxIdle;
+
+    /**
+     * 集群共享会话存储保持的最大空闲连接数
+     */
+    @Value("${shiro.session.store.maxIdleConnections:16}")
+    private int maxIdleConnections;
+
+    /**
+     * 堆外会话存储的内存上限，单位MB
+     */
+    @Value("${shiro.session.store.offheap.maxMemory:256}")
+    private int offHeapMaxMemory;
+
+    /**
+     * 堆外会话存储单个slab的大小，单位MB
+     */
+    @Value("${shiro.session.store.offheap.slabSize:4}")
+    private int offHeapSlabSize;
+
+    /**
+     * 堆外会话存储留在堆上的热点会话数量
+     */
+    @Value("${shiro.session.store.offheap.hotCapacity:10000}")
+    private int offHeapHotCapacity;
+
+    /**
+     * 会话过期时间轮的刻度时长，单位毫秒
+     */
+    @Value("${shiro.session.wheelTickMillis:1000}")
+    private long wheelTickMillis;
+
+    /**
+     * 同步session到数据库的周期，单位分钟
+     */
+    @Value("${shiro.session.dbSyncPeriod}")
+    private int dbSyncPeriod;
+
+    /**
+     * 登录尝试计数存储类型 local本机 remote集群共享（使用会话存储服务）
+     */
+    @Value("${user.login.throttleStore:local}")
+    private String loginAttemptStoreType;
+
+    /**
+     * 登录限流的时间窗口，单位分钟
+     */
+    @Value("${user.login.throttleWindow:10}")
+    private int throttleWindow;
+
+    /**
+     * 验证码令牌随机数登记的存储类型 local本机 remote集群共享（使用会话存储服务），默认与登录尝试计数相同
+     */
+    @Value("${shiro.user.captchaNonceStore:${user.login.throttleStore:local}}")
+    private String captchaNonceStoreType;
+
+    /**
+     * 过期会话清理时每页的条数
+     */
+    @Value("${shiro.session.sweepPageSize:500}")
+    private int sweepPageSize;
+
+    /**
+     * 过期会话清理时页与页之间的暂停时间，单位毫秒
+     */
+    @Value("${shiro.session.sweepPauseMillis:10}")
+    private long sweepPauseMillis;
+
     /**
      * 验证码开关
      */
@@ -123,6 +245,62 @@ public class ShiroConfig {
         return userRealm;
     }
 
+    /**
+     * 会话存储
+     */
+    @Bean
+    public SessionStore sessionStore() {
+        if ("remote".equalsIgnoreCase(sessionStoreType)) {
+            RemoteSessionStore store = new RemoteSessionStore(sessionStoreHost, sessionStorePort, maxIdleConnections);
+            store.setNearCacheValidityMillis(nearCacheMillis);
+            store.setNearCacheMaxSize(nearCacheMaxSize);
+            store.setNearCacheMaxIdleMillis(nearCacheMaxIdle * 1000L);
+            store.setTouchSyncMillis((long) dbSyncPeriod * 60 * 1000);
+            return store;
+        }
+        if ("offheap".equalsIgnoreCase(sessionStoreType)) {
+            return new OffHeapSessionStore(registrySegments, (long) offHeapSlabSize * 1024 * 1024,
+                    (long) offHeapMaxMemory * 1024 * 1024, offHeapHotCapacity);
+        }
+        return new OnlineSessionRegistry();
+    }
+
+    /**
+     * 登录尝试计数存储
+     */
+    @Bean
+    public LoginAttemptStore loginAttemptStore() {
+        long windowMillis = (long) throttleWindow * 60 * 1000;
+        LocalLoginAttemptStore local = new LocalLoginAttemptStore(windowMillis, 100000);
+        if ("remote".equalsIgnoreCase(loginAttemptStoreType)) {
+            return new RemoteLoginAttemptStore(sessionStoreHost, sessionStorePort, maxIdleConnections, windowMillis, local);
+        }
+        return local;
+    }
+
+    /**
+     * 验证码令牌随机数登记
+     */
+    @Bean
+    public CaptchaNonceRegistry captchaNonceRegistry() {
+        LocalCaptchaNonceRegistry local = new LocalCaptchaNonceRegistry(100000);
+        if ("remote".equalsIgnoreCase(captchaNonceStoreType)) {
+            return new RemoteCaptchaNonceRegistry(sessionStoreHost, sessionStorePort, maxIdleConnections, local);
+        }
+        return local;
+    }
+
+    /**
+     * 本机启动的轻量会话存储服务，用于开发和测试环境代替外部键值存储
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "shiro.session.store.embedded", havingValue = "true")
+    public SessionStoreServer sessionStoreServer() throws IOException {
+        SessionStoreServer server = new SessionStoreServer(sessionStorePort);
+        server.start();
+        return server;
+    }
+
     /**
      * 自定义sessionDAO会话
      */
@@ -147,6 +325,8 @@ public class ShiroConfig {
         SpringSessionValidationScheduler sessionValidationScheduler = new SpringSessionValidationScheduler();
         // 相隔多久检查一次session的有效性，单位毫秒，默认就是10分钟
         sessionValidationScheduler.setSessionValidationInterval((long)validationInterval * 60 * 1000);
+        // 按时间轮刻度处理超时会话
+        sessionValidationScheduler.setExpiryTickInterval(wheelTickMillis);
         // 设置会话验证调度器进行会话验证时的会话管理器
         sessionValidationScheduler.setSessionManager(sessionValidationManager());
         return sessionValidationScheduler;
@@ -177,6 +357,9 @@ public class ShiroConfig {
         manager.setGlobalSessionTimeout((long) expireTime * 60 * 1000);
         // 去掉 JSESSIONID
         manager.setSessionIdUrlRewritingEnabled(false);
+        // 过期会话分页清理
+        manager.setSweepPageSize(sweepPageSize);
+        manager.setSweepPauseMillis(sweepPauseMillis);
         return manager;
     }
 
@@ -227,7 +410,8 @@ public class ShiroConfig {
      */
     @Bean
     public ShiroFilterFactoryBean shiroFilterFactoryBean(SecurityManager securityManager) {
-        ShiroFilterFactoryBean shiroFilterFactoryBean = new ShiroFilterFactoryBean();
+        // 过滤链在启动时编译为前缀树
+        ShiroFilterFactoryBean shiroFilterFactoryBean = new RadixShiroFilterFactoryBean();
         // Shiro的核心安全接口,这个属性是必须的
         shiroFilterFactoryBean.setSecurityManager(securityManager);
         // 身份认证失败，则跳转到登录页面的配置
@@ -0,0 +1,251 @@
+package com.ruoyi.framework.manager;
+
+import com.ruoyi.common.json.BoundedJsonWriter;
+import com.ruoyi.common.utils.IpUtils;
+import com.ruoyi.common.utils.StringUtils;
+import com.ruoyi.framework.util.LogUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 访问日志写入 请求线程只把访问信息复制到预先分配的事件中放入环形队列，由专用线程按批次格式化并写入日志
+ * 事件在空闲队列和待写队列之间循环使用，没有空闲事件时丢弃本次访问日志并计数
+ * 密码、验证码等敏感参数的值在写入事件前替换为掩码，不会出现在访问日志中
+ * 输出格式 block 为 [username][jsessionid][ip][accept][UserAgent][url][params][Referer]，
+ * delimited 为以制表符分隔的 访问时间 username jsessionid ip accept UserAgent url params Referer
+ *
+ * @author ruoyi
+ */
+@Slf4j
+@Component
+public class AccessLogWriter extends QueueDrainer<AccessLogWriter.AccessEvent> {
+
+    private static final char DELIMITER = '\t';
+
+    private static final String[] MASKED_VALUE = {"******"};
+
+    private final boolean delimited;
+
+    /**
+     * 需要掩码的参数名 小写
+     */
+    private final Set<String> maskedParams = new HashSet<>();
+
+    /**
+     * 空闲的事件 待写入的事件在队列中
+     */
+    private final RingBuffer<AccessEvent> free;
+
+    /**
+     * 格式化日志行的缓冲区 只由写入线程使用
+     */
+    private final StringBuilder line = new StringBuilder(512);
+
+    private final AtomicLong offered = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Autowired
+    public AccessLogWriter(@Value("${ruoyi.accessLog.capacity:4096}") int capacity,
+                           @Value("${ruoyi.accessLog.batchSize:256}") int batchSize,
+                           @Value("${ruoyi.accessLog.idleMillis:20}") long idleMillis,
+                           @Value("${ruoyi.accessLog.paramsLength:512}") int paramsLength,
+                           @Value("${ruoyi.accessLog.format:block}") String format,
+                           @Value("${ruoyi.accessLog.maskedParams:password,oldPassword,newPassword,confirmPassword,validateCode,captchaToken}") String maskedParams) {
+        super("access-log-writer", capacity, batchSize, idleMillis);
+        this.delimited = "delimited".equalsIgnoreCase(format);
+        for (String name : StringUtils.split(maskedParams, ",")) {
+            if (StringUtils.isNotBlank(name)) {
+                this.maskedParams.add(name.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.free = new RingBuffer<>(capacity);
+        for (int i = 0; i < free.capacity(); i++) {
+            free.offer(new AccessEvent(paramsLength));
+        }
+    }
+
+    /**
+     * 记录访问日志 请求参数在请求线程中写入事件自带的缓冲区，请求结束后请求对象可能被容器复用
+     *
+     * @param request  请求
+     * @param username 用户名
+     */
+    public void record(HttpServletRequest request, String username) {
+        offered.incrementAndGet();
+        AccessEvent event = free.poll();
+        if (event == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+        event.time = System.currentTimeMillis();
+        event.username = username;
+        event.sessionId = request.getRequestedSessionId();
+        event.ip = IpUtils.getIpAddr(request);
+        event.accept = request.getHeader("accept");
+        event.userAgent = request.getHeader("User-Agent");
+        event.url = request.getRequestURI();
+        event.referer = request.getHeader("Referer");
+        event.params.reset();
+        event.params.writeValue(maskParams(request.getParameterMap()));
+        if (!buffer.offer(event)) {
+            // 空闲事件与队列容量相同 不会发生
+            event.clear();
+            free.offer(event);
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 写入的各项指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity", buffer.capacity());
+        metrics.put("queueDepth", buffer.size());
+        metrics.put("format", delimited ? "delimited" : "block");
+        metrics.put("offered", offered.get());
+        metrics.put("written", written.get());
+        metrics.put("dropped", dropped.get());
+        return metrics;
+    }
+
+    /**
+     * 格式化并写入日志 写完的事件放回空闲队列
+     */
+    @Override
+    protected void drain(List<AccessEvent> batch) {
+        for (AccessEvent event : batch) {
+            try {
+                line.setLength(0);
+                if (delimited) {
+                    formatDelimited(event, line);
+                } else {
+                    formatBlock(event, line);
+                }
+                LogUtils.getAccessLog().info(line.toString());
+                written.incrementAndGet();
+            } catch (Exception e) {
+                log.error("write access log error.", e);
+            } finally {
+                event.clear();
+                free.offer(event);
+            }
+        }
+    }
+
+    private static void formatBlock(AccessEvent event, StringBuilder line) {
+        block(line, event.username);
+        block(line, event.sessionId);
+        block(line, event.ip);
+        block(line, event.accept);
+        block(line, event.userAgent);
+        block(line, event.url);
+        line.append('[');
+        event.params.appendTo(line);
+        line.append(']');
+        block(line, event.referer);
+    }
+
+    private static void formatDelimited(AccessEvent event, StringBuilder line) {
+        line.append(event.time);
+        field(line, event.username);
+        field(line, event.sessionId);
+        field(line, event.ip);
+        field(line, event.accept);
+        field(line, event.userAgent);
+        field(line, event.url);
+        line.append(DELIMITER);
+        event.params.appendTo(line);
+        field(line, event.referer);
+    }
+
+    /**
+     * 替换敏感参数的值 没有敏感参数时直接返回原参数，不复制
+     */
+    private Map<String, String[]> maskParams(Map<String, String[]> params) {
+        Map<String, String[]> masked = null;
+        for (String name : params.keySet()) {
+            if (maskedParams.contains(name.toLowerCase(Locale.ROOT))) {
+                if (masked == null) {
+                    masked = new LinkedHashMap<>(params);
+                }
+                masked.put(name, MASKED_VALUE);
+            }
+        }
+        return masked == null ? params : masked;
+    }
+
+    private static void block(StringBuilder line, String value) {
+        line.append('[');
+        if (value != null) {
+            line.append(value);
+        }
+        line.append(']');
+    }
+
+    /**
+     * 追加一个字段 字段中的制表符和换行替换为空格
+     */
+    private static void field(StringBuilder line, String value) {
+        line.append(DELIMITER);
+        if (value == null) {
+            return;
+        }
+        for (int i = 0, size = value.length(); i < size; i++) {
+            char c = value.charAt(i);
+            line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+        }
+    }
+
+    /**
+     * 访问事件 字段数量固定，请求参数写入预先分配的缓冲区
+     */
+    static final class AccessEvent {
+        private final BoundedJsonWriter params;
+
+        private long time;
+
+        private String username;
+
+        private String sessionId;
+
+        private String ip;
+
+        private String accept;
+
+        private String userAgent;
+
+        private String url;
+
+        private String referer;
+
+        AccessEvent(int paramsLength) {
+            this.params = new BoundedJsonWriter(paramsLength);
+        }
+
+        void clear() {
+            username = null;
+            sessionId = null;
+            ip = null;
+            accept = null;
+            userAgent = null;
+            url = null;
+            referer = null;
+            params.reset();
+        }
+    }
+}
@@ -40,4 +40,16 @@ public class AsyncManager {
     public void execute(TimerTask task) {
         executorService.schedule(task, OPERATE_DELAY_TIME, TimeUnit.MILLISECONDS);
     }
+
+    /**
+     * 记录登录信息 交给登录日志写入线程批量保存
+     *
+     * @param username 用户名
+     * @param status   状态
+     * @param code     消息编码
+     * @param args     消息参数
+     */
+    public void recordLogininfor(String username, String status, String code, Object... args) {
+        SpringUtils.getBean(LoginEventWriter.class).record(username, status, code, args);
+    }
 }
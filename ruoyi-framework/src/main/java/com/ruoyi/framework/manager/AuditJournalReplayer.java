@@ -0,0 +1,276 @@
+package com.ruoyi.framework.manager;
+
+import com.ruoyi.common.journal.AuditJournal;
+import com.ruoyi.common.journal.JournalRecord;
+import com.ruoyi.quartz.domain.SysJobLog;
+import com.ruoyi.quartz.service.ISysJobLogService;
+import com.ruoyi.system.domain.SysOperLog;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.SerializationUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 审计日志文件回放 专用线程从检查点开始读取日志文件，按批次写入操作日志、登录日志和定时任务日志表
+ * 一批记录中连续的同类记录一起写入，写入成功后保存检查点
+ * 数据库不可用时暂停一段时间后从检查点重试；其他错误对半拆分重试，单条记录仍失败时转入隔离文件并越过该记录
+ * 写入成功但保存检查点前进程崩溃时，重启后会重复写入这一组记录
+ *
+ * @author ruoyi
+ */
+@Slf4j
+@Component
+public class AuditJournalReplayer {
+
+    /**
+     * 写入数据库失败后的等待时长 单位毫秒
+     */
+    private static final long RETRY_BACKOFF_MILLIS = 5000;
+
+    /**
+     * 无法写入数据库的记录 每条为记录类型加记录内容，不会自动补写
+     */
+    private static final String DEAD_LETTER_FILE = "audit-journal.dead";
+
+    /**
+     * 单批次读取的最大条数
+     */
+    @Value("${ruoyi.journal.batchSize:200}")
+    private int batchSize;
+
+    /**
+     * 没有新记录时回放线程的等待时长 单位毫秒
+     */
+    @Value("${ruoyi.journal.idleMillis:20}")
+    private long idleMillis;
+
+    @Value("${ruoyi.journal.dir:${java.io.tmpdir}/ruoyi/journal}")
+    private String dir;
+
+    private final AuditJournal journal;
+
+    private final OperLogWriter operLogWriter;
+
+    private final LoginEventWriter loginEventWriter;
+
+    private final ISysJobLogService jobLogService;
+
+    private final AtomicLong replayed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong quarantined = new AtomicLong();
+
+    /**
+     * 已回放到的位置 只由回放线程访问
+     */
+    private long position;
+
+    private volatile boolean running;
+
+    private Thread replayer;
+
+    private SpillFile deadLetterFile;
+
+    @Autowired
+    public AuditJournalReplayer(ObjectProvider<AuditJournal> journal, OperLogWriter operLogWriter,
+                                LoginEventWriter loginEventWriter, ISysJobLogService jobLogService) {
+        this.journal = journal.getIfAvailable();
+        this.operLogWriter = operLogWriter;
+        this.loginEventWriter = loginEventWriter;
+        this.jobLogService = jobLogService;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (journal == null) {
+            return;
+        }
+        deadLetterFile = new SpillFile(dir, DEAD_LETTER_FILE);
+        running = true;
+        replayer = new Thread(this::replayLoop, "audit-journal-replayer");
+        replayer.setDaemon(true);
+        replayer.start();
+    }
+
+    /**
+     * 停止回放 未回放的记录留在日志文件中，下次启动后继续
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (replayer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(replayer);
+        replayer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * 回放的各项指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", journal != null);
+        if (journal != null) {
+            metrics.putAll(journal.getMetrics());
+        }
+        metrics.put("replayed", replayed.get());
+        metrics.put("failed", failed.get());
+        metrics.put("quarantined", quarantined.get());
+        return metrics;
+    }
+
+    private void replayLoop() {
+        List<JournalRecord> records = new ArrayList<>(batchSize);
+        position = journal.getCheckpoint();
+        while (running) {
+            records.clear();
+            long next;
+            try {
+                next = journal.read(position, batchSize, records);
+            } catch (Exception e) {
+                log.error("read audit journal error.", e);
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(RETRY_BACKOFF_MILLIS));
+                continue;
+            }
+            if (records.isEmpty()) {
+                if (next != position) {
+                    // 只跳过了段结束标记
+                    commit(next);
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(idleMillis));
+                continue;
+            }
+            int from = 0;
+            while (from < records.size()) {
+                int to = from + 1;
+                byte type = records.get(from).getType();
+                while (to < records.size() && records.get(to).getType() == type) {
+                    to++;
+                }
+                if (!replay(type, records.subList(from, to))) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(RETRY_BACKOFF_MILLIS));
+                    break;
+                }
+                from = to;
+            }
+        }
+    }
+
+    /**
+     * 回放一组同类记录 每写入一部分就保存检查点；写入失败时对半拆分重试，单条记录仍失败时转入隔离文件
+     *
+     * @return 是否处理完 数据库不可用时返回false，由调用方暂停后从检查点重试
+     */
+    private boolean replay(byte type, List<JournalRecord> run) {
+        try {
+            write(type, run);
+            replayed.addAndGet(run.size());
+            commit(run.get(run.size() - 1).getNextPosition());
+            return true;
+        } catch (Exception e) {
+            failed.addAndGet(run.size());
+            if (BatchWriter.isUnavailable(e)) {
+                log.error("replay [{}] audit records of type {} error, db is unavailable, retry later.", run.size(), type, e);
+                return false;
+            }
+            if (run.size() > 1) {
+                log.warn("replay [{}] audit records of type {} error, split and retry.", run.size(), type, e);
+                int middle = run.size() / 2;
+                return replay(type, run.subList(0, middle)) && replay(type, run.subList(middle, run.size()));
+            }
+            log.error("audit record of type {} can not be written, move it to dead letter file.", type, e);
+            quarantine(run.get(0));
+            commit(run.get(0).getNextPosition());
+            return true;
+        }
+    }
+
+    /**
+     * 写入隔离文件 不再回放，需人工处理；写入失败时只记录日志，记录仍会被越过
+     */
+    private void quarantine(JournalRecord record) {
+        byte[] payload = record.getPayload();
+        byte[] data = new byte[payload.length + 1];
+        data[0] = record.getType();
+        System.arraycopy(payload, 0, data, 1, payload.length);
+        try {
+            deadLetterFile.append(Collections.singletonList(data));
+            quarantined.incrementAndGet();
+            log.error("audit record of type {} moved to dead letter file [{}].", record.getType(), deadLetterFile.getFile());
+        } catch (IOException e) {
+            log.error("write audit record of type {} to [{}] error, it is skipped.", record.getType(), deadLetterFile.getFile(), e);
+        }
+    }
+
+    private void commit(long next) {
+        position = next;
+        try {
+            journal.commit(next);
+        } catch (Exception e) {
+            // 检查点未保存时继续回放 重启后会重复写入
+            log.error("save audit journal checkpoint error.", e);
+        }
+    }
+
+    private void write(byte type, List<JournalRecord> records) {
+        switch (type) {
+            case AuditJournal.TYPE_OPER_LOG:
+                List<SysOperLog> operLogs = decode(records, operLogWriter::decode);
+                if (!operLogs.isEmpty()) {
+                    operLogWriter.insertBatch(operLogs);
+                }
+                break;
+            case AuditJournal.TYPE_LOGININFOR:
+                List<LoginEventWriter.LoginEvent> events = decode(records, loginEventWriter::decode);
+                if (!events.isEmpty()) {
+                    loginEventWriter.insertBatch(events);
+                }
+                break;
+            case AuditJournal.TYPE_JOB_LOG:
+                List<SysJobLog> jobLogs = decode(records, SerializationUtils::deserialize);
+                jobLogService.batchInsertJobLog(jobLogs);
+                break;
+            default:
+                log.warn("skip [{}] audit records of unknown type {}.", records.size(), type);
+        }
+    }
+
+    /**
+     * 解析记录 无法解析的记录重试也不会成功，记录日志后跳过
+     */
+    private <T> List<T> decode(List<JournalRecord> records, Decoder<T> decoder) {
+        List<T> values = new ArrayList<>(records.size());
+        for (JournalRecord record : records) {
+            try {
+                values.add(decoder.decode(record.getPayload()));
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.error("skip undecodable audit record of type {}.", record.getType(), e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 记录内容的解析方法
+     */
+    private interface Decoder<T> {
+        T decode(byte[] data) throws Exception;
+    }
+}
@@ -0,0 +1,312 @@
+package com.ruoyi.framework.manager;
+
+import com.ruoyi.common.journal.AuditJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.io.IOException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 日志批量写入数据库 各请求线程写入环形队列，由专用线程取出后按批次写入
+ * 批次写入失败时，数据库不可用则整批写入磁盘稍后补写；其他错误逐条重试，仍失败的记录转入隔离文件不再补写
+ * 磁盘中的记录在队列空闲时补写，数据库不可用后暂停一段时间再补写
+ * 启用审计日志文件时先追加到日志文件，由回放线程写入数据库，日志文件已满时再使用队列
+ * 子类提供写入数据库和记录编解码的方法
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public abstract class BatchWriter<T> extends QueueDrainer<T> {
+
+    /**
+     * 写入数据库失败后暂停补写磁盘记录的时长 单位毫秒
+     */
+    private static final long REPLAY_BACKOFF_MILLIS = 5000;
+
+    private final String name;
+
+    /**
+     * 审计日志文件 未启用时为null
+     */
+    private final AuditJournal journal;
+
+    private final byte journalType;
+
+    private final SpillFile spillFile;
+
+    /**
+     * 无法写入数据库的记录 不会自动补写
+     */
+    private final SpillFile deadLetterFile;
+
+    private final AtomicLong offered = new AtomicLong();
+
+    private final AtomicLong journaled = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong spilled = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong quarantined = new AtomicLong();
+
+    /**
+     * 在此时间之前不补写磁盘中的记录
+     */
+    private volatile long replayNotBefore;
+
+    /**
+     * @param name        名称 用于线程名、磁盘文件名和日志
+     * @param capacity    队列容量
+     * @param batchSize   单批次写入的最大条数
+     * @param idleMillis  队列为空时写入线程的等待时长 单位毫秒
+     * @param spillDir    磁盘文件目录
+     * @param journal     审计日志文件 未启用时为null
+     * @param journalType 在审计日志文件中的记录类型
+     */
+    protected BatchWriter(String name, int capacity, int batchSize, long idleMillis, String spillDir,
+                          AuditJournal journal, byte journalType) {
+        super(name + "-writer", capacity, batchSize, idleMillis);
+        this.name = name;
+        this.journal = journal;
+        this.journalType = journalType;
+        this.spillFile = new SpillFile(spillDir, name + ".spill");
+        this.deadLetterFile = new SpillFile(spillDir, name + ".dead");
+    }
+
+    /**
+     * 写入数据库 写入失败时抛出异常
+     *
+     * @param batch 记录
+     */
+    protected abstract void insert(List<T> batch);
+
+    /**
+     * 写入磁盘文件和审计日志文件的格式
+     */
+    protected abstract byte[] encode(T record) throws IOException;
+
+    protected abstract T decode(byte[] data) throws Exception;
+
+    /**
+     * 写入前处理批次 默认不处理
+     */
+    protected List<T> prepare(List<T> batch) {
+        return batch;
+    }
+
+    /**
+     * 日志中记录的描述
+     */
+    protected String describe(T record) {
+        return String.valueOf(record);
+    }
+
+    /**
+     * 子类的其他指标
+     */
+    protected void addMetrics(Map<String, Object> metrics) {
+    }
+
+    /**
+     * 写入的各项指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity", buffer.capacity());
+        metrics.put("queueDepth", buffer.size());
+        addMetrics(metrics);
+        metrics.put("offered", offered.get());
+        metrics.put("journaled", journaled.get());
+        metrics.put("written", written.get());
+        metrics.put("batches", batches.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("spilled", spilled.get());
+        metrics.put("failed", failed.get());
+        metrics.put("quarantined", quarantined.get());
+        return metrics;
+    }
+
+    /**
+     * 提交记录 启用审计日志文件时先追加到日志文件
+     *
+     * @return 已追加到日志文件或放入队列时返回true，队列已满时返回false，由调用方处理
+     */
+    protected final boolean submit(T record) {
+        offered.incrementAndGet();
+        if (journal != null && appendToJournal(record)) {
+            return true;
+        }
+        return buffer.offer(record);
+    }
+
+    /**
+     * 累计丢弃的记录数
+     *
+     * @return 累计丢弃的总数
+     */
+    protected final long countDropped(int count) {
+        return dropped.addAndGet(count);
+    }
+
+    /**
+     * 写入数据库并计数 审计日志文件回放时也经由此方法写入
+     */
+    final void insertBatch(List<T> batch) {
+        insert(batch);
+        written.addAndGet(batch.size());
+        batches.incrementAndGet();
+    }
+
+    @Override
+    protected final void drain(List<T> batch) {
+        write(prepare(batch));
+    }
+
+    @Override
+    protected final void onIdle() {
+        replaySpilled();
+    }
+
+    /**
+     * 写入磁盘 稍后补写
+     */
+    protected final void spill(List<T> records) {
+        if (appendTo(spillFile, records)) {
+            spilled.addAndGet(records.size());
+        }
+    }
+
+    /**
+     * 是否为数据库连接不可用一类的错误 重试可能成功；其余错误视为记录自身的数据问题
+     */
+    static boolean isUnavailable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessResourceFailureException
+                    || cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean appendToJournal(T record) {
+        try {
+            if (journal.append(journalType, encode(record))) {
+                journaled.incrementAndGet();
+                return true;
+            }
+        } catch (IOException e) {
+            log.error("append {} record to journal error.", name, e);
+        }
+        return false;
+    }
+
+    /**
+     * 写入一个批次 数据库不可用时整批写入磁盘，其他错误逐条写入
+     */
+    private void write(List<T> batch) {
+        try {
+            insertBatch(batch);
+        } catch (Exception e) {
+            if (isUnavailable(e)) {
+                log.error("write [{}] {} records to db error, db is unavailable, spill them to disk.", batch.size(), name, e);
+                retryLater(batch);
+                return;
+            }
+            log.warn("write [{}] {} records to db error, retry them one by one.", batch.size(), name, e);
+            writeEach(batch);
+        }
+    }
+
+    /**
+     * 逐条写入 数据错误的记录转入隔离文件；遇到数据库不可用时剩余记录不再尝试，写入磁盘稍后补写
+     */
+    private void writeEach(List<T> batch) {
+        List<T> rejected = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            T record = batch.get(i);
+            try {
+                insertBatch(Collections.singletonList(record));
+            } catch (Exception e) {
+                if (isUnavailable(e)) {
+                    log.error("write {} records to db error, db is unavailable, spill [{}] of them to disk.", name, batch.size() - i, e);
+                    retryLater(batch.subList(i, batch.size()));
+                    break;
+                }
+                log.error("{} record [{}] rejected by db, move it to dead letter file.", name, describe(record), e);
+                rejected.add(record);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            failed.addAndGet(rejected.size());
+            quarantine(rejected);
+        }
+    }
+
+    private void retryLater(List<T> records) {
+        failed.addAndGet(records.size());
+        replayNotBefore = System.currentTimeMillis() + REPLAY_BACKOFF_MILLIS;
+        spill(records);
+    }
+
+    /**
+     * 写入隔离文件 不再自动补写，需人工处理
+     */
+    private void quarantine(List<T> records) {
+        if (appendTo(deadLetterFile, records)) {
+            quarantined.addAndGet(records.size());
+            log.error("[{}] {} records moved to dead letter file [{}].", records.size(), name, deadLetterFile.getFile());
+        }
+    }
+
+    /**
+     * 追加到磁盘文件
+     *
+     * @return 是否写入成功 失败时计为丢弃
+     */
+    private boolean appendTo(SpillFile file, List<T> records) {
+        try {
+            List<byte[]> data = new ArrayList<>(records.size());
+            for (T record : records) {
+                data.add(encode(record));
+            }
+            file.append(data);
+            return true;
+        } catch (IOException e) {
+            dropped.addAndGet(records.size());
+            log.error("write [{}] {} records to [{}] error.", records.size(), name, file.getFile(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 补写磁盘中的记录
+     */
+    private void replaySpilled() {
+        if (System.currentTimeMillis() < replayNotBefore) {
+            return;
+        }
+        spillFile.replay(getBatchSize(), this::decode, this::write);
+    }
+}
@@ -0,0 +1,315 @@
+package com.ruoyi.framework.manager;
+
+import com.ruoyi.common.constant.Constants;
+import com.ruoyi.common.journal.AuditJournal;
+import com.ruoyi.common.utils.AddressUtils;
+import com.ruoyi.common.utils.UserAgentUtils;
+import com.ruoyi.framework.util.MessageUtils;
+import com.ruoyi.framework.util.ServletUtils;
+import com.ruoyi.framework.util.ShiroUtils;
+import com.ruoyi.system.domain.SysLogininfor;
+import com.ruoyi.system.service.ISysLogininforService;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录日志写入 请求线程只采集登录信息放入环形队列，由专用线程按批次写入数据库
+ * 同一批次内相同IP只查询一次地理位置；队列积压时，同一用户、来源和消息编码的连续登录失败合并为一条并记录次数
+ * 批次写入、重试、转存磁盘和审计日志文件的处理见 {@link BatchWriter}
+ *
+ * @author ruoyi
+ */
+@Slf4j
+@Component
+public class LoginEventWriter extends BatchWriter<LoginEventWriter.LoginEvent> {
+
+    private static final Logger sys_user_logger = LoggerFactory.getLogger("sys-user");
+
+    /**
+     * 队列满时两次告警日志的最小间隔 单位毫秒
+     */
+    private static final long DROP_WARN_INTERVAL_MILLIS = 10000;
+
+    private final ISysLogininforService logininforService;
+
+    /**
+     * 队列积压超过该数量时合并重复的登录失败
+     */
+    private final int collapseThreshold;
+
+    private final AtomicLong collapsed = new AtomicLong();
+
+    /**
+     * 上次打印队列满告警的时间
+     */
+    private final AtomicLong lastDropWarnAt = new AtomicLong();
+
+    @Autowired
+    public LoginEventWriter(ISysLogininforService logininforService,
+                            @Value("${user.login.logCapacity:8192}") int capacity,
+                            @Value("${user.login.logBatchSize:200}") int batchSize,
+                            @Value("${user.login.logIdleMillis:20}") long idleMillis,
+                            @Value("${user.login.logSpillDir:${java.io.tmpdir}/ruoyi/login-log}") String spillDir,
+                            @Value("${user.login.logCollapseThreshold:0}") int collapseThreshold,
+                            ObjectProvider<AuditJournal> journal) {
+        super("login-log", capacity, batchSize, idleMillis, spillDir, journal.getIfAvailable(), AuditJournal.TYPE_LOGININFOR);
+        this.logininforService = logininforService;
+        this.collapseThreshold = collapseThreshold > 0 ? collapseThreshold : buffer.capacity() / 4;
+    }
+
+    /**
+     * 记录登录信息 在请求线程中采集IP和客户端信息并按当前语言生成消息
+     *
+     * @param username 用户名
+     * @param status   状态
+     * @param code     消息编码
+     * @param args     消息参数
+     */
+    public void record(String username, String status, String code, Object... args) {
+        LoginEvent event = new LoginEvent();
+        event.username = username;
+        event.status = status;
+        event.code = code;
+        event.message = MessageUtils.message(code, args);
+        event.args = args;
+        event.ip = ShiroUtils.getIp();
+        UserAgentUtils.ClientAgent userAgent = UserAgentUtils.parse(ServletUtils.getRequest().getHeader("User-Agent"));
+        event.browser = userAgent.getBrowser();
+        event.os = userAgent.getOs();
+        event.time = new Date();
+        if (!submit(event)) {
+            long total = countDropped(1);
+            long now = System.currentTimeMillis();
+            long last = lastDropWarnAt.get();
+            if (now - last >= DROP_WARN_INTERVAL_MILLIS && lastDropWarnAt.compareAndSet(last, now)) {
+                log.warn("login log queue is full, [{}] login events dropped so far.", total);
+            }
+        }
+    }
+
+    @Override
+    protected void addMetrics(Map<String, Object> metrics) {
+        metrics.put("collapsed", collapsed.get());
+    }
+
+    /**
+     * 队列积压时合并重复的登录失败
+     */
+    @Override
+    protected List<LoginEvent> prepare(List<LoginEvent> batch) {
+        return buffer.size() >= collapseThreshold ? collapseFailures(batch) : batch;
+    }
+
+    /**
+     * 写入数据库 同一批次内相同IP只查询一次地理位置，写入失败时抛出异常
+     *
+     * @param events 登录事件
+     */
+    @Override
+    protected void insert(List<LoginEvent> events) {
+        Map<String, String> locations = new HashMap<>();
+        List<SysLogininfor> rows = new ArrayList<>(events.size());
+        for (LoginEvent event : events) {
+            String location = locations.computeIfAbsent(String.valueOf(event.ip), ip -> AddressUtils.getRealAddressByIP(event.ip));
+            String message = event.count > 1
+                    ? MessageUtils.message("user.login.repeated", event.message, event.count) : event.message;
+            // 打印信息到日志
+            sys_user_logger.info("[{}]{}[{}][{}][{}]", event.ip, location, event.username, event.status, message);
+
+            SysLogininfor logininfor = new SysLogininfor();
+            logininfor.setLoginName(event.username);
+            logininfor.setIpaddr(event.ip);
+            logininfor.setLoginLocation(location);
+            logininfor.setBrowser(event.browser);
+            logininfor.setOs(event.os);
+            logininfor.setMsg(message);
+            logininfor.setLoginTime(event.time);
+            // 日志状态
+            if (Constants.LOGIN_SUCCESS.equals(event.status) || Constants.LOGOUT.equals(event.status)) {
+                logininfor.setStatus(Constants.SUCCESS);
+            } else if (Constants.LOGIN_FAIL.equals(event.status)) {
+                logininfor.setStatus(Constants.FAIL);
+            }
+            rows.add(logininfor);
+        }
+        logininforService.batchInsertLogininfor(rows);
+    }
+
+    @Override
+    protected String describe(LoginEvent event) {
+        return event.username;
+    }
+
+    /**
+     * 合并批次内相同用户、IP和消息编码的登录失败 保留最后一次的消息和时间
+     */
+    private List<LoginEvent> collapseFailures(List<LoginEvent> batch) {
+        Map<LoginEventKey, LoginEvent> failures = new HashMap<>();
+        List<LoginEvent> events = new ArrayList<>(batch.size());
+        for (LoginEvent event : batch) {
+            if (!Constants.LOGIN_FAIL.equals(event.status)) {
+                events.add(event);
+                continue;
+            }
+            LoginEvent first = failures.putIfAbsent(new LoginEventKey(event), event);
+            if (first == null) {
+                events.add(event);
+            } else {
+                first.count += event.count;
+                first.message = event.message;
+                first.time = event.time;
+                collapsed.incrementAndGet();
+            }
+        }
+        return events;
+    }
+
+    /**
+     * 写入日志文件的格式 消息参数按字符串保存；消息编码和合并次数在末尾，旧格式的记录没有这两项
+     */
+    @Override
+    protected byte[] encode(LoginEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, event.username);
+            writeString(out, event.status);
+            writeString(out, event.message);
+            int argCount = event.args == null ? 0 : event.args.length;
+            out.writeInt(argCount);
+            for (int i = 0; i < argCount; i++) {
+                writeString(out, String.valueOf(event.args[i]));
+            }
+            writeString(out, event.ip);
+            writeString(out, event.browser);
+            writeString(out, event.os);
+            out.writeLong(event.time.getTime());
+            writeString(out, event.code);
+            out.writeInt(event.count);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    protected LoginEvent decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            LoginEvent event = new LoginEvent();
+            event.username = readString(in);
+            event.status = readString(in);
+            event.message = readString(in);
+            event.args = new Object[in.readInt()];
+            for (int i = 0; i < event.args.length; i++) {
+                event.args[i] = readString(in);
+            }
+            event.ip = readString(in);
+            event.browser = readString(in);
+            event.os = readString(in);
+            event.time = new Date(in.readLong());
+            if (in.available() > 0) {
+                event.code = readString(in);
+                event.count = in.readInt();
+            }
+            return event;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * 登录事件
+     */
+    static final class LoginEvent {
+        private String username;
+
+        private String status;
+
+        /**
+         * 消息编码 合并登录失败时按编码分组，消息中的参数不同也视为同一原因
+         */
+        private String code;
+
+        private String message;
+
+        private Object[] args;
+
+        private String ip;
+
+        private String browser;
+
+        private String os;
+
+        private Date time;
+
+        /**
+         * 合并的次数
+         */
+        private int count = 1;
+    }
+
+    /**
+     * 合并登录失败时的分组键
+     */
+    private static final class LoginEventKey {
+        private final LoginEvent event;
+
+        private final int hash;
+
+        LoginEventKey(LoginEvent event) {
+            this.event = event;
+            this.hash = Objects.hash(event.username, event.ip, event.status, reason(event));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LoginEventKey)) {
+                return false;
+            }
+            LoginEvent other = ((LoginEventKey) o).event;
+            return Objects.equals(event.username, other.username)
+                    && Objects.equals(event.ip, other.ip)
+                    && Objects.equals(event.status, other.status)
+                    && Objects.equals(reason(event), reason(other));
+        }
+
+        /**
+         * 旧格式的日志文件记录没有消息编码 按消息分组
+         */
+        private static String reason(LoginEvent event) {
+            return event.code != null ? event.code : event.message;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
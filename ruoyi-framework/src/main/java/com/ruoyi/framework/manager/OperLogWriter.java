@@ -0,0 +1,170 @@
+package com.ruoyi.framework.manager;
+
+import com.ruoyi.common.journal.AuditJournal;
+import com.ruoyi.common.utils.AddressUtils;
+import com.ruoyi.system.domain.SysOperLog;
+import com.ruoyi.system.service.ISysOperLogService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 操作日志写入 各请求线程写入环形队列，由专用线程取出后按批次写入数据库
+ * 队列满时按配置阻塞等待、丢弃最旧的日志或写入磁盘，磁盘中的日志在队列空闲时补写
+ * 批次写入、重试、转存磁盘和审计日志文件的处理见 {@link BatchWriter}
+ *
+ * @author ruoyi
+ */
+@Component
+public class OperLogWriter extends BatchWriter<SysOperLog> {
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum Overflow {
+        /**
+         * 阻塞等待
+         */
+        BLOCK,
+        /**
+         * 丢弃最旧的日志
+         */
+        DROP_OLDEST,
+        /**
+         * 写入磁盘 空闲时补写
+         */
+        SPILL
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ISysOperLogService operLogService;
+
+    private final Overflow overflow;
+
+    private volatile int maxDepth;
+
+    @Autowired
+    public OperLogWriter(ISysOperLogService operLogService,
+                         @Value("${ruoyi.operLog.capacity:8192}") int capacity,
+                         @Value("${ruoyi.operLog.batchSize:200}") int batchSize,
+                         @Value("${ruoyi.operLog.idleMillis:20}") long idleMillis,
+                         @Value("${ruoyi.operLog.spillDir:${java.io.tmpdir}/ruoyi/oper-log}") String spillDir,
+                         @Value("${ruoyi.operLog.overflow:block}") String overflow,
+                         ObjectProvider<AuditJournal> journal) {
+        super("oper-log", capacity, batchSize, idleMillis, spillDir, journal.getIfAvailable(), AuditJournal.TYPE_OPER_LOG);
+        this.operLogService = operLogService;
+        this.overflow = parseOverflow(overflow);
+    }
+
+    /**
+     * 提交操作日志
+     *
+     * @param operLog 操作日志
+     */
+    public void offer(SysOperLog operLog) {
+        if (operLog.getOperTime() == null) {
+            operLog.setOperTime(new Date());
+        }
+        if (!submit(operLog)) {
+            overflow(operLog);
+        }
+        int depth = buffer.size();
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    @Override
+    protected void addMetrics(Map<String, Object> metrics) {
+        metrics.put("maxQueueDepth", maxDepth);
+        metrics.put("overflow", overflow.name());
+    }
+
+    private void overflow(SysOperLog operLog) {
+        switch (overflow) {
+            case DROP_OLDEST:
+                while (!buffer.offer(operLog)) {
+                    if (buffer.poll() != null) {
+                        countDropped(1);
+                    }
+                }
+                break;
+            case SPILL:
+                spill(Collections.singletonList(operLog));
+                break;
+            default:
+                while (!buffer.offer(operLog)) {
+                    if (!isRunning()) {
+                        // 已停止写入 不再等待
+                        spill(Collections.singletonList(operLog));
+                        return;
+                    }
+                    wake();
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                }
+        }
+    }
+
+    /**
+     * 写入数据库 同一批次内相同IP只查询一次地理位置，写入失败时抛出异常
+     *
+     * @param batch 操作日志
+     */
+    @Override
+    protected void insert(List<SysOperLog> batch) {
+        Map<String, String> locations = new HashMap<>();
+        for (SysOperLog operLog : batch) {
+            if (operLog.getOperLocation() == null) {
+                operLog.setOperLocation(locations.computeIfAbsent(String.valueOf(operLog.getOperIp()),
+                        ip -> AddressUtils.getRealAddressByIP(operLog.getOperIp())));
+            }
+        }
+        operLogService.batchInsertOperlog(batch);
+    }
+
+    @Override
+    protected String describe(SysOperLog operLog) {
+        return operLog.getTitle();
+    }
+
+    @Override
+    protected byte[] encode(SysOperLog operLog) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(operLog);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    protected SysOperLog decode(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (SysOperLog) in.readObject();
+        }
+    }
+
+    private static Overflow parseOverflow(String value) {
+        if ("dropOldest".equalsIgnoreCase(value) || "drop_oldest".equalsIgnoreCase(value)) {
+            return Overflow.DROP_OLDEST;
+        }
+        if ("spill".equalsIgnoreCase(value)) {
+            return Overflow.SPILL;
+        }
+        return Overflow.BLOCK;
+    }
+}
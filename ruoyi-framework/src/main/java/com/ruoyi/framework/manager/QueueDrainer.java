@@ -0,0 +1,111 @@
+package com.ruoyi.framework.manager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 队列批量处理 多个线程写入环形队列，由一个专用线程按批次取出处理
+ * 队列为空时专用线程短暂等待并执行空闲任务；停止时处理完队列中剩余的元素再退出
+ *
+ * @author ruoyi
+ */
+public abstract class QueueDrainer<T> {
+
+    protected final RingBuffer<T> buffer;
+
+    private final String threadName;
+
+    /**
+     * 单批次处理的最大条数
+     */
+    private final int batchSize;
+
+    /**
+     * 队列为空时处理线程的等待时长 单位毫秒
+     */
+    private final long idleMillis;
+
+    private volatile boolean running;
+
+    private Thread drainer;
+
+    protected QueueDrainer(String threadName, int capacity, int batchSize, long idleMillis) {
+        this.threadName = threadName;
+        this.buffer = new RingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.idleMillis = idleMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        drainer = new Thread(this::drainLoop, threadName);
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * 应用关闭前处理完队列中的元素
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(drainer);
+        drainer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * 队列中等待处理的元素数量
+     */
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    protected final int getBatchSize() {
+        return batchSize;
+    }
+
+    protected final boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 唤醒处理线程
+     */
+    protected final void wake() {
+        LockSupport.unpark(drainer);
+    }
+
+    /**
+     * 处理一个批次 由处理线程调用，需自行处理异常
+     *
+     * @param batch 批次 返回后会被清空复用
+     */
+    protected abstract void drain(List<T> batch);
+
+    /**
+     * 队列为空时执行的任务 处理线程启动时也执行一次
+     */
+    protected void onIdle() {
+    }
+
+    private void drainLoop() {
+        List<T> batch = new ArrayList<>(batchSize);
+        onIdle();
+        while (running || !buffer.isEmpty()) {
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                if (running) {
+                    onIdle();
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(idleMillis));
+                }
+                continue;
+            }
+            drain(batch);
+            batch.clear();
+        }
+    }
+}
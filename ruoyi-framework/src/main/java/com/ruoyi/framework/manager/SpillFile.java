@@ -0,0 +1,119 @@
+package com.ruoyi.framework.manager;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 磁盘转存文件 每条记录为长度加数据，追加写入
+ * 补写时先改名再读取，补写期间新的记录写入新文件；上次补写中断留下的文件下次优先补写
+ *
+ * @author ruoyi
+ */
+@Slf4j
+final class SpillFile {
+
+    private static final String REPLAY_SUFFIX = ".replay";
+
+    private final File dir;
+
+    private final File file;
+
+    private final File replayFile;
+
+    SpillFile(String dir, String name) {
+        this.dir = new File(dir);
+        this.file = new File(this.dir, name);
+        this.replayFile = new File(this.dir, name + REPLAY_SUFFIX);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * 追加记录
+     *
+     * @param records 记录
+     */
+    void append(List<byte[]> records) throws IOException {
+        synchronized (this) {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("create spill dir [" + dir + "] failed");
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+                for (byte[] record : records) {
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * 补写 按批次解析记录交给处理方法，文件读完后删除；读取或解析出错时跳过文件的剩余部分
+     *
+     * @param batchSize 单批次条数
+     * @param decoder   记录解析方法
+     * @param handler   批次处理方法 需自行处理写入失败
+     */
+    <T> void replay(int batchSize, Decoder<T> decoder, Handler<T> handler) {
+        synchronized (this) {
+            if (!replayFile.exists()) {
+                if (!file.exists() || file.length() == 0 || !file.renameTo(replayFile)) {
+                    return;
+                }
+            }
+        }
+        List<T> batch = new ArrayList<>(batchSize);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(replayFile)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                batch.add(decoder.decode(data));
+                if (batch.size() >= batchSize) {
+                    handler.handle(batch);
+                    batch.clear();
+                }
+            }
+        } catch (Exception e) {
+            log.error("replay spilled records error, the rest of [{}] is skipped.", replayFile, e);
+        }
+        if (!batch.isEmpty()) {
+            handler.handle(batch);
+        }
+        if (!replayFile.delete()) {
+            log.warn("delete replayed spill file [{}] failed.", replayFile);
+        }
+    }
+
+    /**
+     * 记录解析方法
+     */
+    interface Decoder<T> {
+        T decode(byte[] data) throws Exception;
+    }
+
+    /**
+     * 批次处理方法
+     */
+    interface Handler<T> {
+        void handle(List<T> batch);
+    }
+}
@@ -0,0 +1,43 @@
+package com.ruoyi.framework.shiro.authz;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 权限字符串序号表 每个权限字符串分配一个稠密的整数序号，作为权限位图的下标
+ * 权限字符串来自菜单配置，数量有限，序号在进程内只增不减
+ *
+ * @author ruoyi
+ */
+public final class PermissionOrdinals {
+
+    private static final Map<String, Integer> ORDINALS = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private PermissionOrdinals() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 获取权限的序号 不存在时分配新序号
+     *
+     * @param permission 权限字符串
+     * @return 序号
+     */
+    public static int register(String permission) {
+        return ORDINALS.computeIfAbsent(permission, key -> SEQUENCE.getAndIncrement());
+    }
+
+    /**
+     * 查询权限的序号
+     *
+     * @param permission 权限字符串
+     * @return 序号 未登记时返回-1
+     */
+    public static int find(String permission) {
+        Integer ordinal = ORDINALS.get(permission);
+        return ordinal != null ? ordinal : -1;
+    }
+}
@@ -0,0 +1,143 @@
+package com.ruoyi.framework.shiro.authz;
+
+import org.apache.shiro.authz.Permission;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 权限字典树 将用户持有的权限按段编译为树，通配符段单独作为一个分支
+ * 判断权限时按所需权限的各段向下查找，耗时与段数相关，与持有的权限数量无关
+ * 语义与WildcardPermission一致：持有的权限较短时隐含其下所有权限，较长时多出的段必须为通配符
+ *
+ * @author ruoyi
+ */
+public final class PermissionTrie implements Permission, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final String WILDCARD_TOKEN = "*";
+
+    private final Node root = new Node();
+
+    /**
+     * 持有的权限 所需权限无法按段查找时逐个判断
+     */
+    private final List<Permission> permissions;
+
+    public PermissionTrie(Collection<? extends Permission> permissions) {
+        List<Permission> held = new ArrayList<>(permissions.size());
+        for (Permission permission : permissions) {
+            held.add(permission);
+            if (permission instanceof SegmentPermission) {
+                insert(root, ((SegmentPermission) permission).segments(), 0);
+            }
+        }
+        this.permissions = Collections.unmodifiableList(held);
+        root.seal();
+    }
+
+    /**
+     * 持有的权限
+     */
+    public List<Permission> getPermissions() {
+        return permissions;
+    }
+
+    @Override
+    public boolean implies(Permission p) {
+        if (p instanceof SegmentPermission) {
+            List<Set<String>> required = ((SegmentPermission) p).segments();
+            if (isSingleValued(required)) {
+                return find(root, required, 0);
+            }
+        }
+        for (Permission held : permissions) {
+            if (held.implies(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void insert(Node node, List<Set<String>> segments, int index) {
+        if (index == segments.size()) {
+            node.terminal = true;
+            return;
+        }
+        Set<String> segment = segments.get(index);
+        if (segment.contains(WILDCARD_TOKEN)) {
+            if (node.wildcard == null) {
+                node.wildcard = new Node();
+            }
+            insert(node.wildcard, segments, index + 1);
+            return;
+        }
+        for (String token : segment) {
+            insert(node.children.computeIfAbsent(token, k -> new Node()), segments, index + 1);
+        }
+    }
+
+    private static boolean find(Node node, List<Set<String>> required, int index) {
+        if (node.terminal) {
+            return true;
+        }
+        if (index == required.size()) {
+            return node.wildcardTail;
+        }
+        Node child = node.children.get(required.get(index).iterator().next());
+        if (child != null && find(child, required, index + 1)) {
+            return true;
+        }
+        return node.wildcard != null && find(node.wildcard, required, index + 1);
+    }
+
+    /**
+     * 所需权限每段只有一个取值时才能按段查找 多值段需要同一个持有权限同时包含这些取值
+     */
+    private static boolean isSingleValued(List<Set<String>> segments) {
+        for (Set<String> segment : segments) {
+            if (segment.size() != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 树节点
+     */
+    private static final class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Map<String, Node> children = new HashMap<>();
+
+        private Node wildcard;
+
+        /**
+         * 有持有的权限在此结束
+         */
+        private boolean terminal;
+
+        /**
+         * 从此节点只经过通配符段即可到达某个持有权限的结尾
+         */
+        private boolean wildcardTail;
+
+        void seal() {
+            for (Node child : children.values()) {
+                child.seal();
+            }
+            children = children.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(children);
+            if (wildcard != null) {
+                wildcard.seal();
+            }
+            wildcardTail = terminal || (wildcard != null && wildcard.wildcardTail);
+        }
+    }
+}
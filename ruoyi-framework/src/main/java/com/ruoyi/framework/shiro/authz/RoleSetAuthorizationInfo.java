@@ -0,0 +1,95 @@
+package com.ruoyi.framework.shiro.authz;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按角色组合共享的授权信息 拥有相同角色集合的用户共用同一个不可变实例
+ * 权限以位图保存，精确匹配的权限判断只需一次位测试；通配符等隐含关系由权限字典树按段查找
+ *
+ * @author ruoyi
+ */
+public final class RoleSetAuthorizationInfo implements AuthorizationInfo {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+
+    private final Set<String> roles;
+
+    private final Set<String> permissions;
+
+    private final BitSet permissionBits;
+
+    private final PermissionTrie permissionTrie;
+
+    private final Collection<Permission> objectPermissions;
+
+    public RoleSetAuthorizationInfo(String key, Set<String> roles, Set<String> permissions) {
+        this.key = key;
+        this.roles = Collections.unmodifiableSet(new LinkedHashSet<>(roles));
+        this.permissions = Collections.unmodifiableSet(new LinkedHashSet<>(permissions));
+        BitSet bits = new BitSet();
+        List<Permission> resolved = new ArrayList<>(permissions.size());
+        for (String permission : this.permissions) {
+            bits.set(PermissionOrdinals.register(permission));
+            resolved.add(new SegmentPermission(permission));
+        }
+        this.permissionBits = bits;
+        this.permissionTrie = new PermissionTrie(resolved);
+        this.objectPermissions = Collections.singletonList(permissionTrie);
+    }
+
+    /**
+     * 角色集合标识 排序后的角色ID，以逗号分隔
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public Collection<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * 权限已预先编译为{@link PermissionTrie}，这里返回空集合，避免Realm每次判断时重复解析
+     */
+    @Override
+    public Collection<String> getStringPermissions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Collection<Permission> getObjectPermissions() {
+        return objectPermissions;
+    }
+
+    /**
+     * 原始权限字符串
+     */
+    public Set<String> getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * 判断是否拥有权限
+     *
+     * @param permission 权限字符串
+     * @return 结果
+     */
+    public boolean isPermitted(String permission) {
+        int ordinal = PermissionOrdinals.find(permission);
+        if (ordinal >= 0 && permissionBits.get(ordinal)) {
+            return true;
+        }
+        return permissionTrie.implies(new SegmentPermission(permission));
+    }
+}
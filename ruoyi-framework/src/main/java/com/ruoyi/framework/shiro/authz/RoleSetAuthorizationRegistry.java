@@ -0,0 +1,149 @@
+package com.ruoyi.framework.shiro.authz;
+
+import com.ruoyi.system.domain.SysRole;
+import com.ruoyi.system.service.ISysMenuService;
+import com.ruoyi.system.service.ISysRoleService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 授权信息驻留表 以排序后的角色ID集合为键保存授权信息
+ * 同一角色组合只查询一次权限，内存占用与角色组合数量相关，与用户数量无关
+ *
+ * @author ruoyi
+ */
+@Slf4j
+@Component
+public class RoleSetAuthorizationRegistry {
+
+    /**
+     * 管理员拥有所有权限
+     */
+    private static final RoleSetAuthorizationInfo ADMIN = new RoleSetAuthorizationInfo("admin",
+            Collections.singleton("admin"), Collections.singleton("*:*:*"));
+
+    private static final RoleSetAuthorizationInfo EMPTY = new RoleSetAuthorizationInfo("",
+            Collections.emptySet(), Collections.emptySet());
+
+    private final ISysMenuService menuService;
+
+    private final ISysRoleService roleService;
+
+    private final Map<String, RoleSetAuthorizationInfo> interned = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RoleSetAuthorizationRegistry(ISysMenuService menuService, ISysRoleService roleService) {
+        this.menuService = menuService;
+        this.roleService = roleService;
+    }
+
+    public RoleSetAuthorizationInfo admin() {
+        return ADMIN;
+    }
+
+    /**
+     * 获取角色组合对应的授权信息 不存在时查询权限并登记
+     *
+     * @param roles 用户拥有的角色
+     * @return 授权信息
+     */
+    public RoleSetAuthorizationInfo intern(List<SysRole> roles) {
+        TreeSet<Long> roleIds = new TreeSet<>();
+        for (SysRole role : roles) {
+            if (role != null && role.getRoleId() != null) {
+                roleIds.add(role.getRoleId());
+            }
+        }
+        if (roleIds.isEmpty()) {
+            return EMPTY;
+        }
+        String key = keyOf(roleIds);
+        RoleSetAuthorizationInfo info = interned.get(key);
+        if (info == null) {
+            info = interned.computeIfAbsent(key, k -> build(k, roles, new ArrayList<>(roleIds)));
+        }
+        return info;
+    }
+
+    /**
+     * 已登记的角色组合数量
+     */
+    public int size() {
+        return interned.size();
+    }
+
+    /**
+     * 重新加载包含指定角色的角色组合 新的授权信息替换驻留表中的旧实例并返回
+     *
+     * @param roleIds 发生变化的角色ID 为null时重新加载所有角色组合
+     * @return 角色组合标识与新的授权信息
+     */
+    public Map<String, RoleSetAuthorizationInfo> rebuild(Collection<Long> roleIds) {
+        Map<Long, SysRole> roles = new HashMap<>();
+        Map<String, RoleSetAuthorizationInfo> rebuilt = new HashMap<>();
+        for (String key : new ArrayList<>(interned.keySet())) {
+            List<Long> keyRoleIds = roleIdsOf(key);
+            if (roleIds != null && Collections.disjoint(keyRoleIds, roleIds)) {
+                continue;
+            }
+            List<SysRole> keyRoles = new ArrayList<>(keyRoleIds.size());
+            for (Long roleId : keyRoleIds) {
+                SysRole role = roles.computeIfAbsent(roleId, roleService::selectRoleById);
+                if (role != null) {
+                    keyRoles.add(role);
+                }
+            }
+            RoleSetAuthorizationInfo info = build(key, keyRoles, keyRoleIds);
+            interned.put(key, info);
+            rebuilt.put(key, info);
+        }
+        return rebuilt;
+    }
+
+    private RoleSetAuthorizationInfo build(String key, List<SysRole> roles, List<Long> roleIds) {
+        Set<String> roleKeys = new HashSet<>();
+        for (SysRole role : roles) {
+            if (role != null && role.getRoleKey() != null) {
+                roleKeys.addAll(Arrays.asList(role.getRoleKey().trim().split(",")));
+            }
+        }
+        Set<String> perms = menuService.selectPermsByRoleIds(roleIds);
+        if (log.isDebugEnabled()) {
+            log.debug("intern authorization info for roles [{}], {} permissions", key, perms.size());
+        }
+        return new RoleSetAuthorizationInfo(key, roleKeys, perms);
+    }
+
+    private static List<Long> roleIdsOf(String key) {
+        String[] ids = key.split(",");
+        List<Long> roleIds = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            roleIds.add(Long.valueOf(id));
+        }
+        return roleIds;
+    }
+
+    private static String keyOf(Set<Long> roleIds) {
+        StringBuilder key = new StringBuilder();
+        for (Long roleId : roleIds) {
+            if (key.length() > 0) {
+                key.append(',');
+            }
+            key.append(roleId);
+        }
+        return key.toString();
+    }
+}
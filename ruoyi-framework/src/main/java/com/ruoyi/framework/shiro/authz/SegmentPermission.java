@@ -0,0 +1,26 @@
+package com.ruoyi.framework.shiro.authz;
+
+import org.apache.shiro.authz.permission.WildcardPermission;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 分段权限 与WildcardPermission语义相同，额外公开解析后的各段，供权限字典树按段查找
+ *
+ * @author ruoyi
+ */
+public class SegmentPermission extends WildcardPermission {
+    private static final long serialVersionUID = 1L;
+
+    public SegmentPermission(String wildcardString) {
+        super(wildcardString);
+    }
+
+    /**
+     * 解析后的各段 每段为该段内以逗号分隔的取值，已转为小写
+     */
+    public List<Set<String>> segments() {
+        return getParts();
+    }
+}
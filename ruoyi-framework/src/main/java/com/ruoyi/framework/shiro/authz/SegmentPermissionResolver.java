@@ -0,0 +1,17 @@
+package com.ruoyi.framework.shiro.authz;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.PermissionResolver;
+
+/**
+ * 将权限字符串解析为{@link SegmentPermission}
+ *
+ * @author ruoyi
+ */
+public class SegmentPermissionResolver implements PermissionResolver {
+
+    @Override
+    public Permission resolvePermission(String permissionString) {
+        return new SegmentPermission(permissionString);
+    }
+}
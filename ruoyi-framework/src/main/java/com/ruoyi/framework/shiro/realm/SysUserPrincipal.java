@@ -0,0 +1,639 @@
+package com.ruoyi.framework.shiro.realm;
+
+import com.ruoyi.system.domain.SysDept;
+import com.ruoyi.system.domain.SysRole;
+import com.ruoyi.system.domain.SysUser;
+
+import com.ruoyi.common.base.BaseEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 当前登录用户的只读快照 登录或刷新用户信息时创建一次，作为Shiro的Principal保存
+ * 读取当前用户时直接返回该对象，不再复制；需要修改时通过{@link #copyOf(SysUser)}得到可修改的副本
+ * 部门、角色和日期在创建时复制为只读对象，角色列表和请求参数不可修改，读取时直接返回，不产生新对象
+ * 数组在创建时复制一份，不与来源共享
+ *
+ * @author ruoyi
+ */
+public final class SysUserPrincipal extends SysUser {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 构造完成后冻结 之后调用任何setter都会抛出异常
+     */
+    private boolean frozen;
+
+    private SysUserPrincipal(SysUser user) {
+        copy(user, this);
+        this.frozen = true;
+    }
+
+    /**
+     * 创建只读快照 已经是快照时直接返回
+     *
+     * @param user 用户信息
+     * @return 只读快照
+     */
+    public static SysUserPrincipal of(SysUser user) {
+        if (user == null || user instanceof SysUserPrincipal) {
+            return (SysUserPrincipal) user;
+        }
+        return new SysUserPrincipal(user);
+    }
+
+    /**
+     * 复制出可修改的用户信息
+     *
+     * @param user 用户信息
+     * @return 可修改的副本
+     */
+    public static SysUser copyOf(SysUser user) {
+        if (user == null) {
+            return null;
+        }
+        SysUser copy = new SysUser();
+        copy(user, copy);
+        return copy;
+    }
+
+    /**
+     * 深复制用户信息 部门、角色、日期和数组都复制一份，不与来源共享
+     * 复制到快照时部门、角色和日期为只读对象，读取时直接返回，不再复制
+     */
+    private static void copy(SysUser src, SysUser dest) {
+        boolean frozen = dest instanceof SysUserPrincipal;
+        dest.setUserId(src.getUserId());
+        dest.setDeptId(src.getDeptId());
+        dest.setParentId(src.getParentId());
+        dest.setLoginName(src.getLoginName());
+        dest.setUserName(src.getUserName());
+        dest.setEmail(src.getEmail());
+        dest.setPhonenumber(src.getPhonenumber());
+        dest.setSex(src.getSex());
+        dest.setAvatar(src.getAvatar());
+        dest.setPassword(src.getPassword());
+        dest.setSalt(src.getSalt());
+        dest.setStatus(src.getStatus());
+        dest.setDelFlag(src.getDelFlag());
+        dest.setLoginIp(src.getLoginIp());
+        dest.setLoginDate(copyDate(src.getLoginDate(), frozen));
+        dest.setDept(copyDept(src.getDept(), frozen));
+        dest.setRoles(copyRoles(src.getRoles(), frozen));
+        dest.setRoleIds(src.getRoleIds() != null ? src.getRoleIds().clone() : null);
+        dest.setPostIds(src.getPostIds() != null ? src.getPostIds().clone() : null);
+        copyBase(src, dest, frozen);
+    }
+
+    private static void copyBase(BaseEntity src, BaseEntity dest, boolean frozen) {
+        dest.setSearchValue(src.getSearchValue());
+        dest.setCreateBy(src.getCreateBy());
+        dest.setCreateTime(copyDate(src.getCreateTime(), frozen));
+        dest.setUpdateBy(src.getUpdateBy());
+        dest.setUpdateTime(copyDate(src.getUpdateTime(), frozen));
+        dest.setRemark(src.getRemark());
+    }
+
+    private static Date copyDate(Date date, boolean frozen) {
+        if (date == null) {
+            return null;
+        }
+        return frozen ? new FrozenDate(date.getTime()) : new Date(date.getTime());
+    }
+
+    private static SysDept copyDept(SysDept src, boolean frozen) {
+        if (src == null) {
+            return null;
+        }
+        SysDept dept = frozen ? new FrozenDept() : new SysDept();
+        dept.setDeptId(src.getDeptId());
+        dept.setParentId(src.getParentId());
+        dept.setAncestors(src.getAncestors());
+        dept.setDeptName(src.getDeptName());
+        dept.setOrderNum(src.getOrderNum());
+        dept.setLeader(src.getLeader());
+        dept.setPhone(src.getPhone());
+        dept.setEmail(src.getEmail());
+        dept.setStatus(src.getStatus());
+        dept.setDelFlag(src.getDelFlag());
+        dept.setParentName(src.getParentName());
+        copyBase(src, dept, frozen);
+        if (frozen) {
+            ((FrozenDept) dept).frozen = true;
+        }
+        return dept;
+    }
+
+    private static List<SysRole> copyRoles(List<SysRole> src, boolean frozen) {
+        if (src == null) {
+            return null;
+        }
+        List<SysRole> roles = new ArrayList<>(src.size());
+        for (SysRole role : src) {
+            roles.add(copyRole(role, frozen));
+        }
+        return frozen ? Collections.unmodifiableList(roles) : roles;
+    }
+
+    private static SysRole copyRole(SysRole src, boolean frozen) {
+        if (src == null) {
+            return null;
+        }
+        SysRole role = frozen ? new FrozenRole() : new SysRole();
+        role.setRoleId(src.getRoleId());
+        role.setRoleName(src.getRoleName());
+        role.setRoleKey(src.getRoleKey());
+        role.setRoleSort(src.getRoleSort());
+        role.setDataScope(src.getDataScope());
+        role.setStatus(src.getStatus());
+        role.setDelFlag(src.getDelFlag());
+        role.setFlag(src.isFlag());
+        role.setMenuIds(src.getMenuIds() != null ? src.getMenuIds().clone() : null);
+        role.setDeptIds(src.getDeptIds() != null ? src.getDeptIds().clone() : null);
+        copyBase(src, role, frozen);
+        if (frozen) {
+            ((FrozenRole) role).frozen = true;
+        }
+        return role;
+    }
+
+    /**
+     * 快照不携带请求参数
+     */
+    @Override
+    public Map<String, Object> getParams() {
+        return Collections.emptyMap();
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw readOnly();
+        }
+    }
+
+    @Override
+    public void setUserId(Long userId) {
+        checkMutable();
+        super.setUserId(userId);
+    }
+
+    @Override
+    public void setDeptId(Long deptId) {
+        checkMutable();
+        super.setDeptId(deptId);
+    }
+
+    @Override
+    public void setParentId(Long parentId) {
+        checkMutable();
+        super.setParentId(parentId);
+    }
+
+    @Override
+    public void setLoginName(String loginName) {
+        checkMutable();
+        super.setLoginName(loginName);
+    }
+
+    @Override
+    public void setUserName(String userName) {
+        checkMutable();
+        super.setUserName(userName);
+    }
+
+    @Override
+    public void setEmail(String email) {
+        checkMutable();
+        super.setEmail(email);
+    }
+
+    @Override
+    public void setPhonenumber(String phonenumber) {
+        checkMutable();
+        super.setPhonenumber(phonenumber);
+    }
+
+    @Override
+    public void setSex(String sex) {
+        checkMutable();
+        super.setSex(sex);
+    }
+
+    @Override
+    public void setAvatar(String avatar) {
+        checkMutable();
+        super.setAvatar(avatar);
+    }
+
+    @Override
+    public void setPassword(String password) {
+        checkMutable();
+        super.setPassword(password);
+    }
+
+    @Override
+    public void setSalt(String salt) {
+        checkMutable();
+        super.setSalt(salt);
+    }
+
+    @Override
+    public void setStatus(String status) {
+        checkMutable();
+        super.setStatus(status);
+    }
+
+    @Override
+    public void setDelFlag(String delFlag) {
+        checkMutable();
+        super.setDelFlag(delFlag);
+    }
+
+    @Override
+    public void setLoginIp(String loginIp) {
+        checkMutable();
+        super.setLoginIp(loginIp);
+    }
+
+    @Override
+    public void setLoginDate(Date loginDate) {
+        checkMutable();
+        super.setLoginDate(loginDate);
+    }
+
+    @Override
+    public void setDept(SysDept dept) {
+        checkMutable();
+        super.setDept(dept);
+    }
+
+    @Override
+    public void setRoles(List<SysRole> roles) {
+        checkMutable();
+        super.setRoles(roles);
+    }
+
+    @Override
+    public void setRoleIds(Long[] roleIds) {
+        checkMutable();
+        super.setRoleIds(roleIds);
+    }
+
+    @Override
+    public void setPostIds(Long[] postIds) {
+        checkMutable();
+        super.setPostIds(postIds);
+    }
+
+    @Override
+    public void setSearchValue(String searchValue) {
+        checkMutable();
+        super.setSearchValue(searchValue);
+    }
+
+    @Override
+    public void setCreateBy(String createBy) {
+        checkMutable();
+        super.setCreateBy(createBy);
+    }
+
+    @Override
+    public void setCreateTime(Date createTime) {
+        checkMutable();
+        super.setCreateTime(createTime);
+    }
+
+    @Override
+    public void setUpdateBy(String updateBy) {
+        checkMutable();
+        super.setUpdateBy(updateBy);
+    }
+
+    @Override
+    public void setUpdateTime(Date updateTime) {
+        checkMutable();
+        super.setUpdateTime(updateTime);
+    }
+
+    @Override
+    public void setRemark(String remark) {
+        checkMutable();
+        super.setRemark(remark);
+    }
+
+    @Override
+    public void setParams(Map<String, Object> params) {
+        checkMutable();
+        super.setParams(params);
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("current user principal is read-only, use SysUserPrincipal.copyOf to modify it");
+    }
+
+    /**
+     * 只读日期 修改时间的方法都会抛出异常
+     */
+    private static final class FrozenDate extends Date {
+        private static final long serialVersionUID = 1L;
+
+        FrozenDate(long time) {
+            super(time);
+        }
+
+        @Override
+        public void setTime(long time) {
+            throw readOnly();
+        }
+
+        @Override
+        @Deprecated
+        public void setYear(int year) {
+            throw readOnly();
+        }
+
+        @Override
+        @Deprecated
+        public void setMonth(int month) {
+            throw readOnly();
+        }
+
+        @Override
+        @Deprecated
+        public void setDate(int date) {
+            throw readOnly();
+        }
+
+        @Override
+        @Deprecated
+        public void setHours(int hours) {
+            throw readOnly();
+        }
+
+        @Override
+        @Deprecated
+        public void setMinutes(int minutes) {
+            throw readOnly();
+        }
+
+        @Override
+        @Deprecated
+        public void setSeconds(int seconds) {
+            throw readOnly();
+        }
+    }
+
+    /**
+     * 只读部门 复制完成后调用任何setter都会抛出异常
+     */
+    private static final class FrozenDept extends SysDept {
+        private static final long serialVersionUID = 1L;
+
+        private boolean frozen;
+
+        private void checkMutable() {
+            if (frozen) {
+                throw readOnly();
+            }
+        }
+
+        @Override
+        public Map<String, Object> getParams() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setDeptId(Long deptId) {
+            checkMutable();
+            super.setDeptId(deptId);
+        }
+
+        @Override
+        public void setParentId(Long parentId) {
+            checkMutable();
+            super.setParentId(parentId);
+        }
+
+        @Override
+        public void setAncestors(String ancestors) {
+            checkMutable();
+            super.setAncestors(ancestors);
+        }
+
+        @Override
+        public void setDeptName(String deptName) {
+            checkMutable();
+            super.setDeptName(deptName);
+        }
+
+        @Override
+        public void setOrderNum(String orderNum) {
+            checkMutable();
+            super.setOrderNum(orderNum);
+        }
+
+        @Override
+        public void setLeader(String leader) {
+            checkMutable();
+            super.setLeader(leader);
+        }
+
+        @Override
+        public void setPhone(String phone) {
+            checkMutable();
+            super.setPhone(phone);
+        }
+
+        @Override
+        public void setEmail(String email) {
+            checkMutable();
+            super.setEmail(email);
+        }
+
+        @Override
+        public void setStatus(String status) {
+            checkMutable();
+            super.setStatus(status);
+        }
+
+        @Override
+        public void setDelFlag(String delFlag) {
+            checkMutable();
+            super.setDelFlag(delFlag);
+        }
+
+        @Override
+        public void setParentName(String parentName) {
+            checkMutable();
+            super.setParentName(parentName);
+        }
+
+        @Override
+        public void setSearchValue(String searchValue) {
+            checkMutable();
+            super.setSearchValue(searchValue);
+        }
+
+        @Override
+        public void setCreateBy(String createBy) {
+            checkMutable();
+            super.setCreateBy(createBy);
+        }
+
+        @Override
+        public void setCreateTime(Date createTime) {
+            checkMutable();
+            super.setCreateTime(createTime);
+        }
+
+        @Override
+        public void setUpdateBy(String updateBy) {
+            checkMutable();
+            super.setUpdateBy(updateBy);
+        }
+
+        @Override
+        public void setUpdateTime(Date updateTime) {
+            checkMutable();
+            super.setUpdateTime(updateTime);
+        }
+
+        @Override
+        public void setRemark(String remark) {
+            checkMutable();
+            super.setRemark(remark);
+        }
+
+        @Override
+        public void setParams(Map<String, Object> params) {
+            checkMutable();
+            super.setParams(params);
+        }
+    }
+
+    /**
+     * 只读角色 复制完成后调用任何setter都会抛出异常
+     */
+    private static final class FrozenRole extends SysRole {
+        private static final long serialVersionUID = 1L;
+
+        private boolean frozen;
+
+        private void checkMutable() {
+            if (frozen) {
+                throw readOnly();
+            }
+        }
+
+        @Override
+        public Map<String, Object> getParams() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setRoleId(Long roleId) {
+            checkMutable();
+            super.setRoleId(roleId);
+        }
+
+        @Override
+        public void setRoleName(String roleName) {
+            checkMutable();
+            super.setRoleName(roleName);
+        }
+
+        @Override
+        public void setRoleKey(String roleKey) {
+            checkMutable();
+            super.setRoleKey(roleKey);
+        }
+
+        @Override
+        public void setRoleSort(String roleSort) {
+            checkMutable();
+            super.setRoleSort(roleSort);
+        }
+
+        @Override
+        public void setDataScope(String dataScope) {
+            checkMutable();
+            super.setDataScope(dataScope);
+        }
+
+        @Override
+        public void setStatus(String status) {
+            checkMutable();
+            super.setStatus(status);
+        }
+
+        @Override
+        public void setDelFlag(String delFlag) {
+            checkMutable();
+            super.setDelFlag(delFlag);
+        }
+
+        @Override
+        public void setFlag(boolean flag) {
+            checkMutable();
+            super.setFlag(flag);
+        }
+
+        @Override
+        public void setMenuIds(Long[] menuIds) {
+            checkMutable();
+            super.setMenuIds(menuIds);
+        }
+
+        @Override
+        public void setDeptIds(Long[] deptIds) {
+            checkMutable();
+            super.setDeptIds(deptIds);
+        }
+
+        @Override
+        public void setSearchValue(String searchValue) {
+            checkMutable();
+            super.setSearchValue(searchValue);
+        }
+
+        @Override
+        public void setCreateBy(String createBy) {
+            checkMutable();
+            super.setCreateBy(createBy);
+        }
+
+        @Override
+        public void setCreateTime(Date createTime) {
+            checkMutable();
+            super.setCreateTime(createTime);
+        }
+
+        @Override
+        public void setUpdateBy(String updateBy) {
+            checkMutable();
+            super.setUpdateBy(updateBy);
+        }
+
+        @Override
+        public void setUpdateTime(Date updateTime) {
+            checkMutable();
+            super.setUpdateTime(updateTime);
+        }
+
+        @Override
+        public void setRemark(String remark) {
+            checkMutable();
+            super.setRemark(remark);
+        }
+
+        @Override
+        public void setParams(Map<String, Object> params) {
+            checkMutable();
+            super.setParams(params);
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package com.ruoyi.framework.shiro.realm;
 
+import com.ruoyi.framework.manager.AsyncManager;
+import com.ruoyi.framework.shiro.authz.RoleSetAuthorizationInfo;
+import com.ruoyi.framework.shiro.authz.RoleSetAuthorizationRegistry;
+import com.ruoyi.framework.shiro.authz.SegmentPermissionResolver;
 import com.ruoyi.framework.shiro.service.SysLoginService;
-import com.ruoyi.framework.util.ShiroUtils;
 import com.ruoyi.framework.web.exception.user.*;
+import com.ruoyi.system.domain.SysRole;
 import com.ruoyi.system.domain.SysUser;
-import com.ruoyi.system.service.ISysMenuService;
 import com.ruoyi.system.service.ISysRoleService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.*;
 import org.apache.shiro.authz.AuthorizationInfo;
-import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.Cache;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 自定义Realm 处理登录 权限
@@ -25,8 +41,10 @@ import java.util.Set;
 @Slf4j
 public class UserRealm extends AuthorizingRealm {
 
-    @Autowired
-    private ISysMenuService menuService;
+    /**
+     * 请求内缓存权限判断结果的属性名
+     */
+    private static final String PERMISSION_DECISIONS_ATTRIBUTE = UserRealm.class.getName() + ".PERMISSION_DECISIONS";
 
     @Autowired
     private ISysRoleService roleService;
@@ -34,31 +52,65 @@ public class UserRealm extends AuthorizingRealm {
     @Autowired
     private SysLoginService loginService;
 
+    @Autowired
+    private RoleSetAuthorizationRegistry authorizationRegistry;
+
     /**
-     * 授权
+     * 角色组合到缓存了该授权信息的用户的反向索引 弱引用，会话结束后自动回收
      */
-    @Override
-    protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection arg0) {
-        SysUser user = ShiroUtils.getSysUser();
+    private final Map<String, Set<PrincipalCollection>> principalsByRoleSet = new ConcurrentHashMap<>();
 
-        SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+    public UserRealm() {
+        setPermissionResolver(new SegmentPermissionResolver());
+    }
+
+    /**
+     * 授权 相同角色组合的用户共用同一份授权信息
+     */
+    @Override
+    protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+        SysUser user = (SysUser) principals.getPrimaryPrincipal();
         // 管理员拥有所有权限
         if (user.isAdmin()) {
-            info.addRole("admin");
-            info.addStringPermission("*:*:*");
-        } else {
-            // 角色列表
-            Set<String> roles = roleService.selectRoleKeys(user.getUserId());
-            // 功能列表
-            Set<String> menus = menuService.selectPermsByUserId(user.getUserId());
-            // 角色加入AuthorizationInfo认证对象
-            info.setRoles(roles);
-            // 权限加入AuthorizationInfo认证对象
-            info.setStringPermissions(menus);
+            return authorizationRegistry.admin();
         }
+        List<SysRole> roles = roleService.selectUserRoles(user.getUserId());
+        RoleSetAuthorizationInfo info = authorizationRegistry.intern(roles);
+        principalsByRoleSet.computeIfAbsent(info.getKey(), key -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())))
+                .add(principals);
         return info;
     }
 
+    /**
+     * 权限判断 精确匹配的权限直接按位图判断，其余按权限字典树查找，同一请求内的结果会被缓存
+     */
+    @Override
+    public boolean isPermitted(PrincipalCollection principals, String permission) {
+        AuthorizationInfo info = getAuthorizationInfo(principals);
+        if (!(info instanceof RoleSetAuthorizationInfo)) {
+            return super.isPermitted(principals, permission);
+        }
+        RoleSetAuthorizationInfo roleSetInfo = (RoleSetAuthorizationInfo) info;
+        PermissionDecisions decisions = requestDecisions(roleSetInfo);
+        if (decisions == null) {
+            return roleSetInfo.isPermitted(permission);
+        }
+        return decisions.results.computeIfAbsent(permission, roleSetInfo::isPermitted);
+    }
+
+    private static PermissionDecisions requestDecisions(RoleSetAuthorizationInfo info) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        PermissionDecisions decisions = (PermissionDecisions) attributes.getAttribute(PERMISSION_DECISIONS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (decisions == null || decisions.info != info) {
+            decisions = new PermissionDecisions(info);
+            attributes.setAttribute(PERMISSION_DECISIONS_ATTRIBUTE, decisions, RequestAttributes.SCOPE_REQUEST);
+        }
+        return decisions;
+    }
+
     /**
      * 登录认证
      */
@@ -80,7 +132,7 @@ public class UserRealm extends AuthorizingRealm {
             throw new UnknownAccountException(e.getMessage(), e);
         } catch (UserPasswordNotMatchException e) {
             throw new IncorrectCredentialsException(e.getMessage(), e);
-        } catch (UserPasswordRetryLimitExceedException e) {
+        } catch (UserPasswordRetryLimitExceedException | LoginThrottledException e) {
             throw new ExcessiveAttemptsException(e.getMessage(), e);
         } catch (UserBlockedException | RoleBlockedException e) {
             throw new LockedAccountException(e.getMessage(), e);
@@ -88,7 +140,7 @@ public class UserRealm extends AuthorizingRealm {
             log.info(String.format("对用户[%s]进行登录验证..验证未通过%s" ,username, e.getMessage()), e);
             throw new AuthenticationException(e.getMessage(), e);
         }
-        return new SimpleAuthenticationInfo(user, password, getName());
+        return new SimpleAuthenticationInfo(SysUserPrincipal.of(user), password, getName());
     }
 
     /**
@@ -97,4 +149,82 @@ public class UserRealm extends AuthorizingRealm {
     public void clearCachedAuthorizationInfo() {
         this.clearCachedAuthorizationInfo(SecurityUtils.getSubject().getPrincipals());
     }
+
+    @Override
+    protected void clearCachedAuthorizationInfo(PrincipalCollection principals) {
+        super.clearCachedAuthorizationInfo(principals);
+        if (principals != null) {
+            for (Set<PrincipalCollection> indexed : principalsByRoleSet.values()) {
+                indexed.remove(principals);
+            }
+        }
+    }
+
+    /**
+     * 角色或菜单变更后刷新授权信息 只重新加载包含这些角色的角色组合，并替换对应用户的缓存
+     * 在后台执行，刷新完成前仍使用旧的授权信息；存在事务时在提交后执行
+     *
+     * @param roleIds 发生变化的角色ID 为null时刷新所有角色组合
+     */
+    public void refreshAuthorizationInfo(Collection<Long> roleIds) {
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    replaceCachedAuthorizationInfo(authorizationRegistry.rebuild(roleIds));
+                } catch (Exception e) {
+                    log.error("refresh authorization info for roles {} error.", roleIds, e);
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    AsyncManager.me().execute(task);
+                }
+            });
+        } else {
+            AsyncManager.me().execute(task);
+        }
+    }
+
+    private void replaceCachedAuthorizationInfo(Map<String, RoleSetAuthorizationInfo> rebuilt) {
+        Cache<Object, AuthorizationInfo> cache = getAuthorizationCache();
+        int replaced = 0;
+        for (Map.Entry<String, RoleSetAuthorizationInfo> entry : rebuilt.entrySet()) {
+            Set<PrincipalCollection> indexed = principalsByRoleSet.get(entry.getKey());
+            if (indexed == null) {
+                continue;
+            }
+            List<PrincipalCollection> principals;
+            synchronized (indexed) {
+                principals = new ArrayList<>(indexed);
+            }
+            for (PrincipalCollection principal : principals) {
+                AuthorizationInfo cached = cache != null ? cache.get(getAuthorizationCacheKey(principal)) : null;
+                // 缓存已过期或用户的角色组合已变化
+                if (!(cached instanceof RoleSetAuthorizationInfo) || !entry.getKey().equals(((RoleSetAuthorizationInfo) cached).getKey())) {
+                    indexed.remove(principal);
+                    continue;
+                }
+                cache.put(getAuthorizationCacheKey(principal), entry.getValue());
+                replaced++;
+            }
+        }
+        log.info("refreshed {} role combinations, replaced {} cached authorization entries", rebuilt.size(), replaced);
+    }
+
+    /**
+     * 单个请求内的权限判断结果 授权信息变化时重新记录
+     */
+    private static final class PermissionDecisions {
+        private final RoleSetAuthorizationInfo info;
+
+        private final Map<String, Boolean> results = new HashMap<>();
+
+        PermissionDecisions(RoleSetAuthorizationInfo info) {
+            this.info = info;
+        }
+    }
 }
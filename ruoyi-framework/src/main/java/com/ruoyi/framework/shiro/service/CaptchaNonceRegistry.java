@@ -0,0 +1,18 @@
+package com.ruoyi.framework.shiro.service;
+
+/**
+ * 已使用的验证码令牌随机数登记 用于防止令牌重放，登记在令牌过期后失效
+ *
+ * @author ruoyi
+ */
+public interface CaptchaNonceRegistry {
+
+    /**
+     * 登记随机数
+     *
+     * @param nonce     令牌随机数
+     * @param ttlMillis 登记的保留时长 即令牌剩余的有效期，单位毫秒
+     * @return 首次登记返回true，保留期内已登记过返回false
+     */
+    boolean register(String nonce, long ttlMillis);
+}
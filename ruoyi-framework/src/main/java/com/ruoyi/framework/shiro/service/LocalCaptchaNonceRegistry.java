@@ -0,0 +1,39 @@
+package com.ruoyi.framework.shiro.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本机验证码令牌随机数登记 只能发现同一节点上的重放
+ * 登记数量超过上限时清理已过期的随机数
+ *
+ * @author ruoyi
+ */
+public class LocalCaptchaNonceRegistry implements CaptchaNonceRegistry {
+
+    private final int maxNonces;
+
+    /**
+     * 随机数及其过期时间
+     */
+    private final Map<String, Long> nonces = new ConcurrentHashMap<>();
+
+    public LocalCaptchaNonceRegistry(int maxNonces) {
+        this.maxNonces = maxNonces;
+    }
+
+    @Override
+    public boolean register(String nonce, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        if (nonces.size() >= maxNonces) {
+            nonces.values().removeIf(expireAt -> expireAt <= now);
+        }
+        long expireAt = now + ttlMillis;
+        Long previous = nonces.putIfAbsent(nonce, expireAt);
+        if (previous == null) {
+            return true;
+        }
+        // 已过期的登记视为未登记
+        return previous <= now && nonces.replace(nonce, previous, expireAt);
+    }
+}
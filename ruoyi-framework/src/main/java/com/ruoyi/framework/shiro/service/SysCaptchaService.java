@@ -0,0 +1,172 @@
+package com.ruoyi.framework.shiro.service;
+
+import com.google.code.kaptcha.Producer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 验证码预生成池 后台线程预先渲染并编码验证码图片，请求线程只取出已编码的字节
+ * 每个验证码只发放一次，池为空时在请求线程上直接生成
+ *
+ * @author ruoyi
+ */
+@Slf4j
+@Component
+public class SysCaptchaService {
+
+    public static final String TYPE_MATH = "math";
+
+    public static final String TYPE_CHAR = "char";
+
+    /**
+     * 补充间隔 单位毫秒
+     */
+    private static final long REFILL_INTERVAL = 200;
+
+    @Resource(name = "captchaProducer")
+    private Producer captchaProducer;
+
+    @Resource(name = "captchaProducerMath")
+    private Producer captchaProducerMath;
+
+    /**
+     * 每种验证码预生成的数量
+     */
+    @Value("${shiro.user.captchaPoolSize:256}")
+    private int poolSize;
+
+    private BlockingQueue<Captcha> mathPool;
+
+    private BlockingQueue<Captcha> charPool;
+
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    private ScheduledExecutorService refillExecutor;
+
+    @PostConstruct
+    public void init() {
+        mathPool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        charPool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        if (poolSize > 0) {
+            refillExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new BasicThreadFactory.Builder().namingPattern("captcha-refill-%d").daemon(true).priority(Thread.MIN_PRIORITY).build());
+            refillExecutor.scheduleWithFixedDelay(this::refill, 0, REFILL_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refillExecutor != null) {
+            refillExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 取出一个验证码
+     *
+     * @param type 验证码类型 math或char
+     * @return 验证码 类型不支持时返回null
+     */
+    public Captcha take(String type) {
+        BlockingQueue<Captcha> pool;
+        if (TYPE_MATH.equals(type)) {
+            pool = mathPool;
+        } else if (TYPE_CHAR.equals(type)) {
+            pool = charPool;
+        } else {
+            return null;
+        }
+        Captcha captcha = pool.poll();
+        if (captcha == null) {
+            try {
+                captcha = render(type);
+            } catch (IOException e) {
+                log.error("验证码生成异常!", e);
+            }
+        }
+        return captcha;
+    }
+
+    private void refill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            fill(mathPool, TYPE_MATH);
+            fill(charPool, TYPE_CHAR);
+        } catch (Exception e) {
+            log.error("验证码预生成异常!", e);
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    private void fill(BlockingQueue<Captcha> pool, String type) throws IOException {
+        while (pool.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+            if (!pool.offer(render(type))) {
+                return;
+            }
+        }
+    }
+
+    private Captcha render(String type) throws IOException {
+        String code;
+        BufferedImage image;
+        if (TYPE_MATH.equals(type)) {
+            String capText = captchaProducerMath.createText();
+            String capStr = capText.substring(0, capText.lastIndexOf('@'));
+            code = capText.substring(capText.lastIndexOf('@') + 1);
+            image = captchaProducerMath.createImage(capStr);
+        } else {
+            code = captchaProducer.createText();
+            image = captchaProducer.createImage(code);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        ImageIO.write(image, "jpg", bytes);
+        return new Captcha(code, bytes.toByteArray());
+    }
+
+    /**
+     * 已编码的验证码
+     */
+    public static final class Captcha {
+        private final String code;
+
+        private final byte[] image;
+
+        Captcha(String code, byte[] image) {
+            this.code = code;
+            this.image = image;
+        }
+
+        /**
+         * 验证码答案
+         */
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * JPEG编码的图片
+         */
+        public byte[] getImage() {
+            return image;
+        }
+    }
+}
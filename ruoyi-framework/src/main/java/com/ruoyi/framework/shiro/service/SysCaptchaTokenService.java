@@ -0,0 +1,184 @@
+package com.ruoyi.framework.shiro.service;
+
+import com.ruoyi.common.utils.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 无状态验证码令牌 验证码答案不保存在会话中，而是与过期时间、随机数一起做HMAC签名后下发到Cookie
+ * 校验时用提交的答案重新计算签名，匿名访问不再需要创建会话；已使用令牌的随机数登记到 {@link CaptchaNonceRegistry}，
+ * 保留到令牌过期为止，防止重放。shiro.user.captchaNonceStore 为 remote 时各节点共享登记，为 local 时只能防止同一节点上的重放
+ *
+ * @author ruoyi
+ */
+@Slf4j
+@Component
+public class SysCaptchaTokenService {
+
+    /**
+     * 令牌Cookie及表单参数名
+     */
+    public static final String TOKEN_NAME = "captchaToken";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final CaptchaNonceRegistry nonceRegistry;
+
+    /**
+     * 验证码答案的保存方式 session会话 token签名令牌
+     */
+    @Value("${shiro.user.captchaMode:session}")
+    private String captchaMode;
+
+    /**
+     * 签名密钥 多节点部署时必须配置为相同的值，为空时启动时随机生成
+     */
+    @Value("${shiro.user.captchaSecret:}")
+    private String secret;
+
+    /**
+     * 令牌有效期，单位秒
+     */
+    @Value("${shiro.user.captchaTokenTtl:300}")
+    private int tokenTtl;
+
+    @Value("${shiro.cookie.path:/}")
+    private String cookiePath;
+
+    private SecretKeySpec key;
+
+    @Autowired
+    public SysCaptchaTokenService(CaptchaNonceRegistry nonceRegistry) {
+        this.nonceRegistry = nonceRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes;
+        if (StringUtils.isEmpty(secret)) {
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    /**
+     * 是否使用签名令牌保存验证码答案
+     */
+    public boolean isTokenMode() {
+        return "token".equalsIgnoreCase(captchaMode);
+    }
+
+    /**
+     * 签发令牌并写入Cookie
+     *
+     * @param code 验证码答案
+     * @param response 响应
+     */
+    public void issue(String code, HttpServletResponse response) {
+        byte[] nonceBytes = new byte[12];
+        random.nextBytes(nonceBytes);
+        String nonce = ENCODER.encodeToString(nonceBytes);
+        long expiresAt = System.currentTimeMillis() + tokenTtl * 1000L;
+        String token = expiresAt + "." + nonce + "." + sign(expiresAt, nonce, code);
+        Cookie cookie = new Cookie(TOKEN_NAME, token);
+        cookie.setPath(cookiePath);
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(tokenTtl);
+        response.addCookie(cookie);
+    }
+
+    /**
+     * 校验请求中的令牌与提交的答案 令牌只能使用一次
+     *
+     * @param request 请求
+     * @param response 响应 用于清除Cookie
+     * @param validateCode 提交的验证码答案
+     * @return 结果
+     */
+    public boolean verify(HttpServletRequest request, HttpServletResponse response, String validateCode) {
+        String token = readToken(request);
+        if (StringUtils.isEmpty(token) || StringUtils.isEmpty(validateCode)) {
+            return false;
+        }
+        clear(response);
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return false;
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (expiresAt < now) {
+            return false;
+        }
+        byte[] expected = sign(expiresAt, parts[1], validateCode).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, parts[2].getBytes(StandardCharsets.US_ASCII))) {
+            return false;
+        }
+        // 登记保留到令牌过期 之后令牌本身已失效
+        return nonceRegistry.register(parts[1], Math.max(1L, expiresAt - now));
+    }
+
+    private String readToken(HttpServletRequest request) {
+        String token = request.getParameter(TOKEN_NAME);
+        if (StringUtils.isNotEmpty(token)) {
+            return token;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (TOKEN_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void clear(HttpServletResponse response) {
+        Cookie cookie = new Cookie(TOKEN_NAME, "");
+        cookie.setPath(cookiePath);
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(0);
+        response.addCookie(cookie);
+    }
+
+    /**
+     * 答案不区分大小写
+     */
+    private String sign(long expiresAt, String nonce, String code) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            String data = expiresAt + "." + nonce + "." + code.toLowerCase();
+            return ENCODER.encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("captcha token signing failed", e);
+        }
+    }
+}
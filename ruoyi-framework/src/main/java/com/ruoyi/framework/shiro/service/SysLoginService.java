@@ -9,15 +9,17 @@ import com.ruoyi.common.constant.UserConstants;
 import com.ruoyi.common.enums.UserStatus;
 import com.ruoyi.common.utils.DateUtils;
 import com.ruoyi.framework.manager.AsyncManager;
-import com.ruoyi.framework.manager.factory.AsyncFactory;
-import com.ruoyi.framework.util.MessageUtils;
+import com.ruoyi.framework.shiro.throttle.LoginAttempt;
+import com.ruoyi.framework.shiro.throttle.LoginThrottle;
 import com.ruoyi.framework.util.ServletUtils;
 import com.ruoyi.framework.util.ShiroUtils;
 import com.ruoyi.framework.web.exception.user.CaptchaException;
+import com.ruoyi.framework.web.exception.user.LoginThrottledException;
 import com.ruoyi.framework.web.exception.user.UserBlockedException;
 import com.ruoyi.framework.web.exception.user.UserDeleteException;
 import com.ruoyi.framework.web.exception.user.UserNotExistsException;
 import com.ruoyi.framework.web.exception.user.UserPasswordNotMatchException;
+import com.ruoyi.framework.web.exception.user.UserPasswordRetryLimitExceedException;
 import com.ruoyi.system.domain.SysUser;
 import com.ruoyi.system.service.ISysUserService;
 
@@ -33,10 +35,13 @@ public class SysLoginService {
 
     private final ISysUserService userService;
 
+    private final LoginThrottle loginThrottle;
+
     @Autowired
-    public SysLoginService(SysPasswordService passwordService, ISysUserService userService) {
+    public SysLoginService(SysPasswordService passwordService, ISysUserService userService, LoginThrottle loginThrottle) {
         this.passwordService = passwordService;
         this.userService = userService;
+        this.loginThrottle = loginThrottle;
     }
 
     /**
@@ -45,28 +50,35 @@ public class SysLoginService {
     public SysUser login(String username, String password) {
         // 验证码校验
         if (!StringUtils.isEmpty(ServletUtils.getRequest().getAttribute(ShiroConstants.CURRENT_CAPTCHA))) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_FAIL, MessageUtils.message("user.jcaptcha.error")));
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.jcaptcha.error");
             throw new CaptchaException();
         }
         // 用户名或密码为空 错误
         if (StringUtils.isEmpty(username) || StringUtils.isEmpty(password)) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_FAIL, MessageUtils.message("not.null")));
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "not.null");
             throw new UserNotExistsException();
         }
         // 密码如果不在指定范围内 错误
         if (password.length() < UserConstants.PASSWORD_MIN_LENGTH
                 || password.length() > UserConstants.PASSWORD_MAX_LENGTH) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_FAIL, MessageUtils.message("user.password.not.match")));
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.password.not.match");
             throw new UserPasswordNotMatchException();
         }
 
         // 用户名不在指定范围内 错误
         if (username.length() < UserConstants.USERNAME_MIN_LENGTH
                 || username.length() > UserConstants.USERNAME_MAX_LENGTH) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_FAIL, MessageUtils.message("user.password.not.match")));
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.password.not.match");
             throw new UserPasswordNotMatchException();
         }
 
+        // 预占本次尝试 来源失败次数过多时在查询数据库之前拒绝
+        LoginAttempt attempt = loginThrottle.acquire(loginThrottle.sourceOf(ServletUtils.getRequest()));
+        if (attempt.isSourceThrottled()) {
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.login.throttled");
+            throw new LoginThrottledException();
+        }
+
         // 查询用户信息
         SysUser user = userService.selectUserByLoginName(username);
 
@@ -79,23 +91,31 @@ public class SysLoginService {
         }
 
         if (user == null) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_FAIL, MessageUtils.message("user.not.exists")));
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.not.exists");
             throw new UserNotExistsException();
         }
 
+        // 按登录名预占 以手机号或邮箱登录时与登录名共用失败次数
+        if (loginThrottle.reserveUser(attempt, user.getLoginName())) {
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.password.retry.limit.exceed", loginThrottle.getMaxRetryCount());
+            throw new UserPasswordRetryLimitExceedException(loginThrottle.getMaxRetryCount());
+        }
+
         if (UserStatus.DELETED.getCode().equals(user.getDelFlag())) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_FAIL, MessageUtils.message("user.password.delete")));
+            loginThrottle.release(attempt);
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.password.delete");
             throw new UserDeleteException();
         }
 
         if (UserStatus.DISABLE.getCode().equals(user.getStatus())) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_FAIL, MessageUtils.message("user.blocked" , user.getRemark())));
+            loginThrottle.release(attempt);
+            AsyncManager.me().recordLogininfor(username, Constants.LOGIN_FAIL, "user.blocked", user.getRemark());
             throw new UserBlockedException(user.getRemark());
         }
 
-        passwordService.validate(user, password);
+        passwordService.validate(user, password, attempt);
 
-        AsyncManager.me().execute(AsyncFactory.recordLogininfor(username, Constants.LOGIN_SUCCESS, MessageUtils.message("user.login.success")));
+        AsyncManager.me().recordLogininfor(username, Constants.LOGIN_SUCCESS, "user.login.success");
         recordLoginInfo(user);
         return user;
     }
@@ -1,20 +1,13 @@
 package com.ruoyi.framework.shiro.service;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import javax.annotation.PostConstruct;
-
-import org.apache.shiro.cache.Cache;
-import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.crypto.hash.Md5Hash;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import com.ruoyi.common.constant.Constants;
 import com.ruoyi.framework.manager.AsyncManager;
-import com.ruoyi.framework.manager.factory.AsyncFactory;
-import com.ruoyi.framework.util.MessageUtils;
+import com.ruoyi.framework.shiro.throttle.LoginAttempt;
+import com.ruoyi.framework.shiro.throttle.LoginThrottle;
 import com.ruoyi.framework.web.exception.user.UserPasswordNotMatchException;
-import com.ruoyi.framework.web.exception.user.UserPasswordRetryLimitExceedException;
 import com.ruoyi.system.domain.SysUser;
 
 /**
@@ -25,54 +18,32 @@ import com.ruoyi.system.domain.SysUser;
 @Component
 public class SysPasswordService {
 
-    private final CacheManager cacheManager;
-
-    private Cache<String, AtomicInteger> loginRecordCache;
-
-    @Value(value = "${user.password.maxRetryCount}")
-    private String maxRetryCount;
+    private final LoginThrottle loginThrottle;
 
     @Autowired
-    public SysPasswordService(CacheManager cacheManager) {
-        this.cacheManager = cacheManager;
+    public SysPasswordService(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
     }
 
-    @PostConstruct
-    public void init() {
-        loginRecordCache = cacheManager.getCache("loginRecordCache");
-    }
-
-    public void validate(SysUser user, String password) {
-        String loginName = user.getLoginName();
-
-        AtomicInteger retryCount = loginRecordCache.get(loginName);
-
-        if (retryCount == null) {
-            retryCount = new AtomicInteger(0);
-            loginRecordCache.put(loginName, retryCount);
-        }
-        if (retryCount.incrementAndGet() > Integer.parseInt(maxRetryCount)) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(loginName, Constants.LOGIN_FAIL, MessageUtils.message("user.password.retry.limit.exceed" , maxRetryCount)));
-            throw new UserPasswordRetryLimitExceedException(Integer.parseInt(maxRetryCount));
-        }
-
+    /**
+     * 校验密码 预占的尝试在密码错误时计为失败，正确时交回
+     *
+     * @param user 用户信息
+     * @param password 密码
+     * @param attempt 登录前预占的尝试
+     */
+    public void validate(SysUser user, String password, LoginAttempt attempt) {
         if (!matches(user, password)) {
-            AsyncManager.me().execute(AsyncFactory.recordLogininfor(loginName, Constants.LOGIN_FAIL, MessageUtils.message("user.password.retry.limit.count" , retryCount)));
-            loginRecordCache.put(loginName, retryCount);
+            AsyncManager.me().recordLogininfor(user.getLoginName(), Constants.LOGIN_FAIL, "user.password.retry.limit.count", attempt.getFailures());
             throw new UserPasswordNotMatchException();
-        } else {
-            clearLoginRecordCache(loginName);
         }
+        loginThrottle.succeed(attempt);
     }
 
     public boolean matches(SysUser user, String newPassword) {
         return user.getPassword().equals(encryptPassword(user.getLoginName(), newPassword, user.getSalt()));
     }
 
-    private void clearLoginRecordCache(String username) {
-        loginRecordCache.remove(username);
-    }
-
     public String encryptPassword(String username, String password, String salt) {
         return new Md5Hash(username + password + salt).toHex();
     }
@@ -55,6 +55,11 @@ public class OnlineSession extends SimpleSession {
      */
     private transient boolean attributeChanged = false;
 
+    /**
+     * 会话内容变更次数 不含最后访问时间，集群存储据此判断是否需要立即写回
+     */
+    private transient int changeCount = 0;
+
     @Override
     public String getHost() {
         return host;
@@ -65,6 +70,11 @@ public class OnlineSession extends SimpleSession {
         this.host = host;
     }
 
+    public void setStatus(OnlineStatus status) {
+        this.status = status;
+        this.changeCount++;
+    }
+
     void resetAttributeChanged() {
         this.attributeChanged = false;
     }
@@ -75,15 +85,40 @@ public class OnlineSession extends SimpleSession {
 
     public void markAttributeChanged() {
         this.attributeChanged = true;
+        this.changeCount++;
+    }
+
+    public int getChangeCount() {
+        return changeCount;
     }
 
     @Override
     public void setAttribute(Object key, Object value) {
         super.setAttribute(key, value);
+        this.changeCount++;
     }
 
     @Override
     public Object removeAttribute(Object key) {
+        this.changeCount++;
         return super.removeAttribute(key);
     }
+
+    @Override
+    public void setTimeout(long timeout) {
+        super.setTimeout(timeout);
+        this.changeCount++;
+    }
+
+    @Override
+    public void setExpired(boolean expired) {
+        super.setExpired(expired);
+        this.changeCount++;
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        this.changeCount++;
+    }
 }
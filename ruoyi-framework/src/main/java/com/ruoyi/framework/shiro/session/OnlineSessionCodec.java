@@ -0,0 +1,664 @@
+package com.ruoyi.framework.shiro.session;
+
+import com.google.code.kaptcha.Constants;
+import com.ruoyi.common.base.BaseEntity;
+import com.ruoyi.common.enums.OnlineStatus;
+import com.ruoyi.framework.shiro.realm.SysUserPrincipal;
+import com.ruoyi.system.domain.SysDept;
+import com.ruoyi.system.domain.SysRole;
+import com.ruoyi.system.domain.SysUser;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.support.DefaultSubjectContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在线会话的二进制编码 代替Java默认序列化用于会话的持久化与集群复制
+ * 会话字段和已知属性（登录用户、同步数据库时间、验证码）按固定结构写入，未知类型的属性才使用Java序列化
+ * 同一份数据中重复出现的字符串只写一次，解码时浏览器、操作系统、部门名称等取值较少的字符串共用同一个实例
+ * 数据以魔数和版本号开头，不以魔数开头的数据按Java序列化读取，兼容升级前保存的会话
+ *
+ * @author ruoyi
+ */
+public final class OnlineSessionCodec {
+
+    private static final byte MAGIC = (byte) 0xB5;
+
+    private static final byte VERSION = 1;
+
+    /**
+     * 属性值类型
+     */
+    private static final byte TYPE_NULL = 0;
+
+    private static final byte TYPE_STRING = 1;
+
+    private static final byte TYPE_DATE = 2;
+
+    private static final byte TYPE_BOOLEAN = 3;
+
+    private static final byte TYPE_LONG = 4;
+
+    private static final byte TYPE_INTEGER = 5;
+
+    private static final byte TYPE_PRINCIPALS = 6;
+
+    private static final byte TYPE_SERIALIZED = 7;
+
+    /**
+     * 属性键 前两个分别表示字符串键和需要序列化的键，其余为已知属性的编号
+     */
+    private static final int KEY_STRING = 0;
+
+    private static final int KEY_SERIALIZED = 1;
+
+    private static final String[] KNOWN_KEYS = {
+            null,
+            null,
+            DefaultSubjectContext.PRINCIPALS_SESSION_KEY,
+            DefaultSubjectContext.AUTHENTICATED_SESSION_KEY,
+            OnlineSessionDAO.LAST_SYNC_DB_TIMESTAMP,
+            Constants.KAPTCHA_SESSION_KEY
+    };
+
+    private static final Map<String, Integer> KNOWN_KEY_IDS = new HashMap<>();
+
+    /**
+     * 共用实例的字符串最多保存的数量 超过后不再加入，只影响内存占用不影响结果
+     */
+    private static final int MAX_INTERNED = 4096;
+
+    private static final Map<String, String> INTERNED = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = KEY_SERIALIZED + 1; i < KNOWN_KEYS.length; i++) {
+            KNOWN_KEY_IDS.put(KNOWN_KEYS[i], i);
+        }
+    }
+
+    private OnlineSessionCodec() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 编码会话
+     *
+     * @param session 会话
+     * @return 编码后的数据
+     */
+    public static byte[] encode(OnlineSession session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        Writer out = new Writer(new DataOutputStream(bytes));
+        out.data.writeByte(MAGIC);
+        out.data.writeByte(VERSION);
+
+        Serializable id = session.getId();
+        if (id == null || id instanceof String) {
+            out.data.writeBoolean(true);
+            out.writeString((String) id);
+        } else {
+            out.data.writeBoolean(false);
+            out.writeSerialized(id);
+        }
+        out.writeDate(session.getStartTimestamp());
+        out.writeDate(session.getStopTimestamp());
+        out.writeDate(session.getLastAccessTime());
+        out.writeVarLong(zigZag(session.getTimeout()));
+        out.data.writeBoolean(session.isExpired());
+
+        out.writeNullableLong(session.getUserId());
+        out.writeString(session.getLoginName());
+        out.writeString(session.getDeptName());
+        out.writeString(session.getHost());
+        out.writeString(session.getBrowser());
+        out.writeString(session.getOs());
+        out.writeString(session.getStatus() != null ? session.getStatus().name() : null);
+
+        Map<Object, Object> attributes = session.getAttributes();
+        if (attributes == null) {
+            out.writeVarInt(0);
+        } else {
+            out.writeVarInt(attributes.size() + 1);
+            for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+                out.writeAttributeKey(entry.getKey());
+                out.writeAttributeValue(entry.getValue());
+            }
+        }
+        out.data.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 解码会话
+     *
+     * @param payload 编码后的数据
+     * @return 会话
+     */
+    public static OnlineSession decode(byte[] payload) throws IOException, ClassNotFoundException {
+        if (payload.length == 0 || payload[0] != MAGIC) {
+            return (OnlineSession) deserialize(payload);
+        }
+        Reader in = new Reader(new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1)));
+        byte version = in.data.readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported session codec version " + version);
+        }
+
+        OnlineSession session = new OnlineSession();
+        if (in.data.readBoolean()) {
+            session.setId(in.readString(false));
+        } else {
+            session.setId((Serializable) in.readSerialized());
+        }
+        session.setStartTimestamp(in.readDate());
+        session.setStopTimestamp(in.readDate());
+        session.setLastAccessTime(in.readDate());
+        session.setTimeout(unZigZag(in.readVarLong()));
+        session.setExpired(in.data.readBoolean());
+
+        session.setUserId(in.readNullableLong());
+        session.setLoginName(in.readString(false));
+        session.setDeptName(in.readString(true));
+        session.setHost(in.readString(false));
+        session.setBrowser(in.readString(true));
+        session.setOs(in.readString(true));
+        String status = in.readString(true);
+        session.setStatus(status != null ? OnlineStatus.valueOf(status) : null);
+
+        int size = in.readVarInt();
+        if (size > 0) {
+            Map<Object, Object> attributes = new HashMap<>(Math.max(4, (size - 1) * 4 / 3 + 1));
+            for (int i = 1; i < size; i++) {
+                Object key = in.readAttributeKey();
+                attributes.put(key, in.readAttributeValue());
+            }
+            session.setAttributes(attributes);
+        }
+        return session;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String interned = INTERNED.get(value);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return value;
+        }
+        interned = INTERNED.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * 编码 记录已写入的字符串，重复出现时只写编号
+     */
+    private static final class Writer {
+        private final DataOutputStream data;
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Writer(DataOutputStream data) {
+            this.data = data;
+        }
+
+        void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                data.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            data.writeByte((int) value);
+        }
+
+        /**
+         * 0为null，奇数为已写入字符串的编号，偶数为新字符串的字节数
+         */
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt((index << 1) | 1);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt((bytes.length + 1) << 1);
+            data.write(bytes);
+        }
+
+        void writeDate(Date value) throws IOException {
+            writeVarLong(value != null ? zigZag(value.getTime()) + 1 : 0);
+        }
+
+        void writeNullableLong(Long value) throws IOException {
+            data.writeBoolean(value != null);
+            if (value != null) {
+                writeVarLong(zigZag(value));
+            }
+        }
+
+        void writeLongArray(Long[] values) throws IOException {
+            if (values == null) {
+                writeVarInt(0);
+                return;
+            }
+            writeVarInt(values.length + 1);
+            for (Long value : values) {
+                writeNullableLong(value);
+            }
+        }
+
+        void writeSerialized(Object value) throws IOException {
+            byte[] bytes = serialize(value);
+            writeVarInt(bytes.length);
+            data.write(bytes);
+        }
+
+        void writeAttributeKey(Object key) throws IOException {
+            Integer known = key instanceof String ? KNOWN_KEY_IDS.get(key) : null;
+            if (known != null) {
+                writeVarInt(known);
+            } else if (key instanceof String) {
+                writeVarInt(KEY_STRING);
+                writeString((String) key);
+            } else {
+                writeVarInt(KEY_SERIALIZED);
+                writeSerialized(key);
+            }
+        }
+
+        void writeAttributeValue(Object value) throws IOException {
+            if (value == null) {
+                data.writeByte(TYPE_NULL);
+            } else if (value instanceof String) {
+                data.writeByte(TYPE_STRING);
+                writeString((String) value);
+            } else if (value.getClass() == Date.class) {
+                data.writeByte(TYPE_DATE);
+                writeDate((Date) value);
+            } else if (value instanceof Boolean) {
+                data.writeByte(TYPE_BOOLEAN);
+                data.writeBoolean((Boolean) value);
+            } else if (value instanceof Long) {
+                data.writeByte(TYPE_LONG);
+                writeVarLong(zigZag((Long) value));
+            } else if (value instanceof Integer) {
+                data.writeByte(TYPE_INTEGER);
+                writeVarLong(zigZag((Integer) value));
+            } else if (isUserPrincipals(value)) {
+                data.writeByte(TYPE_PRINCIPALS);
+                writePrincipals((PrincipalCollection) value);
+            } else {
+                data.writeByte(TYPE_SERIALIZED);
+                writeSerialized(value);
+            }
+        }
+
+        /**
+         * 只有单个Realm且全部为用户信息的身份集合按结构写入
+         */
+        private boolean isUserPrincipals(Object value) {
+            if (value.getClass() != SimplePrincipalCollection.class) {
+                return false;
+            }
+            PrincipalCollection principals = (PrincipalCollection) value;
+            if (principals.getRealmNames().size() != 1) {
+                return false;
+            }
+            for (Object principal : principals.asList()) {
+                if (!(principal instanceof SysUser)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void writePrincipals(PrincipalCollection principals) throws IOException {
+            writeString(principals.getRealmNames().iterator().next());
+            List<?> users = principals.asList();
+            writeVarInt(users.size());
+            for (Object principal : users) {
+                data.writeBoolean(principal instanceof SysUserPrincipal);
+                writeUser((SysUser) principal);
+            }
+        }
+
+        private void writeUser(SysUser user) throws IOException {
+            writeNullableLong(user.getUserId());
+            writeNullableLong(user.getDeptId());
+            writeNullableLong(user.getParentId());
+            writeString(user.getLoginName());
+            writeString(user.getUserName());
+            writeString(user.getEmail());
+            writeString(user.getPhonenumber());
+            writeString(user.getSex());
+            writeString(user.getAvatar());
+            writeString(user.getPassword());
+            writeString(user.getSalt());
+            writeString(user.getStatus());
+            writeString(user.getDelFlag());
+            writeString(user.getLoginIp());
+            writeDate(user.getLoginDate());
+            data.writeBoolean(user.getDept() != null);
+            if (user.getDept() != null) {
+                writeDept(user.getDept());
+            }
+            List<SysRole> roles = user.getRoles();
+            writeVarInt(roles != null ? roles.size() + 1 : 0);
+            if (roles != null) {
+                for (SysRole role : roles) {
+                    writeRole(role);
+                }
+            }
+            writeLongArray(user.getRoleIds());
+            writeLongArray(user.getPostIds());
+            writeBaseEntity(user);
+        }
+
+        private void writeDept(SysDept dept) throws IOException {
+            writeNullableLong(dept.getDeptId());
+            writeNullableLong(dept.getParentId());
+            writeString(dept.getAncestors());
+            writeString(dept.getDeptName());
+            writeString(dept.getOrderNum());
+            writeString(dept.getLeader());
+            writeString(dept.getPhone());
+            writeString(dept.getEmail());
+            writeString(dept.getStatus());
+            writeString(dept.getDelFlag());
+            writeString(dept.getParentName());
+            writeBaseEntity(dept);
+        }
+
+        private void writeRole(SysRole role) throws IOException {
+            writeNullableLong(role.getRoleId());
+            writeString(role.getRoleName());
+            writeString(role.getRoleKey());
+            writeString(role.getRoleSort());
+            writeString(role.getDataScope());
+            writeString(role.getStatus());
+            writeString(role.getDelFlag());
+            data.writeBoolean(role.isFlag());
+            writeLongArray(role.getMenuIds());
+            writeLongArray(role.getDeptIds());
+            writeBaseEntity(role);
+        }
+
+        private void writeBaseEntity(BaseEntity entity) throws IOException {
+            writeString(entity.getSearchValue());
+            writeString(entity.getCreateBy());
+            writeDate(entity.getCreateTime());
+            writeString(entity.getUpdateBy());
+            writeDate(entity.getUpdateTime());
+            writeString(entity.getRemark());
+        }
+    }
+
+    /**
+     * 解码 与Writer的写入顺序一一对应
+     */
+    private static final class Reader {
+        private final DataInputStream data;
+
+        private final List<String> strings = new ArrayList<>();
+
+        Reader(DataInputStream data) {
+            this.data = data;
+        }
+
+        int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value > 0xFFFFFFFFL) {
+                throw new IOException("malformed session data");
+            }
+            return (int) value;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = data.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed session data");
+        }
+
+        String readString(boolean intern) throws IOException {
+            int tag = readVarInt();
+            if (tag == 0) {
+                return null;
+            }
+            if ((tag & 1) == 1) {
+                int index = tag >>> 1;
+                if (index >= strings.size()) {
+                    throw new IOException("malformed session data");
+                }
+                return strings.get(index);
+            }
+            int length = (tag >>> 1) - 1;
+            if (length < 0 || length > data.available()) {
+                throw new IOException("malformed session data");
+            }
+            byte[] bytes = new byte[length];
+            data.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            if (intern) {
+                value = intern(value);
+            }
+            strings.add(value);
+            return value;
+        }
+
+        Date readDate() throws IOException {
+            long value = readVarLong();
+            return value != 0 ? new Date(unZigZag(value - 1)) : null;
+        }
+
+        Long readNullableLong() throws IOException {
+            return data.readBoolean() ? unZigZag(readVarLong()) : null;
+        }
+
+        Long[] readLongArray() throws IOException {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            if (length - 1 > data.available()) {
+                throw new IOException("malformed session data");
+            }
+            Long[] values = new Long[length - 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readNullableLong();
+            }
+            return values;
+        }
+
+        Object readSerialized() throws IOException, ClassNotFoundException {
+            int length = readVarInt();
+            if (length < 0 || length > data.available()) {
+                throw new IOException("malformed session data");
+            }
+            byte[] bytes = new byte[length];
+            data.readFully(bytes);
+            return deserialize(bytes);
+        }
+
+        Object readAttributeKey() throws IOException, ClassNotFoundException {
+            int key = readVarInt();
+            if (key == KEY_STRING) {
+                return readString(false);
+            }
+            if (key == KEY_SERIALIZED) {
+                return readSerialized();
+            }
+            if (key >= KNOWN_KEYS.length) {
+                throw new IOException("unknown session attribute key " + key);
+            }
+            return KNOWN_KEYS[key];
+        }
+
+        Object readAttributeValue() throws IOException, ClassNotFoundException {
+            byte type = data.readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    return null;
+                case TYPE_STRING:
+                    return readString(false);
+                case TYPE_DATE:
+                    return readDate();
+                case TYPE_BOOLEAN:
+                    return data.readBoolean();
+                case TYPE_LONG:
+                    return unZigZag(readVarLong());
+                case TYPE_INTEGER:
+                    return (int) unZigZag(readVarLong());
+                case TYPE_PRINCIPALS:
+                    return readPrincipals();
+                case TYPE_SERIALIZED:
+                    return readSerialized();
+                default:
+                    throw new IOException("unknown session attribute type " + type);
+            }
+        }
+
+        private PrincipalCollection readPrincipals() throws IOException {
+            String realmName = readString(true);
+            int size = readVarInt();
+            Collection<Object> users = new ArrayList<>(Math.min(size, 16));
+            for (int i = 0; i < size; i++) {
+                boolean principal = data.readBoolean();
+                SysUser user = readUser();
+                users.add(principal ? SysUserPrincipal.of(user) : user);
+            }
+            SimplePrincipalCollection principals = new SimplePrincipalCollection();
+            principals.addAll(users, realmName);
+            return principals;
+        }
+
+        private SysUser readUser() throws IOException {
+            SysUser user = new SysUser();
+            user.setUserId(readNullableLong());
+            user.setDeptId(readNullableLong());
+            user.setParentId(readNullableLong());
+            user.setLoginName(readString(false));
+            user.setUserName(readString(false));
+            user.setEmail(readString(false));
+            user.setPhonenumber(readString(false));
+            user.setSex(readString(true));
+            user.setAvatar(readString(false));
+            user.setPassword(readString(false));
+            user.setSalt(readString(false));
+            user.setStatus(readString(true));
+            user.setDelFlag(readString(true));
+            user.setLoginIp(readString(false));
+            user.setLoginDate(readDate());
+            if (data.readBoolean()) {
+                user.setDept(readDept());
+            }
+            int roles = readVarInt();
+            if (roles > 0) {
+                List<SysRole> list = new ArrayList<>(Math.min(roles - 1, 64));
+                for (int i = 1; i < roles; i++) {
+                    list.add(readRole());
+                }
+                user.setRoles(list);
+            }
+            user.setRoleIds(readLongArray());
+            user.setPostIds(readLongArray());
+            readBaseEntity(user);
+            return user;
+        }
+
+        private SysDept readDept() throws IOException {
+            SysDept dept = new SysDept();
+            dept.setDeptId(readNullableLong());
+            dept.setParentId(readNullableLong());
+            dept.setAncestors(readString(true));
+            dept.setDeptName(readString(true));
+            dept.setOrderNum(readString(true));
+            dept.setLeader(readString(true));
+            dept.setPhone(readString(false));
+            dept.setEmail(readString(false));
+            dept.setStatus(readString(true));
+            dept.setDelFlag(readString(true));
+            dept.setParentName(readString(true));
+            readBaseEntity(dept);
+            return dept;
+        }
+
+        private SysRole readRole() throws IOException {
+            SysRole role = new SysRole();
+            role.setRoleId(readNullableLong());
+            role.setRoleName(readString(true));
+            role.setRoleKey(readString(true));
+            role.setRoleSort(readString(true));
+            role.setDataScope(readString(true));
+            role.setStatus(readString(true));
+            role.setDelFlag(readString(true));
+            role.setFlag(data.readBoolean());
+            role.setMenuIds(readLongArray());
+            role.setDeptIds(readLongArray());
+            readBaseEntity(role);
+            return role;
+        }
+
+        private void readBaseEntity(BaseEntity entity) throws IOException {
+            entity.setSearchValue(readString(false));
+            entity.setCreateBy(readString(true));
+            entity.setCreateTime(readDate());
+            entity.setUpdateBy(readString(true));
+            entity.setUpdateTime(readDate());
+            entity.setRemark(readString(false));
+        }
+    }
+}
@@ -1,23 +1,26 @@
 package com.ruoyi.framework.shiro.session;
 
 import com.ruoyi.common.enums.OnlineStatus;
-import com.ruoyi.framework.manager.AsyncManager;
-import com.ruoyi.framework.manager.factory.AsyncFactory;
 import com.ruoyi.framework.service.SysShiroService;
 import org.apache.shiro.session.Session;
-import org.apache.shiro.session.mgt.eis.EnterpriseCacheSessionDAO;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.eis.AbstractSessionDAO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 /**
  * 针对自定义的ShiroSession的db操作
+ * 会话以内存注册表为准，数据库只做异步同步
  *
  * @author ruoyi
  */
-public class OnlineSessionDAO extends EnterpriseCacheSessionDAO {
+public class OnlineSessionDAO extends AbstractSessionDAO {
     /**
      * 同步session到数据库的周期 单位为毫秒（默认1分钟）
      */
@@ -27,11 +30,20 @@ public class OnlineSessionDAO extends EnterpriseCacheSessionDAO {
     /**
      * 上次同步数据库的时间戳
      */
-    private static final String LAST_SYNC_DB_TIMESTAMP = OnlineSessionDAO.class.getName() + "LAST_SYNC_DB_TIMESTAMP" ;
+    static final String LAST_SYNC_DB_TIMESTAMP = OnlineSessionDAO.class.getName() + "LAST_SYNC_DB_TIMESTAMP" ;
 
     @Autowired
     private SysShiroService sysShiroService;
 
+    @Autowired
+    private OnlineSessionWriteBehind onlineSessionWriteBehind;
+
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Autowired
+    private SessionExpiryWheel sessionExpiryWheel;
+
     public OnlineSessionDAO() {
         super();
     }
@@ -40,6 +52,21 @@ public class OnlineSessionDAO extends EnterpriseCacheSessionDAO {
         super();
     }
 
+    /**
+     * 创建会话 分配会话ID并注册到内存
+     *
+     * @param session 会话
+     * @return 会话ID
+     */
+    @Override
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        sessionStore.put((OnlineSession) session);
+        sessionExpiryWheel.touch((OnlineSession) session);
+        return sessionId;
+    }
+
     /**
      * 根据会话ID获取会话
      *
@@ -48,7 +75,53 @@ public class OnlineSessionDAO extends EnterpriseCacheSessionDAO {
      */
     @Override
     protected Session doReadSession(Serializable sessionId) {
-        return sysShiroService.getSession(sessionId);
+        return sessionStore.get(sessionId);
+    }
+
+    /**
+     * 更新会话 注册表中保存的是会话对象本身，这里只保证会话仍在注册表中
+     */
+    @Override
+    public void update(Session session) throws UnknownSessionException {
+        if (session instanceof OnlineSession) {
+            sessionStore.put((OnlineSession) session);
+            sessionExpiryWheel.touch((OnlineSession) session);
+        }
+    }
+
+    @Override
+    public void delete(Session session) {
+        if (session == null) {
+            return;
+        }
+        sessionStore.remove(session.getId());
+        sessionExpiryWheel.cancel(session.getId());
+        doDelete(session);
+    }
+
+    /**
+     * 将失效会话移出内存 不删除数据库记录，由过期会话清理统一批量删除
+     *
+     * @param session 会话
+     */
+    public void evict(Session session) {
+        sessionStore.remove(session.getId());
+        sessionExpiryWheel.cancel(session.getId());
+        onlineSessionWriteBehind.discard(String.valueOf(session.getId()));
+    }
+
+    /**
+     * 推进过期时间轮 返回已超时的会话
+     *
+     * @return 已超时的会话
+     */
+    public List<OnlineSession> pollExpiredSessions() {
+        return sessionExpiryWheel.advance();
+    }
+
+    @Override
+    public Collection<Session> getActiveSessions() {
+        return new ArrayList<>(sessionStore.values());
     }
 
     /**
@@ -79,19 +152,20 @@ public class OnlineSessionDAO extends EnterpriseCacheSessionDAO {
         if (onlineSession.isAttributeChanged()) {
             onlineSession.resetAttributeChanged();
         }
-        AsyncManager.me().execute(AsyncFactory.syncSessionToDb(onlineSession));
+        // 交给写回缓冲合并后批量入库
+        onlineSessionWriteBehind.offer(onlineSession);
     }
 
     /**
      * 当会话过期/停止（如用户退出时）属性等会调用
      */
-    @Override
     protected void doDelete(Session session) {
         OnlineSession onlineSession = (OnlineSession) session;
         if (null == onlineSession) {
             return;
         }
         onlineSession.setStatus(OnlineStatus.off_line);
+        onlineSessionWriteBehind.discard(String.valueOf(onlineSession.getId()));
         sysShiroService.deleteSession(onlineSession);
     }
 }
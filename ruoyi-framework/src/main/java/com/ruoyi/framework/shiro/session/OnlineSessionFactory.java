@@ -8,8 +8,7 @@ import org.apache.shiro.session.mgt.SessionFactory;
 import org.apache.shiro.web.session.mgt.WebSessionContext;
 import org.springframework.stereotype.Component;
 import com.ruoyi.common.utils.IpUtils;
-import com.ruoyi.framework.util.ServletUtils;
-import eu.bitwalker.useragentutils.UserAgent;
+import com.ruoyi.common.utils.UserAgentUtils;
 
 /**
  * 自定义sessionFactory会话
@@ -25,14 +24,11 @@ public class OnlineSessionFactory implements SessionFactory {
             WebSessionContext sessionContext = (WebSessionContext) initData;
             HttpServletRequest request = (HttpServletRequest) sessionContext.getServletRequest();
             if (request != null) {
-                UserAgent userAgent = UserAgent.parseUserAgentString(ServletUtils.getRequest().getHeader("User-Agent"));
-                // 获取客户端操作系统
-                String os = userAgent.getOperatingSystem().getName();
-                // 获取客户端浏览器
-                String browser = userAgent.getBrowser().getName();
+                UserAgentUtils.ClientAgent userAgent = UserAgentUtils.parse(request.getHeader("User-Agent"));
                 session.setHost(IpUtils.getIpAddr(request));
-                session.setBrowser(browser);
-                session.setOs(os);
+                // 客户端浏览器与操作系统
+                session.setBrowser(userAgent.getBrowser());
+                session.setOs(userAgent.getOs());
             }
         }
         return session;
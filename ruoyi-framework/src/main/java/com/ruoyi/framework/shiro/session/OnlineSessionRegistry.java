@@ -0,0 +1,76 @@
+package com.ruoyi.framework.shiro.session;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在线会话注册表 基于ConcurrentHashMap的内存存储，请求链路上的会话读取只访问本注册表，不访问数据库
+ * 数据库中的sys_user_online仅作为异步维护的展示数据
+ *
+ * @author ruoyi
+ */
+public class OnlineSessionRegistry implements SessionStore {
+
+    private final Map<Serializable, OnlineSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 根据会话ID获取会话
+     *
+     * @param sessionId 会话ID
+     * @return 会话 不存在时返回null
+     */
+    @Override
+    public OnlineSession get(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * 注册或替换会话
+     *
+     * @param session 会话
+     */
+    @Override
+    public void put(OnlineSession session) {
+        Serializable sessionId = session.getId();
+        if (sessionId == null) {
+            throw new IllegalArgumentException("sessionId cannot be null when registering session.");
+        }
+        sessions.put(sessionId, session);
+    }
+
+    /**
+     * 移除会话
+     *
+     * @param sessionId 会话ID
+     * @return 被移除的会话
+     */
+    @Override
+    public OnlineSession remove(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        return sessions.remove(sessionId);
+    }
+
+    /**
+     * 当前注册的会话数量
+     */
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 所有会话的快照 弱一致遍历，不阻塞写入
+     */
+    @Override
+    public Collection<OnlineSession> values() {
+        return new ArrayList<>(sessions.values());
+    }
+}
@@ -0,0 +1,202 @@
+package com.ruoyi.framework.shiro.session;
+
+import com.ruoyi.common.utils.AddressUtils;
+import com.ruoyi.system.domain.SysUserOnline;
+import com.ruoyi.system.service.ISysUserOnlineService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在线会话写回缓冲
+ * 同一会话在刷新周期内的多次同步只保留最后一次，按批次写入数据库
+ * 删除的会话留下删除标记，刷新时跳过；写入时才被删除的会话在写入后补删，避免已删除的会话被写回
+ *
+ * @author ruoyi
+ */
+@Slf4j
+@Component
+public class OnlineSessionWriteBehind {
+
+    /**
+     * 刷新到数据库的周期 单位为秒（默认5秒）
+     */
+    @Value("${shiro.session.dbSyncFlushInterval:5}")
+    private int flushInterval;
+
+    /**
+     * 单批次写入的最大条数（默认500条）
+     */
+    @Value("${shiro.session.dbSyncBatchSize:500}")
+    private int batchSize;
+
+    /**
+     * 删除标记的保留时长 单位毫秒，覆盖正在进行的刷新和删除前已发出的同步
+     */
+    private static final long TOMBSTONE_RETAIN_MILLIS = 60 * 1000;
+
+    /**
+     * 待写入的会话 key为会话ID
+     */
+    private final Map<String, SysUserOnline> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 已删除会话的删除标记 key为会话ID，value为删除时间
+     */
+    private final Map<String, Long> tombstones = new ConcurrentHashMap<>();
+
+    private final ISysUserOnlineService userOnlineService;
+
+    private final ScheduledExecutorService executorService;
+
+    @Autowired
+    public OnlineSessionWriteBehind(ISysUserOnlineService userOnlineService,
+                                    @Qualifier("scheduledExecutorService") ScheduledExecutorService executorService) {
+        this.userOnlineService = userOnlineService;
+        this.executorService = executorService;
+    }
+
+    @PostConstruct
+    public void init() {
+        executorService.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 应用关闭前将缓冲中的会话全部写入数据库
+     */
+    @PreDestroy
+    public void destroy() {
+        flushQuietly();
+    }
+
+    /**
+     * 加入待同步队列 同一会话ID的旧数据会被覆盖
+     *
+     * @param session 在线用户会话
+     */
+    public void offer(OnlineSession session) {
+        SysUserOnline online = new SysUserOnline();
+        online.setSessionId(String.valueOf(session.getId()));
+        online.setDeptName(session.getDeptName());
+        online.setLoginName(session.getLoginName());
+        online.setStartTimestamp(session.getStartTimestamp());
+        online.setLastAccessTime(session.getLastAccessTime());
+        online.setExpireTime(session.getTimeout());
+        online.setIpaddr(session.getHost());
+        online.setBrowser(session.getBrowser());
+        online.setOs(session.getOs());
+        online.setStatus(session.getStatus());
+        if (tombstones.containsKey(online.getSessionId())) {
+            return;
+        }
+        pending.put(online.getSessionId(), online);
+        if (tombstones.containsKey(online.getSessionId())) {
+            // 与删除并发 以删除为准
+            pending.remove(online.getSessionId());
+        }
+    }
+
+    /**
+     * 丢弃尚未写入的会话 会话删除时调用，避免已删除的会话被重新写回
+     *
+     * @param sessionId 会话ID
+     */
+    public void discard(String sessionId) {
+        tombstones.put(sessionId, System.currentTimeMillis());
+        pending.remove(sessionId);
+    }
+
+    /**
+     * 待写入的会话数量
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * 将缓冲中的会话按批次写入数据库
+     *
+     * @return 写入的会话数量
+     */
+    public synchronized int flush() {
+        purgeTombstones();
+        int flushed = 0;
+        // 同一批次内相同IP只查询一次地理位置
+        Map<String, String> locations = new HashMap<>();
+        List<SysUserOnline> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<String> it = pending.keySet().iterator();
+        while (it.hasNext()) {
+            SysUserOnline online = pending.remove(it.next());
+            if (online == null || tombstones.containsKey(online.getSessionId())) {
+                continue;
+            }
+            online.setLoginLocation(locations.computeIfAbsent(String.valueOf(online.getIpaddr()),
+                    ip -> AddressUtils.getRealAddressByIP(online.getIpaddr())));
+            batch.add(online);
+            if (batch.size() >= batchSize) {
+                flushed += write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushed += write(batch);
+        }
+        return flushed;
+    }
+
+    /**
+     * 写入一个批次 失败时放回缓冲等待下次刷新（已有更新的数据则不覆盖）
+     */
+    private int write(List<SysUserOnline> batch) {
+        try {
+            userOnlineService.batchSaveOnline(batch);
+        } catch (RuntimeException e) {
+            batch.stream().filter(online -> !tombstones.containsKey(online.getSessionId()))
+                    .forEach(online -> pending.putIfAbsent(online.getSessionId(), online));
+            throw e;
+        }
+        // 删除标记在写入之后检查：检查时没有标记的会话，其删除一定发生在本次写入之后
+        List<String> deleted = new ArrayList<>();
+        for (SysUserOnline online : batch) {
+            if (tombstones.containsKey(online.getSessionId())) {
+                deleted.add(online.getSessionId());
+            }
+        }
+        if (!deleted.isEmpty()) {
+            userOnlineService.batchDeleteOnline(deleted);
+        }
+        return batch.size() - deleted.size();
+    }
+
+    /**
+     * 清除过期的删除标记 刷新是串行的，早于保留时长的删除不会再与刷新或同步并发
+     */
+    private void purgeTombstones() {
+        long expired = System.currentTimeMillis() - Math.max(TOMBSTONE_RETAIN_MILLIS, flushInterval * 2000L);
+        tombstones.values().removeIf(time -> time < expired);
+    }
+
+    private void flushQuietly() {
+        try {
+            int flushed = flush();
+            if (flushed > 0 && log.isDebugEnabled()) {
+                log.debug("flushed [{}] online sessions to db.", flushed);
+            }
+        } catch (Exception e) {
+            log.error("flush online sessions to db error.", e);
+        }
+    }
+}
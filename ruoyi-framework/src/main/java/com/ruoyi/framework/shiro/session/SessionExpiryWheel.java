@@ -0,0 +1,211 @@
+package com.ruoyi.framework.shiro.session;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 会话过期时间轮
+ * 按预计过期时间把会话挂到对应的槽上，每个刻度只处理一个槽，单个会话的过期处理均摊为O(1)
+ * 会话被访问时不移动槽位，到期时再按最后访问时间重新计算，未过期的会话挂到新的槽上
+ *
+ * @author ruoyi
+ */
+@Component
+public class SessionExpiryWheel {
+
+    private final SessionStore sessionStore;
+
+    /**
+     * 每个刻度的时长 单位毫秒
+     */
+    private final long tickDuration;
+
+    private final int mask;
+
+    private final Queue<Entry>[] buckets;
+
+    /**
+     * 新加入的会话 由推进时间轮的线程统一放入槽中
+     */
+    private final Queue<Entry> pendingEntries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 已挂到时间轮上的会话 key为会话ID
+     */
+    private final Map<Serializable, Entry> entries = new ConcurrentHashMap<>();
+
+    private final long startTime;
+
+    /**
+     * 已处理到的刻度 只在推进线程中修改
+     */
+    private long tick;
+
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public SessionExpiryWheel(SessionStore sessionStore,
+                              @Value("${shiro.session.wheelTickMillis:1000}") long tickDuration,
+                              @Value("${shiro.session.wheelSize:512}") int wheelSize) {
+        this.sessionStore = sessionStore;
+        this.tickDuration = Math.max(1, tickDuration);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            this.buckets[i] = new ArrayDeque<>();
+        }
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 刻度时长 单位毫秒
+     */
+    public long getTickDuration() {
+        return tickDuration;
+    }
+
+    /**
+     * 挂到时间轮上的会话数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 会话被创建或访问 未挂到时间轮上时加入，已挂上的会话等到期时再按最后访问时间重新计算
+     *
+     * @param session 会话
+     */
+    public void touch(OnlineSession session) {
+        Serializable sessionId = session.getId();
+        if (sessionId == null || entries.containsKey(sessionId)) {
+            return;
+        }
+        Entry entry = new Entry(sessionId, expireTime(session));
+        if (entries.putIfAbsent(sessionId, entry) == null) {
+            pendingEntries.add(entry);
+        }
+    }
+
+    /**
+     * 会话被删除 从时间轮上取消
+     *
+     * @param sessionId 会话ID
+     */
+    public void cancel(Serializable sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        Entry entry = entries.remove(sessionId);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+
+    /**
+     * 推进时间轮到当前时间 返回已过期的会话，过期的会话同时从时间轮上移除
+     *
+     * @return 过期的会话
+     */
+    public synchronized List<OnlineSession> advance() {
+        long now = System.currentTimeMillis();
+        List<OnlineSession> expired = new ArrayList<>();
+        long targetTick = (now - startTime) / tickDuration;
+        while (tick <= targetTick) {
+            transferPendingEntries();
+            expireBucket(buckets[(int) (tick & mask)], now, expired);
+            tick++;
+        }
+        return expired;
+    }
+
+    private void transferPendingEntries() {
+        Entry entry;
+        while ((entry = pendingEntries.poll()) != null) {
+            if (!entry.cancelled) {
+                place(entry);
+            }
+        }
+    }
+
+    private void expireBucket(Queue<Entry> bucket, long now, List<OnlineSession> expired) {
+        for (int i = bucket.size(); i > 0; i--) {
+            Entry entry = bucket.poll();
+            if (entry.cancelled) {
+                continue;
+            }
+            if (entry.rounds > 0) {
+                entry.rounds--;
+                bucket.add(entry);
+                continue;
+            }
+            OnlineSession session = sessionStore.peek(entry.sessionId);
+            if (session == null) {
+                entries.remove(entry.sessionId, entry);
+                continue;
+            }
+            long expireTime = expireTime(session);
+            if (expireTime <= now) {
+                entries.remove(entry.sessionId, entry);
+                expired.add(session);
+            } else {
+                // 期间被访问过 按新的过期时间重新挂载
+                entry.deadline = expireTime;
+                place(entry);
+            }
+        }
+    }
+
+    private void place(Entry entry) {
+        long deadlineTick = (entry.deadline - startTime) / tickDuration;
+        // 已经过期的挂到下一个要处理的槽上
+        long ticks = Math.max(deadlineTick, tick + 1);
+        entry.rounds = (ticks - tick - 1) / buckets.length;
+        buckets[(int) (ticks & mask)].add(entry);
+    }
+
+    /**
+     * 会话预计过期时间 已停止或已标记过期的会话立即过期，超时时间为负数的会话不过期
+     */
+    private static long expireTime(OnlineSession session) {
+        if (session.getStopTimestamp() != null || session.isExpired()) {
+            return 0L;
+        }
+        long timeout = session.getTimeout();
+        if (timeout < 0) {
+            return Long.MAX_VALUE / 2;
+        }
+        Date lastAccessTime = session.getLastAccessTime();
+        long lastAccess = lastAccessTime != null ? lastAccessTime.getTime() : System.currentTimeMillis();
+        return lastAccess + timeout;
+    }
+
+    private static final class Entry {
+        private final Serializable sessionId;
+
+        private long deadline;
+
+        private long rounds;
+
+        private volatile boolean cancelled;
+
+        Entry(Serializable sessionId, long deadline) {
+            this.sessionId = sessionId;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ruoyi.framework.shiro.session;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 会话存储 OnlineSessionDAO通过该接口读写会话，可替换为本机内存或集群共享的实现
+ *
+ * @author ruoyi
+ */
+public interface SessionStore {
+
+    /**
+     * 根据会话ID获取会话
+     *
+     * @param sessionId 会话ID
+     * @return 会话 不存在时返回null
+     */
+    OnlineSession get(Serializable sessionId);
+
+    /**
+     * 读取会话 不影响存储内部的冷热排序，供过期扫描等后台任务使用
+     *
+     * @param sessionId 会话ID
+     * @return 会话 不存在时返回null
+     */
+    default OnlineSession peek(Serializable sessionId) {
+        return get(sessionId);
+    }
+
+    /**
+     * 保存会话 会话创建、访问或属性变化时调用
+     *
+     * @param session 会话
+     */
+    void put(OnlineSession session);
+
+    /**
+     * 移除会话
+     *
+     * @param sessionId 会话ID
+     * @return 被移除的会话 不存在时返回null
+     */
+    OnlineSession remove(Serializable sessionId);
+
+    /**
+     * 会话数量
+     */
+    int size();
+
+    /**
+     * 本节点可见的会话快照
+     */
+    Collection<OnlineSession> values();
+
+    /**
+     * 存储的各项指标
+     */
+    default Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessions", size());
+        return metrics;
+    }
+}
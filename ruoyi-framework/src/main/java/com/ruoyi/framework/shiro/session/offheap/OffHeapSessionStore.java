@@ -0,0 +1,581 @@
+package com.ruoyi.framework.shiro.session.offheap;
+
+import com.ruoyi.framework.shiro.session.OnlineSession;
+import com.ruoyi.framework.shiro.session.OnlineSessionCodec;
+import com.ruoyi.framework.shiro.session.SessionStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外会话存储 会话编码后保存在堆外slab中，只有最近访问的会话以对象形式留在堆上
+ * 按会话ID分段加锁，每段有一个开放寻址的索引记录会话数据的地址，以及一个按访问顺序淘汰的热点表
+ * 过期扫描等后台读取使用{@link #peek(Serializable)}，不改变热点表，冷会话不会因扫描被提升
+ * 热点会话以堆上对象为准，被淘汰时内容有变化才重新编码写回；无法编码或超过最大块的会话留在堆上
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public class OffHeapSessionStore implements SessionStore {
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private final SlabAllocator allocator;
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    private final LongAdder hotHits = new LongAdder();
+
+    private final LongAdder offHeapReads = new LongAdder();
+
+    /**
+     * @param concurrencyLevel 分段数
+     * @param slabSize 单个slab的字节数 不能超过2GB
+     * @param maxMemory 堆外内存上限 单位字节
+     * @param hotCapacity 留在堆上的热点会话数量
+     */
+    public OffHeapSessionStore(int concurrencyLevel, long slabSize, long maxMemory, int hotCapacity) {
+        if (slabSize <= 0 || slabSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("off-heap slab size must be between 1 byte and 2GB: " + slabSize);
+        }
+        int size = 1;
+        while (size < concurrencyLevel && size < MAX_SEGMENTS) {
+            size <<= 1;
+        }
+        this.allocator = new SlabAllocator((int) slabSize, (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxMemory / slabSize)));
+        this.segments = new Segment[size];
+        int segmentHotCapacity = Math.max(1, hotCapacity / size);
+        for (int i = 0; i < size; i++) {
+            this.segments[i] = new Segment(segmentHotCapacity);
+        }
+        this.segmentMask = size - 1;
+    }
+
+    @Override
+    public OnlineSession get(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        return segmentFor(sessionId).get(sessionId);
+    }
+
+    /**
+     * 读取会话但不提升为热点 堆外的会话返回解码出的副本
+     */
+    @Override
+    public OnlineSession peek(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        return segmentFor(sessionId).peek(sessionId);
+    }
+
+    @Override
+    public void put(OnlineSession session) {
+        Serializable sessionId = session.getId();
+        if (sessionId == null) {
+            throw new IllegalArgumentException("sessionId cannot be null when registering session.");
+        }
+        segmentFor(sessionId).put(sessionId, session);
+    }
+
+    @Override
+    public OnlineSession remove(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        return segmentFor(sessionId).remove(sessionId);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 所有会话的快照 堆外的会话逐个解码，不会提升为热点
+     */
+    @Override
+    public Collection<OnlineSession> values() {
+        List<OnlineSession> values = new ArrayList<>(size());
+        for (Segment segment : segments) {
+            segment.copyTo(values);
+        }
+        return values;
+    }
+
+    /**
+     * 留在堆上的热点会话数量
+     */
+    public int getHotSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.hotSize();
+        }
+        return size;
+    }
+
+    /**
+     * 命中堆上热点会话的次数
+     */
+    public long getHotHitCount() {
+        return hotHits.sum();
+    }
+
+    /**
+     * 从堆外解码会话的次数
+     */
+    public long getOffHeapReadCount() {
+        return offHeapReads.sum();
+    }
+
+    /**
+     * 已申请的堆外内存 单位字节
+     */
+    public long getCapacityBytes() {
+        return allocator.getCapacityBytes();
+    }
+
+    /**
+     * 会话数据实际占用的堆外内存 单位字节
+     */
+    public long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    /**
+     * 堆外内存占用率 会话数据占堆外内存上限的比例
+     */
+    public double getOccupancy() {
+        return (double) allocator.getUsedBytes() / allocator.getMaxBytes();
+    }
+
+    /**
+     * 碎片率 已切分出的块中没有被会话数据占用的比例
+     */
+    public double getFragmentation() {
+        return allocator.getFragmentation();
+    }
+
+    /**
+     * 存储的各项指标
+     */
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("type", "offheap");
+        metrics.put("sessions", size());
+        metrics.put("hotSessions", getHotSize());
+        metrics.put("hotHits", getHotHitCount());
+        metrics.put("offHeapReads", getOffHeapReadCount());
+        metrics.put("maxBytes", allocator.getMaxBytes());
+        metrics.put("capacityBytes", getCapacityBytes());
+        metrics.put("allocatedBytes", allocator.getAllocatedBytes());
+        metrics.put("usedBytes", getUsedBytes());
+        metrics.put("occupancy", getOccupancy());
+        metrics.put("fragmentation", getFragmentation());
+        metrics.put("reassignedSlabs", allocator.getReassignedSlabs());
+        metrics.put("sizeClasses", allocator.getClassMetrics());
+        return metrics;
+    }
+
+    private Segment segmentFor(Serializable sessionId) {
+        int h = sessionId.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    /**
+     * 单个分段
+     */
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final SlotIndex index = new SlotIndex();
+
+        private final int hotCapacity;
+
+        /**
+         * 热点表 按插入顺序排列，访问时移到末尾，最前面的是最久未访问的会话
+         */
+        private final LinkedHashMap<Serializable, HotEntry> hot;
+
+        /**
+         * 无法放入堆外内存的会话
+         */
+        private final Map<Serializable, OnlineSession> onHeap = new HashMap<>();
+
+        Segment(int hotCapacity) {
+            this.hotCapacity = hotCapacity;
+            this.hot = new LinkedHashMap<>(16, 0.75f, false);
+        }
+
+        OnlineSession get(Serializable sessionId) {
+            byte[] data;
+            long address;
+            lock.lock();
+            try {
+                HotEntry entry = touch(sessionId);
+                if (entry != null) {
+                    hotHits.increment();
+                    return entry.session;
+                }
+                OnlineSession session = onHeap.get(sessionId);
+                if (session != null) {
+                    return session;
+                }
+                int slot = index.find(sessionId);
+                if (slot < 0) {
+                    return null;
+                }
+                address = index.addresses[slot];
+                data = allocator.read(address, index.lengths[slot]);
+            } finally {
+                lock.unlock();
+            }
+            offHeapReads.increment();
+            OnlineSession session = decode(sessionId, data);
+            if (session == null) {
+                return null;
+            }
+            lock.lock();
+            try {
+                HotEntry entry = hot.get(sessionId);
+                if (entry != null) {
+                    // 解码期间已被其他线程提升
+                    return entry.session;
+                }
+                int slot = index.find(sessionId);
+                if (slot >= 0 && index.addresses[slot] == address) {
+                    promote(sessionId, session);
+                }
+                return session;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        OnlineSession peek(Serializable sessionId) {
+            byte[] data;
+            lock.lock();
+            try {
+                HotEntry entry = hot.get(sessionId);
+                if (entry != null) {
+                    return entry.session;
+                }
+                OnlineSession session = onHeap.get(sessionId);
+                if (session != null) {
+                    return session;
+                }
+                int slot = index.find(sessionId);
+                if (slot < 0) {
+                    return null;
+                }
+                data = allocator.read(index.addresses[slot], index.lengths[slot]);
+            } finally {
+                lock.unlock();
+            }
+            offHeapReads.increment();
+            return decode(sessionId, data);
+        }
+
+        void put(Serializable sessionId, OnlineSession session) {
+            lock.lock();
+            try {
+                HotEntry entry = touch(sessionId);
+                if (entry != null && entry.session == session) {
+                    // 热点会话以堆上对象为准，淘汰时再写回
+                    return;
+                }
+                if (onHeap.containsKey(sessionId)) {
+                    onHeap.put(sessionId, session);
+                    hot.remove(sessionId);
+                    return;
+                }
+                if (store(sessionId, session)) {
+                    promote(sessionId, session);
+                } else {
+                    hot.remove(sessionId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        OnlineSession remove(Serializable sessionId) {
+            byte[] data = null;
+            OnlineSession removed;
+            lock.lock();
+            try {
+                HotEntry entry = hot.remove(sessionId);
+                removed = onHeap.remove(sessionId);
+                if (entry != null) {
+                    removed = entry.session;
+                }
+                int slot = index.find(sessionId);
+                if (slot >= 0) {
+                    if (removed == null) {
+                        data = allocator.read(index.addresses[slot], index.lengths[slot]);
+                    }
+                    allocator.free(index.addresses[slot], index.lengths[slot]);
+                    index.remove(slot);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return removed != null || data == null ? removed : decode(sessionId, data);
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return index.size + onHeap.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int hotSize() {
+            lock.lock();
+            try {
+                return hot.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void copyTo(Collection<OnlineSession> target) {
+            List<Serializable> ids = new ArrayList<>();
+            List<byte[]> encoded = new ArrayList<>();
+            lock.lock();
+            try {
+                target.addAll(onHeap.values());
+                for (int slot = 0; slot < index.keys.length; slot++) {
+                    Object key = index.keys[slot];
+                    if (key == null || key == SlotIndex.TOMBSTONE) {
+                        continue;
+                    }
+                    HotEntry entry = hot.get(key);
+                    if (entry != null) {
+                        target.add(entry.session);
+                    } else {
+                        ids.add((Serializable) key);
+                        encoded.add(allocator.read(index.addresses[slot], index.lengths[slot]));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            // 解码放在锁外
+            for (int i = 0; i < ids.size(); i++) {
+                OnlineSession session = decode(ids.get(i), encoded.get(i));
+                if (session != null) {
+                    target.add(session);
+                }
+            }
+        }
+
+        /**
+         * 编码并写入堆外内存 替换原有的数据
+         *
+         * @return 是否已写入堆外内存 否则会话留在堆上
+         */
+        private boolean store(Serializable sessionId, OnlineSession session) {
+            byte[] data = encode(sessionId, session);
+            long address = data != null ? allocator.allocate(data.length) : SlabAllocator.NO_ADDRESS;
+            int slot = index.find(sessionId);
+            if (slot >= 0) {
+                allocator.free(index.addresses[slot], index.lengths[slot]);
+                index.remove(slot);
+            }
+            if (address == SlabAllocator.NO_ADDRESS) {
+                if (data != null && data.length <= allocator.maxLength()) {
+                    log.warn("off-heap session store is full, keep session [{}] on heap.", sessionId);
+                }
+                onHeap.put(sessionId, session);
+                return false;
+            }
+            allocator.write(address, data);
+            index.put(sessionId, address, data.length);
+            return true;
+        }
+
+        /**
+         * 将热点会话移到热点表末尾
+         *
+         * @return 热点会话 不在热点表中时返回null
+         */
+        private HotEntry touch(Serializable sessionId) {
+            HotEntry entry = hot.remove(sessionId);
+            if (entry != null) {
+                hot.put(sessionId, entry);
+            }
+            return entry;
+        }
+
+        /**
+         * 放入热点表 超出容量时淘汰最久未访问的会话，内容有变化的重新写回堆外
+         */
+        private void promote(Serializable sessionId, OnlineSession session) {
+            hot.remove(sessionId);
+            hot.put(sessionId, new HotEntry(session));
+            if (hot.size() <= hotCapacity) {
+                return;
+            }
+            Iterator<Map.Entry<Serializable, HotEntry>> eldest = hot.entrySet().iterator();
+            Map.Entry<Serializable, HotEntry> evicted = eldest.next();
+            eldest.remove();
+            if (evicted.getValue().isModified()) {
+                store(evicted.getKey(), evicted.getValue().session);
+            }
+        }
+    }
+
+    private static byte[] encode(Serializable sessionId, OnlineSession session) {
+        try {
+            return OnlineSessionCodec.encode(session);
+        } catch (IOException e) {
+            log.error("encode session [{}] error, keep it on heap.", sessionId, e);
+            return null;
+        }
+    }
+
+    private static OnlineSession decode(Serializable sessionId, byte[] data) {
+        try {
+            return OnlineSessionCodec.decode(data);
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("decode off-heap session [{}] error.", sessionId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 热点会话 记录写入堆外时的变更次数和访问时间，据此判断淘汰时是否需要写回
+     */
+    private static final class HotEntry {
+        private final OnlineSession session;
+
+        private final int changeCount;
+
+        private final long lastAccessTime;
+
+        HotEntry(OnlineSession session) {
+            this.session = session;
+            this.changeCount = session.getChangeCount();
+            this.lastAccessTime = lastAccessTime(session);
+        }
+
+        boolean isModified() {
+            return session.getChangeCount() != changeCount || lastAccessTime(session) != lastAccessTime;
+        }
+
+        private static long lastAccessTime(OnlineSession session) {
+            return session.getLastAccessTime() != null ? session.getLastAccessTime().getTime() : 0L;
+        }
+    }
+
+    /**
+     * 开放寻址索引 线性探测，删除时留下墓碑，墓碑过多时重建
+     */
+    private static final class SlotIndex {
+        private static final Object TOMBSTONE = new Object();
+
+        private Object[] keys = new Object[16];
+
+        private long[] addresses = new long[16];
+
+        private int[] lengths = new int[16];
+
+        private int size;
+
+        private int tombstones;
+
+        int find(Object key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                Object current = keys[slot];
+                if (current == null) {
+                    return -1;
+                }
+                if (current != TOMBSTONE && current.equals(key)) {
+                    return slot;
+                }
+            }
+        }
+
+        void put(Object key, long address, int length) {
+            if ((size + tombstones + 1) * 4 >= keys.length * 3) {
+                rehash(size * 2 >= keys.length ? keys.length << 1 : keys.length);
+            }
+            int mask = keys.length - 1;
+            int free = -1;
+            int slot = hash(key) & mask;
+            for (; ; slot = (slot + 1) & mask) {
+                Object current = keys[slot];
+                if (current == null) {
+                    break;
+                }
+                if (current == TOMBSTONE) {
+                    if (free < 0) {
+                        free = slot;
+                    }
+                } else if (current.equals(key)) {
+                    addresses[slot] = address;
+                    lengths[slot] = length;
+                    return;
+                }
+            }
+            if (free >= 0) {
+                slot = free;
+                tombstones--;
+            }
+            keys[slot] = key;
+            addresses[slot] = address;
+            lengths[slot] = length;
+            size++;
+        }
+
+        void remove(int slot) {
+            keys[slot] = TOMBSTONE;
+            size--;
+            tombstones++;
+        }
+
+        private void rehash(int capacity) {
+            Object[] oldKeys = keys;
+            long[] oldAddresses = addresses;
+            int[] oldLengths = lengths;
+            keys = new Object[capacity];
+            addresses = new long[capacity];
+            lengths = new int[capacity];
+            size = 0;
+            tombstones = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null && oldKeys[i] != TOMBSTONE) {
+                    put(oldKeys[i], oldAddresses[i], oldLengths[i]);
+                }
+            }
+        }
+
+        private static int hash(Object key) {
+            int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
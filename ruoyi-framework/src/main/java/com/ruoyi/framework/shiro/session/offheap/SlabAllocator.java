@@ -0,0 +1,301 @@
+package com.ruoyi.framework.shiro.session.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外slab分配器 每个slab为一块固定大小的直接内存，只切分同一种大小的块
+ * 块大小按1.25倍逐级增长，数据放入能容纳它的最小一级，释放的块挂回本级的空闲列表
+ * 内存上限内的slab用完后，某一级需要新slab时回收其他级别中已完全空闲的slab重新切分，会话大小分布变化时不会一级耗尽而其他级空置
+ * 块地址为slab编号左移32位再加上slab内的偏移
+ *
+ * @author ruoyi
+ */
+final class SlabAllocator {
+
+    static final long NO_ADDRESS = -1L;
+
+    private static final int MIN_CHUNK = 128;
+
+    private static final int MAX_CHUNK = 64 * 1024;
+
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private final int slabSize;
+
+    private final ByteBuffer[] slabs;
+
+    private final SizeClass[] classes;
+
+    /**
+     * 每个slab所属的级别
+     */
+    private final int[] slabClasses;
+
+    /**
+     * 每个slab中已分配出去的块数
+     */
+    private final int[] slabChunks;
+
+    private int slabCount;
+
+    /**
+     * 被回收后改给其他级别使用的slab次数
+     */
+    private long reassignedSlabs;
+
+    /**
+     * 已分配出去的块的总大小
+     */
+    private long allocatedBytes;
+
+    /**
+     * 已分配出去的块中实际数据的总大小
+     */
+    private long usedBytes;
+
+    SlabAllocator(int slabSize, int maxSlabs) {
+        this.slabSize = Math.max(slabSize, MIN_CHUNK);
+        this.slabs = new ByteBuffer[Math.max(1, maxSlabs)];
+        this.slabClasses = new int[slabs.length];
+        this.slabChunks = new int[slabs.length];
+        int maxChunk = Math.min(this.slabSize, MAX_CHUNK);
+        List<SizeClass> sizes = new ArrayList<>();
+        int size = MIN_CHUNK;
+        while (size < maxChunk) {
+            sizes.add(new SizeClass(sizes.size(), size));
+            size = Math.min(maxChunk, ((int) (size * GROWTH_FACTOR) + 7) & ~7);
+        }
+        sizes.add(new SizeClass(sizes.size(), maxChunk));
+        this.classes = sizes.toArray(new SizeClass[0]);
+    }
+
+    /**
+     * 能够放入堆外内存的最大数据长度
+     */
+    int maxLength() {
+        return classes[classes.length - 1].chunkSize;
+    }
+
+    /**
+     * 分配一个能容纳指定长度的块
+     *
+     * @param length 数据长度
+     * @return 块地址 数据过大或内存已用尽时返回NO_ADDRESS
+     */
+    synchronized long allocate(int length) {
+        SizeClass sizeClass = classFor(length);
+        if (sizeClass == null) {
+            return NO_ADDRESS;
+        }
+        long address;
+        if (sizeClass.freeCount > 0) {
+            address = sizeClass.freeChunks[--sizeClass.freeCount];
+        } else {
+            if (sizeClass.slab < 0 || sizeClass.nextOffset + sizeClass.chunkSize > slabSize) {
+                int slab = acquireSlab(sizeClass);
+                if (slab < 0) {
+                    return NO_ADDRESS;
+                }
+                sizeClass.slab = slab;
+                sizeClass.nextOffset = 0;
+            }
+            address = ((long) sizeClass.slab << 32) | sizeClass.nextOffset;
+            sizeClass.nextOffset += sizeClass.chunkSize;
+        }
+        slabChunks[(int) (address >>> 32)]++;
+        allocatedBytes += sizeClass.chunkSize;
+        usedBytes += length;
+        return address;
+    }
+
+    /**
+     * 释放块
+     *
+     * @param address 块地址
+     * @param length 分配时的数据长度
+     */
+    synchronized void free(long address, int length) {
+        SizeClass sizeClass = classFor(length);
+        if (sizeClass == null) {
+            return;
+        }
+        sizeClass.push(address);
+        slabChunks[(int) (address >>> 32)]--;
+        allocatedBytes -= sizeClass.chunkSize;
+        usedBytes -= length;
+    }
+
+    /**
+     * 为级别取得一个新slab 未达到上限时申请新内存，否则回收一个没有已分配块的slab
+     *
+     * @return slab编号 没有可用slab时返回-1
+     */
+    private int acquireSlab(SizeClass sizeClass) {
+        if (slabCount < slabs.length) {
+            slabs[slabCount] = ByteBuffer.allocateDirect(slabSize);
+            slabClasses[slabCount] = sizeClass.index;
+            return slabCount++;
+        }
+        for (int slab = 0; slab < slabCount; slab++) {
+            if (slabChunks[slab] != 0) {
+                continue;
+            }
+            SizeClass owner = classes[slabClasses[slab]];
+            owner.dropFreeChunks(slab);
+            if (owner.slab == slab) {
+                owner.slab = -1;
+            }
+            slabClasses[slab] = sizeClass.index;
+            reassignedSlabs++;
+            return slab;
+        }
+        return -1;
+    }
+
+    /**
+     * 写入数据 调用方需保证同一个块不会被并发读写
+     */
+    void write(long address, byte[] data) {
+        ByteBuffer buffer = slabs[(int) (address >>> 32)].duplicate();
+        buffer.position((int) address);
+        buffer.put(data);
+    }
+
+    /**
+     * 读取数据
+     */
+    byte[] read(long address, int length) {
+        ByteBuffer buffer = slabs[(int) (address >>> 32)].duplicate();
+        buffer.position((int) address);
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * 允许使用的堆外内存上限
+     */
+    long getMaxBytes() {
+        return (long) slabs.length * slabSize;
+    }
+
+    /**
+     * 已申请的堆外内存
+     */
+    synchronized long getCapacityBytes() {
+        return (long) slabCount * slabSize;
+    }
+
+    synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 已切分出的块中没有被数据占用的比例 包括块内按级取整的浪费和空闲列表中的块
+     */
+    synchronized double getFragmentation() {
+        long carved = allocatedBytes;
+        for (SizeClass sizeClass : classes) {
+            carved += (long) sizeClass.freeCount * sizeClass.chunkSize;
+        }
+        return carved == 0 ? 0D : 1D - (double) usedBytes / carved;
+    }
+
+    synchronized long getReassignedSlabs() {
+        return reassignedSlabs;
+    }
+
+    /**
+     * 各级别的使用情况 只包含拥有slab的级别
+     */
+    synchronized List<Map<String, Object>> getClassMetrics() {
+        int[] slabsPerClass = new int[classes.length];
+        int[] chunksPerClass = new int[classes.length];
+        for (int slab = 0; slab < slabCount; slab++) {
+            slabsPerClass[slabClasses[slab]]++;
+            chunksPerClass[slabClasses[slab]] += slabChunks[slab];
+        }
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        for (SizeClass sizeClass : classes) {
+            if (slabsPerClass[sizeClass.index] == 0) {
+                continue;
+            }
+            Map<String, Object> metric = new LinkedHashMap<>();
+            metric.put("chunkSize", sizeClass.chunkSize);
+            metric.put("slabs", slabsPerClass[sizeClass.index]);
+            metric.put("usedChunks", chunksPerClass[sizeClass.index]);
+            metric.put("freeChunks", sizeClass.freeCount);
+            metrics.add(metric);
+        }
+        return metrics;
+    }
+
+    private SizeClass classFor(int length) {
+        int low = 0;
+        int high = classes.length - 1;
+        if (length > classes[high].chunkSize) {
+            return null;
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (classes[mid].chunkSize < length) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return classes[low];
+    }
+
+    /**
+     * 块大小级别 当前切分中的slab和空闲块列表
+     */
+    private static final class SizeClass {
+        private final int index;
+
+        private final int chunkSize;
+
+        private int slab = -1;
+
+        private int nextOffset;
+
+        private long[] freeChunks = new long[16];
+
+        private int freeCount;
+
+        SizeClass(int index, int chunkSize) {
+            this.index = index;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * 移除空闲列表中属于指定slab的块
+         */
+        void dropFreeChunks(int slab) {
+            int kept = 0;
+            for (int i = 0; i < freeCount; i++) {
+                if ((int) (freeChunks[i] >>> 32) != slab) {
+                    freeChunks[kept++] = freeChunks[i];
+                }
+            }
+            freeCount = kept;
+        }
+
+        void push(long address) {
+            if (freeCount == freeChunks.length) {
+                long[] grown = new long[freeChunks.length << 1];
+                System.arraycopy(freeChunks, 0, grown, 0, freeCount);
+                freeChunks = grown;
+            }
+            freeChunks[freeCount++] = address;
+        }
+    }
+}
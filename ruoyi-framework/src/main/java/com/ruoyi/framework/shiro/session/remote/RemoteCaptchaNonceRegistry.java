@@ -0,0 +1,47 @@
+package com.ruoyi.framework.shiro.session.remote;
+
+import com.ruoyi.framework.shiro.service.CaptchaNonceRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 集群共享的验证码令牌随机数登记 复用会话存储服务，登记在服务端按令牌有效期过期
+ * 先在本机登记，同一节点上的重放不访问远端；远端不可用时只依赖本机登记，不阻断登录
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public class RemoteCaptchaNonceRegistry implements CaptchaNonceRegistry, Closeable {
+
+    private static final String KEY_PREFIX = "captcha:";
+
+    private final StoreConnectionPool connectionPool;
+
+    private final CaptchaNonceRegistry local;
+
+    public RemoteCaptchaNonceRegistry(String host, int port, int maxIdleConnections, CaptchaNonceRegistry local) {
+        this.connectionPool = new StoreConnectionPool(host, port, maxIdleConnections);
+        this.local = local;
+    }
+
+    @Override
+    public boolean register(String nonce, long ttlMillis) {
+        if (!local.register(nonce, ttlMillis)) {
+            return false;
+        }
+        try {
+            return connectionPool.call(SessionStoreProtocol.OP_PUT_IF_ABSENT, KEY_PREFIX + nonce, ttlMillis, null).status
+                    == SessionStoreProtocol.STATUS_OK;
+        } catch (IOException e) {
+            log.warn("register captcha nonce on remote store error: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    @Override
+    public void close() {
+        connectionPool.close();
+    }
+}
@@ -0,0 +1,74 @@
+package com.ruoyi.framework.shiro.session.remote;
+
+import com.ruoyi.framework.shiro.throttle.LoginAttemptStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 集群共享的登录尝试计数 复用会话存储服务，计数保存在服务端的滑动窗口中
+ * 远端不可用时退回本机计数，不阻断登录
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public class RemoteLoginAttemptStore implements LoginAttemptStore, Closeable {
+
+    private final StoreConnectionPool connectionPool;
+
+    private final long windowMillis;
+
+    private final LoginAttemptStore fallback;
+
+    public RemoteLoginAttemptStore(String host, int port, int maxIdleConnections, long windowMillis, LoginAttemptStore fallback) {
+        this.connectionPool = new StoreConnectionPool(host, port, maxIdleConnections);
+        this.windowMillis = windowMillis;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public int increment(String key) {
+        try {
+            return (int) connectionPool.call(SessionStoreProtocol.OP_INCR, key, windowMillis, null).version;
+        } catch (IOException e) {
+            log.warn("increment login attempts [{}] on remote store error: {}", key, e.getMessage());
+            return fallback.increment(key);
+        }
+    }
+
+    @Override
+    public void decrement(String key) {
+        try {
+            connectionPool.call(SessionStoreProtocol.OP_DECR, key, windowMillis, null);
+        } catch (IOException e) {
+            log.warn("decrement login attempts [{}] on remote store error: {}", key, e.getMessage());
+            fallback.decrement(key);
+        }
+    }
+
+    @Override
+    public int count(String key) {
+        try {
+            return (int) connectionPool.call(SessionStoreProtocol.OP_COUNT, key, windowMillis, null).version;
+        } catch (IOException e) {
+            log.warn("read login attempts [{}] from remote store error: {}", key, e.getMessage());
+            return fallback.count(key);
+        }
+    }
+
+    @Override
+    public void reset(String key) {
+        fallback.reset(key);
+        try {
+            connectionPool.call(SessionStoreProtocol.OP_RESET, key, windowMillis, null);
+        } catch (IOException e) {
+            log.warn("reset login attempts [{}] on remote store error: {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        connectionPool.close();
+    }
+}
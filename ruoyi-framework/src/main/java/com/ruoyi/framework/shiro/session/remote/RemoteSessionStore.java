@@ -0,0 +1,284 @@
+package com.ruoyi.framework.shiro.session.remote;
+
+import com.ruoyi.framework.shiro.session.OnlineSession;
+import com.ruoyi.framework.shiro.session.OnlineSessionCodec;
+import com.ruoyi.framework.shiro.session.SessionStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 集群共享的会话存储 通过二进制协议访问外部键值存储
+ * 读取时使用本地近缓存，近缓存在有效期内直接返回，过期后只携带版本号校验，未变化时不传输会话数据
+ * 写入时只有会话内容变化或最后访问时间超过同步间隔才写回远端，并携带存活时间，远端条目到期后由服务端删除
+ * 近缓存有条目数上限，长时间未使用或已超时的会话定期清除，超出上限时先清除最久未使用的条目
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public class RemoteSessionStore implements SessionStore, Closeable {
+
+    private final StoreConnectionPool connectionPool;
+
+    /**
+     * 近缓存无需校验直接使用的时长 单位毫秒
+     */
+    private long nearCacheValidityMillis = 1000;
+
+    /**
+     * 仅访问时间变化时写回远端的最小间隔 单位毫秒
+     */
+    private long touchSyncMillis = 10000;
+
+    /**
+     * 近缓存的最大条目数
+     */
+    private int nearCacheMaxSize = 10000;
+
+    /**
+     * 近缓存条目未被使用后保留的时长 单位毫秒
+     */
+    private long nearCacheMaxIdleMillis = 5 * 60 * 1000;
+
+    /**
+     * 两次清理近缓存的最小间隔 单位毫秒
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 10000;
+
+    private final Map<Serializable, NearEntry> nearCache = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastSweepAt = new AtomicLong();
+
+    public RemoteSessionStore(String host, int port, int maxIdleConnections) {
+        this.connectionPool = new StoreConnectionPool(host, port, maxIdleConnections);
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        connectionPool.setTimeoutMillis(timeoutMillis);
+    }
+
+    public void setNearCacheValidityMillis(long nearCacheValidityMillis) {
+        this.nearCacheValidityMillis = nearCacheValidityMillis;
+    }
+
+    public void setTouchSyncMillis(long touchSyncMillis) {
+        this.touchSyncMillis = touchSyncMillis;
+    }
+
+    public void setNearCacheMaxSize(int nearCacheMaxSize) {
+        this.nearCacheMaxSize = nearCacheMaxSize;
+    }
+
+    public void setNearCacheMaxIdleMillis(long nearCacheMaxIdleMillis) {
+        this.nearCacheMaxIdleMillis = nearCacheMaxIdleMillis;
+    }
+
+    @Override
+    public OnlineSession get(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        NearEntry entry = nearCache.get(sessionId);
+        if (entry != null) {
+            entry.usedAt = now;
+            if (now - entry.checkedAt < nearCacheValidityMillis) {
+                return entry.session;
+            }
+        }
+        try {
+            long knownVersion = entry != null ? entry.version : SessionStoreProtocol.NO_VERSION;
+            SessionStoreProtocol.Response response = call(SessionStoreProtocol.OP_GET, sessionId, knownVersion, null);
+            switch (response.status) {
+                case SessionStoreProtocol.STATUS_NOT_MODIFIED:
+                    entry.checkedAt = now;
+                    return entry.session;
+                case SessionStoreProtocol.STATUS_OK:
+                    OnlineSession session = decode(response.payload);
+                    cache(sessionId, new NearEntry(session, response.version, now));
+                    return session;
+                default:
+                    nearCache.remove(sessionId);
+                    return null;
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("read session [{}] from remote store error.", sessionId, e);
+            // 远端不可用时退回近缓存 只使用保留期内校验过的条目
+            return entry != null && now - entry.checkedAt < nearCacheMaxIdleMillis ? entry.session : null;
+        }
+    }
+
+    @Override
+    public void put(OnlineSession session) {
+        Serializable sessionId = session.getId();
+        long now = System.currentTimeMillis();
+        NearEntry entry = nearCache.get(sessionId);
+        if (entry != null && entry.session == session && !needsWrite(entry, session)) {
+            return;
+        }
+        try {
+            SessionStoreProtocol.Response response = call(SessionStoreProtocol.OP_PUT, sessionId, ttlOf(session, now), encode(session));
+            cache(sessionId, new NearEntry(session, response.version, now));
+        } catch (IOException e) {
+            log.error("write session [{}] to remote store error.", sessionId, e);
+        }
+    }
+
+    @Override
+    public OnlineSession remove(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        NearEntry entry = nearCache.remove(sessionId);
+        try {
+            call(SessionStoreProtocol.OP_REMOVE, sessionId, SessionStoreProtocol.NO_VERSION, null);
+        } catch (IOException e) {
+            log.error("remove session [{}] from remote store error.", sessionId, e);
+        }
+        return entry != null ? entry.session : null;
+    }
+
+    @Override
+    public int size() {
+        try {
+            return (int) call(SessionStoreProtocol.OP_SIZE, "", SessionStoreProtocol.NO_VERSION, null).version;
+        } catch (IOException e) {
+            log.error("read remote session store size error.", e);
+            return nearCache.size();
+        }
+    }
+
+    /**
+     * 本节点近缓存中的会话
+     */
+    @Override
+    public Collection<OnlineSession> values() {
+        List<OnlineSession> values = new ArrayList<>(nearCache.size());
+        for (NearEntry entry : nearCache.values()) {
+            values.add(entry.session);
+        }
+        return values;
+    }
+
+    @Override
+    public void close() {
+        connectionPool.close();
+    }
+
+    private void cache(Serializable sessionId, NearEntry entry) {
+        nearCache.put(sessionId, entry);
+        long now = entry.checkedAt;
+        long last = lastSweepAt.get();
+        boolean due = now - last >= SWEEP_INTERVAL_MILLIS || nearCache.size() > nearCacheMaxSize;
+        if (due && lastSweepAt.compareAndSet(last, now)) {
+            sweep(now);
+        }
+    }
+
+    /**
+     * 清理近缓存 先清除长时间未使用和已超时的会话，仍超出上限时清除最久未使用的条目至上限的九成
+     */
+    private void sweep(long now) {
+        nearCache.values().removeIf(entry -> now - entry.usedAt >= nearCacheMaxIdleMillis || isTimedOut(entry.session, now));
+        int overflow = nearCache.size() - nearCacheMaxSize;
+        if (overflow <= 0) {
+            return;
+        }
+        int evict = overflow + nearCacheMaxSize / 10;
+        long[] usedAt = new long[nearCache.size()];
+        int count = 0;
+        for (NearEntry entry : nearCache.values()) {
+            if (count == usedAt.length) {
+                break;
+            }
+            usedAt[count++] = entry.usedAt;
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(usedAt, 0, count);
+        long threshold = usedAt[Math.min(evict, count) - 1];
+        nearCache.values().removeIf(entry -> entry.usedAt <= threshold);
+    }
+
+    private static boolean isTimedOut(OnlineSession session, long now) {
+        Date lastAccessTime = session.getLastAccessTime();
+        long timeout = session.getTimeout();
+        return lastAccessTime != null && timeout >= 0 && lastAccessTime.getTime() + timeout < now;
+    }
+
+    /**
+     * 远端条目的存活时间 为最后访问时间加超时时间，再加上最后访问时间未同步的最长间隔
+     * 创建会话的节点停止后，其他节点也不再访问的会话由服务端按该时间删除
+     *
+     * @return 存活时间毫秒数 会话不超时时返回0
+     */
+    private long ttlOf(OnlineSession session, long now) {
+        long timeout = session.getTimeout();
+        if (timeout < 0) {
+            return 0;
+        }
+        Date lastAccessTime = session.getLastAccessTime();
+        long lastAccess = lastAccessTime != null ? lastAccessTime.getTime() : now;
+        return Math.max(1, lastAccess + timeout + touchSyncMillis - now);
+    }
+
+    private boolean needsWrite(NearEntry entry, OnlineSession session) {
+        if (entry.changeCount != session.getChangeCount()) {
+            return true;
+        }
+        Date lastAccessTime = session.getLastAccessTime();
+        return lastAccessTime != null && lastAccessTime.getTime() - entry.lastAccessTime >= touchSyncMillis;
+    }
+
+    private SessionStoreProtocol.Response call(byte op, Serializable sessionId, long version, byte[] payload) throws IOException {
+        return connectionPool.call(op, String.valueOf(sessionId), version, payload);
+    }
+
+    private static byte[] encode(OnlineSession session) throws IOException {
+        return OnlineSessionCodec.encode(session);
+    }
+
+    private static OnlineSession decode(byte[] payload) throws IOException, ClassNotFoundException {
+        return OnlineSessionCodec.decode(payload);
+    }
+
+    /**
+     * 近缓存条目
+     */
+    private static final class NearEntry {
+        private final OnlineSession session;
+
+        private final long version;
+
+        /**
+         * 写入或读取时会话的变更次数与访问时间
+         */
+        private final int changeCount;
+
+        private final long lastAccessTime;
+
+        private volatile long checkedAt;
+
+        private volatile long usedAt;
+
+        NearEntry(OnlineSession session, long version, long checkedAt) {
+            this.session = session;
+            this.version = version;
+            this.changeCount = session.getChangeCount();
+            this.lastAccessTime = session.getLastAccessTime() != null ? session.getLastAccessTime().getTime() : 0L;
+            this.checkedAt = checkedAt;
+            this.usedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.ruoyi.framework.shiro.session.remote;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 会话存储的二进制协议
+ * 请求：操作码(byte) 会话ID(UTF) 版本号(long) 数据长度(int) 数据
+ * 响应：状态码(byte) 版本号(long) 数据长度(int) 数据
+ *
+ * @author ruoyi
+ */
+final class SessionStoreProtocol {
+
+    private SessionStoreProtocol() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 读取会话 请求中的版本号为客户端已缓存的版本，-1表示未缓存
+     */
+    static final byte OP_GET = 1;
+
+    /**
+     * 写入会话 请求中的版本号字段为存活时间毫秒数，超过后服务端删除该会话，不大于0表示不过期；
+     * 响应中的版本号为写入后的新版本
+     */
+    static final byte OP_PUT = 2;
+
+    /**
+     * 删除会话
+     */
+    static final byte OP_REMOVE = 3;
+
+    /**
+     * 会话数量 响应中的版本号字段为数量
+     */
+    static final byte OP_SIZE = 4;
+
+    /**
+     * 登录尝试计数加一 请求中的版本号字段为时间窗口毫秒数，响应中的版本号字段为窗口内次数
+     */
+    static final byte OP_INCR = 5;
+
+    /**
+     * 查询登录尝试计数 字段含义同OP_INCR
+     */
+    static final byte OP_COUNT = 6;
+
+    /**
+     * 清除登录尝试计数 请求中的版本号字段为时间窗口毫秒数
+     */
+    static final byte OP_RESET = 7;
+
+    /**
+     * 撤销一次登录尝试 请求中的版本号字段为时间窗口毫秒数
+     */
+    static final byte OP_DECR = 8;
+
+    /**
+     * 登记键 请求中的版本号字段为存活时间毫秒数；键不存在或已过期时登记并返回STATUS_OK，
+     * 保留期内已登记过返回STATUS_NOT_MODIFIED。登记与会话、登录尝试计数分开保存
+     */
+    static final byte OP_PUT_IF_ABSENT = 9;
+
+    static final byte STATUS_OK = 0;
+
+    static final byte STATUS_NOT_MODIFIED = 1;
+
+    static final byte STATUS_NOT_FOUND = 2;
+
+    static final byte STATUS_ERROR = 3;
+
+    static final long NO_VERSION = -1L;
+
+    /**
+     * 单个会话数据的最大长度
+     */
+    static final int MAX_PAYLOAD = 16 * 1024 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    static void writeRequest(DataOutputStream out, byte op, String key, long version, byte[] payload) throws IOException {
+        out.writeByte(op);
+        out.writeUTF(key);
+        out.writeLong(version);
+        writePayload(out, payload);
+        out.flush();
+    }
+
+    static void writeResponse(DataOutputStream out, byte status, long version, byte[] payload) throws IOException {
+        out.writeByte(status);
+        out.writeLong(version);
+        writePayload(out, payload);
+        out.flush();
+    }
+
+    static byte[] readPayload(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("invalid session payload length " + length);
+        }
+        if (length == 0) {
+            return EMPTY;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    private static void writePayload(DataOutputStream out, byte[] payload) throws IOException {
+        if (payload == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+    }
+
+    /**
+     * 响应
+     */
+    static final class Response {
+        final byte status;
+
+        final long version;
+
+        final byte[] payload;
+
+        Response(byte status, long version, byte[] payload) {
+            this.status = status;
+            this.version = version;
+            this.payload = payload;
+        }
+
+        static Response read(DataInputStream in) throws IOException {
+            byte status = in.readByte();
+            long version = in.readLong();
+            return new Response(status, version, readPayload(in));
+        }
+    }
+}
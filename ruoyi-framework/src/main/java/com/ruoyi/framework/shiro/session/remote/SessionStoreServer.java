@@ -0,0 +1,277 @@
+package com.ruoyi.framework.shiro.session.remote;
+
+import com.ruoyi.framework.shiro.throttle.LocalLoginAttemptStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 轻量会话存储服务 实现与RemoteSessionStore相同的二进制协议
+ * 用于本机测试和开发环境代替外部键值存储，不做持久化；同时提供集群共享的登录尝试计数和验证码令牌随机数登记
+ * 会话按写入时携带的存活时间过期，读取时不返回过期会话，并定期清除，写入的节点停止后也不会残留
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public class SessionStoreServer implements Closeable {
+
+    /**
+     * 每个时间窗口最多保存的登录尝试计数键
+     */
+    private static final int MAX_ATTEMPT_KEYS = 1_000_000;
+
+    /**
+     * 清除过期会话的间隔 单位毫秒
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 10_000;
+
+    private final InetAddress bindAddress;
+
+    private final int port;
+
+    private final Map<String, Versioned> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private final AtomicLong lastSweepAt = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * 登记的键及其过期时间
+     */
+    private final Map<String, Long> registrations = new ConcurrentHashMap<>();
+
+    /**
+     * 登录尝试计数 按时间窗口区分
+     */
+    private final Map<Long, LocalLoginAttemptStore> attemptStores = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new BasicThreadFactory.Builder().namingPattern("session-store-%d").daemon(true).build());
+
+    private volatile ServerSocket serverSocket;
+
+    public SessionStoreServer(int port) {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public SessionStoreServer(InetAddress bindAddress, int port) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    /**
+     * 启动服务
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        serverSocket = new ServerSocket(port, 50, bindAddress);
+        executor.execute(this::acceptLoop);
+        log.info("session store server started on {}:{}", bindAddress.getHostAddress(), getPort());
+    }
+
+    /**
+     * 实际监听的端口 构造时传0则为随机端口
+     */
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket != null ? socket.getLocalPort() : port;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        ServerSocket socket = serverSocket;
+        serverSocket = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.warn("close session store server error.", e);
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        ServerSocket socket = serverSocket;
+        while (socket != null && !socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                client.setTcpNoDelay(true);
+                executor.execute(() -> serve(client));
+            } catch (SocketException e) {
+                // 服务关闭
+                return;
+            } catch (IOException e) {
+                log.error("accept session store connection error.", e);
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket socket = client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                String key = in.readUTF();
+                long version = in.readLong();
+                byte[] payload = SessionStoreProtocol.readPayload(in);
+                handle(out, op, key, version, payload);
+            }
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("session store connection closed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void handle(DataOutputStream out, byte op, String key, long version, byte[] payload) throws IOException {
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+        switch (op) {
+            case SessionStoreProtocol.OP_GET: {
+                Versioned value = sessions.get(key);
+                if (value != null && value.isExpired(now)) {
+                    sessions.remove(key, value);
+                    value = null;
+                }
+                if (value == null) {
+                    SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_NOT_FOUND, SessionStoreProtocol.NO_VERSION, null);
+                } else if (value.version == version) {
+                    SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_NOT_MODIFIED, value.version, null);
+                } else {
+                    SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_OK, value.version, value.payload);
+                }
+                break;
+            }
+            case SessionStoreProtocol.OP_PUT: {
+                long newVersion = versionSequence.incrementAndGet();
+                long expireAt = version > 0 ? now + version : Long.MAX_VALUE;
+                sessions.put(key, new Versioned(newVersion, payload, expireAt));
+                SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_OK, newVersion, null);
+                break;
+            }
+            case SessionStoreProtocol.OP_REMOVE: {
+                byte status = sessions.remove(key) != null ? SessionStoreProtocol.STATUS_OK : SessionStoreProtocol.STATUS_NOT_FOUND;
+                SessionStoreProtocol.writeResponse(out, status, SessionStoreProtocol.NO_VERSION, null);
+                break;
+            }
+            case SessionStoreProtocol.OP_SIZE:
+                SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_OK, sessions.size(), null);
+                break;
+            case SessionStoreProtocol.OP_INCR:
+                SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_OK, attemptStore(version).increment(key), null);
+                break;
+            case SessionStoreProtocol.OP_COUNT:
+                SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_OK, attemptStore(version).count(key), null);
+                break;
+            case SessionStoreProtocol.OP_DECR:
+                attemptStore(version).decrement(key);
+                SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_OK, SessionStoreProtocol.NO_VERSION, null);
+                break;
+            case SessionStoreProtocol.OP_RESET:
+                attemptStore(version).reset(key);
+                SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_OK, SessionStoreProtocol.NO_VERSION, null);
+                break;
+            case SessionStoreProtocol.OP_PUT_IF_ABSENT: {
+                byte status = register(key, version, now) ? SessionStoreProtocol.STATUS_OK : SessionStoreProtocol.STATUS_NOT_MODIFIED;
+                SessionStoreProtocol.writeResponse(out, status, SessionStoreProtocol.NO_VERSION, null);
+                break;
+            }
+            default:
+                SessionStoreProtocol.writeResponse(out, SessionStoreProtocol.STATUS_ERROR, SessionStoreProtocol.NO_VERSION, null);
+        }
+    }
+
+    /**
+     * 登记键 已过期的登记视为未登记
+     */
+    private boolean register(String key, long ttlMillis, long now) {
+        long expireAt = ttlMillis > 0 ? now + ttlMillis : Long.MAX_VALUE;
+        Long previous = registrations.putIfAbsent(key, expireAt);
+        if (previous == null) {
+            return true;
+        }
+        return previous <= now && registrations.replace(key, previous, expireAt);
+    }
+
+    /**
+     * 定期清除过期会话和登记 由处理请求的线程顺带执行，同一时间只有一个线程清除
+     */
+    private void sweepIfDue(long now) {
+        long last = lastSweepAt.get();
+        if (now - last < SWEEP_INTERVAL_MILLIS || !lastSweepAt.compareAndSet(last, now)) {
+            return;
+        }
+        int before = sessions.size();
+        sessions.values().removeIf(value -> value.isExpired(now));
+        registrations.values().removeIf(expireAt -> expireAt <= now);
+        int removed = before - sessions.size();
+        if (removed > 0 && log.isDebugEnabled()) {
+            log.debug("removed [{}] expired sessions from session store.", removed);
+        }
+    }
+
+    private LocalLoginAttemptStore attemptStore(long windowMillis) {
+        return attemptStores.computeIfAbsent(Math.max(1L, windowMillis), window -> new LocalLoginAttemptStore(window, MAX_ATTEMPT_KEYS));
+    }
+
+    private static final class Versioned {
+        private final long version;
+
+        private final byte[] payload;
+
+        /**
+         * 过期时间 不过期为Long.MAX_VALUE
+         */
+        private final long expireAt;
+
+        Versioned(long version, byte[] payload, long expireAt) {
+            this.version = version;
+            this.payload = payload;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expireAt;
+        }
+    }
+
+    /**
+     * 独立运行 参数为监听端口，默认7379
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7379;
+        SessionStoreServer server = new SessionStoreServer(port);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        Thread.currentThread().join();
+    }
+}
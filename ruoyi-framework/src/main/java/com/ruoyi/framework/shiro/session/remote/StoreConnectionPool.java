@@ -0,0 +1,102 @@
+package com.ruoyi.framework.shiro.session.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 到会话存储服务的连接池 空闲连接放回队列复用，超出上限的直接关闭
+ *
+ * @author ruoyi
+ */
+class StoreConnectionPool implements Closeable {
+
+    private final String host;
+
+    private final int port;
+
+    /**
+     * 连接与读取超时时间 单位毫秒
+     */
+    private int timeoutMillis = 2000;
+
+    private final BlockingQueue<Connection> idleConnections;
+
+    StoreConnectionPool(String host, int port, int maxIdleConnections) {
+        this.host = host;
+        this.port = port;
+        this.idleConnections = new ArrayBlockingQueue<>(Math.max(1, maxIdleConnections));
+    }
+
+    void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 发出请求 读写出错时关闭连接；服务端返回错误状态时连接仍可用，放回连接池后再抛出异常
+     */
+    SessionStoreProtocol.Response call(byte op, String key, long version, byte[] payload) throws IOException {
+        Connection connection = idleConnections.poll();
+        if (connection == null) {
+            connection = new Connection(host, port, timeoutMillis);
+        }
+        SessionStoreProtocol.Response response;
+        try {
+            SessionStoreProtocol.writeRequest(connection.out, op, key, version, payload);
+            response = SessionStoreProtocol.Response.read(connection.in);
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+        if (!idleConnections.offer(connection)) {
+            connection.close();
+        }
+        if (response.status == SessionStoreProtocol.STATUS_ERROR) {
+            throw new IOException("remote session store rejected op " + op);
+        }
+        return response;
+    }
+
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * 到远端的单个连接
+     */
+    private static final class Connection {
+        private final Socket socket;
+
+        private final DataInputStream in;
+
+        private final DataOutputStream out;
+
+        Connection(String host, int port, int timeoutMillis) throws IOException {
+            this.socket = new Socket();
+            this.socket.setTcpNoDelay(true);
+            this.socket.setSoTimeout(timeoutMillis);
+            this.socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
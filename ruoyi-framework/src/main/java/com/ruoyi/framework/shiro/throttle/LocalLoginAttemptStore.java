@@ -0,0 +1,75 @@
+package com.ruoyi.framework.shiro.throttle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 本机登录尝试计数 每个键一个无锁滑动窗口计数器
+ * 键数量超过上限时清理窗口内已无记录的计数器
+ *
+ * @author ruoyi
+ */
+public class LocalLoginAttemptStore implements LoginAttemptStore {
+
+    /**
+     * 每个时间窗口的分桶数
+     */
+    static final int BUCKETS = 10;
+
+    private final long windowMillis;
+
+    private final int maxKeys;
+
+    private final Map<String, SlidingWindowCounter> counters = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    public LocalLoginAttemptStore(long windowMillis, int maxKeys) {
+        this.windowMillis = windowMillis;
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public int increment(String key) {
+        long now = System.currentTimeMillis();
+        SlidingWindowCounter counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() >= maxKeys) {
+                purge(now);
+            }
+            counter = counters.computeIfAbsent(key, k -> new SlidingWindowCounter(windowMillis, BUCKETS));
+        }
+        return counter.increment(now);
+    }
+
+    @Override
+    public void decrement(String key) {
+        SlidingWindowCounter counter = counters.get(key);
+        if (counter != null) {
+            counter.decrement(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public int count(String key) {
+        SlidingWindowCounter counter = counters.get(key);
+        return counter != null ? counter.count(System.currentTimeMillis()) : 0;
+    }
+
+    @Override
+    public void reset(String key) {
+        counters.remove(key);
+    }
+
+    private void purge(long now) {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            counters.values().removeIf(counter -> counter.count(now) == 0);
+        } finally {
+            purging.set(false);
+        }
+    }
+}
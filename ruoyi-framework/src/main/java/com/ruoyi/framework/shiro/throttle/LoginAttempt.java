@@ -0,0 +1,76 @@
+package com.ruoyi.framework.shiro.throttle;
+
+/**
+ * 一次登录尝试的预占结果 由{@link LoginThrottle#acquire(String)}按来源创建，
+ * 查到用户后由{@link LoginThrottle#reserveUser(LoginAttempt, String)}再按登录名预占
+ * 被限制时预占已经退还；未被限制时由调用方在登录成功或不计入失败时交回
+ *
+ * @author ruoyi
+ */
+public final class LoginAttempt {
+
+    final String ip;
+
+    final String subnet;
+
+    private final boolean sourceThrottled;
+
+    /**
+     * 规范化后的登录名 按登录名预占后才有值
+     */
+    String loginName;
+
+    private boolean userLocked;
+
+    private int failures;
+
+    private boolean settled;
+
+    LoginAttempt(String ip, String subnet, boolean sourceThrottled) {
+        this.ip = ip;
+        this.subnet = subnet;
+        this.sourceThrottled = sourceThrottled;
+        this.settled = sourceThrottled;
+    }
+
+    /**
+     * 记录按登录名预占的结果
+     */
+    void reserved(String loginName, int failures, boolean userLocked) {
+        this.loginName = loginName;
+        this.failures = failures;
+        this.userLocked = userLocked;
+    }
+
+    /**
+     * 是否因IP或网段失败次数过多被限制
+     */
+    public boolean isSourceThrottled() {
+        return sourceThrottled;
+    }
+
+    /**
+     * 是否因用户名失败次数过多被锁定
+     */
+    public boolean isUserLocked() {
+        return userLocked;
+    }
+
+    /**
+     * 计入本次尝试后该用户在时间窗口内的失败次数
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * 标记为已交回 返回之前是否未交回，保证每次预占只退还一次
+     */
+    boolean settle() {
+        if (settled) {
+            return false;
+        }
+        settled = true;
+        return true;
+    }
+}
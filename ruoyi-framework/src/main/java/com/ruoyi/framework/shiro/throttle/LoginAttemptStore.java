@@ -0,0 +1,39 @@
+package com.ruoyi.framework.shiro.throttle;
+
+/**
+ * 登录尝试计数存储
+ *
+ * @author ruoyi
+ */
+public interface LoginAttemptStore {
+
+    /**
+     * 记录一次尝试
+     *
+     * @param key 计数键
+     * @return 时间窗口内的尝试次数
+     */
+    int increment(String key);
+
+    /**
+     * 撤销一次尝试 用于退还预先记录但最终不计入的尝试
+     *
+     * @param key 计数键
+     */
+    void decrement(String key);
+
+    /**
+     * 查询时间窗口内的尝试次数
+     *
+     * @param key 计数键
+     * @return 尝试次数
+     */
+    int count(String key);
+
+    /**
+     * 清除计数
+     *
+     * @param key 计数键
+     */
+    void reset(String key);
+}
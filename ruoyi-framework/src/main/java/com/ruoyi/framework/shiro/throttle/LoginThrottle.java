@@ -0,0 +1,202 @@
+package com.ruoyi.framework.shiro.throttle;
+
+import com.ruoyi.common.utils.IpUtils;
+import com.ruoyi.common.utils.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 登录限流 查询用户之前按IP和网段预占登录尝试，查到用户后按规范化的登录名预占，均在校验密码之前，计数与判断一步完成
+ * 用户以登录名、手机号或邮箱登录时共用同一个登录名计数；登录名计数在登录成功后清除，IP和网段只统计失败次数（成功时退还）
+ * 来源IP只信任配置的代理转发的地址，不使用客户端可以任意填写的代理头
+ *
+ * @author ruoyi
+ */
+@Component
+public class LoginThrottle {
+
+    private static final String USER_KEY = "user:";
+
+    private static final String IP_KEY = "ip:";
+
+    private static final String SUBNET_KEY = "net:";
+
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    private final LoginAttemptStore store;
+
+    /**
+     * 同一用户在时间窗口内允许的失败次数
+     */
+    @Value("${user.password.maxRetryCount}")
+    private int maxRetryCount;
+
+    /**
+     * 同一IP在时间窗口内允许的失败次数
+     */
+    @Value("${user.login.maxAttemptsPerIp:50}")
+    private int maxAttemptsPerIp;
+
+    /**
+     * 同一网段在时间窗口内允许的失败次数
+     */
+    @Value("${user.login.maxAttemptsPerSubnet:200}")
+    private int maxAttemptsPerSubnet;
+
+    /**
+     * 可信的反向代理地址 只有直连地址属于这些代理时才使用 X-Forwarded-For
+     */
+    private final Set<String> trustedProxies;
+
+    @Autowired
+    public LoginThrottle(LoginAttemptStore store, @Value("${user.login.trustedProxies:}") String trustedProxies) {
+        this.store = store;
+        Set<String> proxies = new HashSet<>();
+        for (String proxy : StringUtils.split(trustedProxies, ",")) {
+            if (StringUtils.isNotBlank(proxy)) {
+                proxies.add(proxy.trim());
+            }
+        }
+        this.trustedProxies = Collections.unmodifiableSet(proxies);
+    }
+
+    /**
+     * 限流使用的来源IP 与页面显示、日志中的IP不同，不信任客户端提交的代理头
+     *
+     * @param request 请求
+     * @return 来源IP
+     */
+    public String sourceOf(HttpServletRequest request) {
+        return IpUtils.getTrustedIpAddr(request, trustedProxies);
+    }
+
+    /**
+     * 按来源预占一次登录尝试 先计数再判断，并发请求不会都在计数之前通过检查
+     * 超出限制时立即退还本次计数；未超出时本次尝试默认按失败计入，
+     * 登录成功调用{@link #succeed(LoginAttempt)}，不应计入失败时调用{@link #release(LoginAttempt)}
+     *
+     * @param ip 来源IP 应由{@link #sourceOf(HttpServletRequest)}取得
+     * @return 预占结果
+     */
+    public LoginAttempt acquire(String ip) {
+        String subnet = StringUtils.isNotEmpty(ip) ? subnetOf(ip) : null;
+        boolean sourceThrottled = false;
+        if (StringUtils.isNotEmpty(ip)) {
+            sourceThrottled = store.increment(IP_KEY + ip) > maxAttemptsPerIp;
+            if (subnet != null) {
+                sourceThrottled = store.increment(SUBNET_KEY + subnet) > maxAttemptsPerSubnet || sourceThrottled;
+            }
+        }
+        LoginAttempt attempt = new LoginAttempt(ip, subnet, sourceThrottled);
+        if (sourceThrottled) {
+            refund(attempt);
+        }
+        return attempt;
+    }
+
+    /**
+     * 按登录名预占 应传入查到的用户的登录名，而不是用户提交的手机号或邮箱
+     * 超出限制时退还本次尝试的全部计数
+     *
+     * @param attempt 按来源预占的尝试
+     * @param loginName 用户的登录名
+     * @return 是否被锁定
+     */
+    public boolean reserveUser(LoginAttempt attempt, String loginName) {
+        String name = canonical(loginName);
+        if (StringUtils.isEmpty(name) || attempt.loginName != null) {
+            return attempt.isUserLocked();
+        }
+        int failures = store.increment(USER_KEY + name);
+        boolean userLocked = failures > maxRetryCount;
+        attempt.reserved(name, failures, userLocked);
+        if (userLocked && attempt.settle()) {
+            refund(attempt);
+        }
+        return userLocked;
+    }
+
+    /**
+     * 登录成功 退还来源计数并清除用户名计数
+     */
+    public void succeed(LoginAttempt attempt) {
+        if (attempt.settle()) {
+            refundSource(attempt);
+            if (StringUtils.isNotEmpty(attempt.loginName)) {
+                store.reset(USER_KEY + attempt.loginName);
+            }
+        }
+    }
+
+    /**
+     * 本次尝试不计入失败 如账号已删除或停用，退还全部计数
+     */
+    public void release(LoginAttempt attempt) {
+        if (attempt.settle()) {
+            refund(attempt);
+        }
+    }
+
+    private void refund(LoginAttempt attempt) {
+        refundSource(attempt);
+        if (StringUtils.isNotEmpty(attempt.loginName)) {
+            store.decrement(USER_KEY + attempt.loginName);
+        }
+    }
+
+    private void refundSource(LoginAttempt attempt) {
+        if (StringUtils.isNotEmpty(attempt.ip)) {
+            store.decrement(IP_KEY + attempt.ip);
+            if (attempt.subnet != null) {
+                store.decrement(SUBNET_KEY + attempt.subnet);
+            }
+        }
+    }
+
+    public int getMaxRetryCount() {
+        return maxRetryCount;
+    }
+
+    /**
+     * 登录名计数的键 去掉首尾空白并转为小写
+     */
+    static String canonical(String loginName) {
+        return loginName == null ? null : loginName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * IPv4取/24网段 IPv6取/64网段
+     */
+    static String subnetOf(String ip) {
+        if (IPV4.matcher(ip).matches()) {
+            return ip.substring(0, ip.lastIndexOf('.')) + ".0/24";
+        }
+        if (ip.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            // 包含冒号的字面量地址不会触发域名解析
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            if (address.length != 16) {
+                return null;
+            }
+            StringBuilder subnet = new StringBuilder();
+            for (int i = 0; i < 8; i += 2) {
+                subnet.append(Integer.toHexString(((address[i] & 0xff) << 8) | (address[i + 1] & 0xff))).append(':');
+            }
+            return subnet.append(":/64").toString();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
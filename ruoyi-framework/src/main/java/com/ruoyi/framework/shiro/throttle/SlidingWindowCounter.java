@@ -0,0 +1,95 @@
+package com.ruoyi.framework.shiro.throttle;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁滑动窗口计数器 时间窗口按固定时长分桶，每个桶用一个long保存桶序号（高40位）和计数（低24位）
+ * 计数与桶轮换通过CAS一次完成，不需要加锁
+ *
+ * @author ruoyi
+ */
+public final class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 24;
+
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray buckets;
+
+    private final long bucketMillis;
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount) {
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.bucketMillis = Math.max(1L, windowMillis / bucketCount);
+    }
+
+    /**
+     * 记录一次并返回窗口内的次数
+     */
+    public int increment(long now) {
+        long epoch = now / bucketMillis;
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            long current = buckets.get(index);
+            long next;
+            if (current >>> COUNT_BITS == epoch) {
+                if ((current & COUNT_MASK) == COUNT_MASK) {
+                    break;
+                }
+                next = current + 1;
+            } else {
+                next = (epoch << COUNT_BITS) | 1L;
+            }
+            if (buckets.compareAndSet(index, current, next)) {
+                break;
+            }
+        }
+        return count(now);
+    }
+
+    /**
+     * 撤销一次记录 从最新的桶开始找到仍在窗口内且有计数的桶减一，没有时不做处理
+     */
+    public void decrement(long now) {
+        long epoch = now / bucketMillis;
+        for (int i = 0; i < buckets.length(); i++) {
+            long target = epoch - i;
+            int index = (int) (target % buckets.length());
+            while (true) {
+                long current = buckets.get(index);
+                if (current >>> COUNT_BITS != target || (current & COUNT_MASK) == 0) {
+                    break;
+                }
+                if (buckets.compareAndSet(index, current, current - 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 窗口内的次数
+     */
+    public int count(long now) {
+        long epoch = now / bucketMillis;
+        long oldest = epoch - buckets.length() + 1;
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            long value = buckets.get(i);
+            long bucketEpoch = value >>> COUNT_BITS;
+            if (bucketEpoch >= oldest && bucketEpoch <= epoch) {
+                total += value & COUNT_MASK;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    /**
+     * 清零
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0L);
+        }
+    }
+}
@@ -3,8 +3,6 @@ package com.ruoyi.framework.shiro.web.filter;
 import com.ruoyi.common.constant.Constants;
 import com.ruoyi.common.utils.StringUtils;
 import com.ruoyi.framework.manager.AsyncManager;
-import com.ruoyi.framework.manager.factory.AsyncFactory;
-import com.ruoyi.framework.util.MessageUtils;
 import com.ruoyi.framework.util.ShiroUtils;
 import com.ruoyi.system.domain.SysUser;
 import lombok.extern.slf4j.Slf4j;
@@ -44,7 +42,7 @@ public class LogoutFilter extends org.apache.shiro.web.filter.authc.LogoutFilter
             if (ObjectUtils.allNotNull(user)) {
                 String loginName = user.getLoginName();
                 // 记录用户退出日志
-                AsyncManager.me().execute(AsyncFactory.recordLogininfor(loginName, Constants.LOGOUT, MessageUtils.message("user.logout.success")));
+                AsyncManager.me().recordLogininfor(loginName, Constants.LOGOUT, "user.logout.success");
             }
             // 退出登录
             subject.logout();
@@ -3,11 +3,14 @@ package com.ruoyi.framework.shiro.web.filter.captcha;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.shiro.web.filter.AccessControlFilter;
+import org.springframework.beans.factory.annotation.Autowired;
 import com.google.code.kaptcha.Constants;
 import com.ruoyi.common.constant.ShiroConstants;
 import com.ruoyi.common.utils.StringUtils;
+import com.ruoyi.framework.shiro.service.SysCaptchaTokenService;
 import com.ruoyi.framework.util.ShiroUtils;
 
 /**
@@ -26,6 +29,9 @@ public class CaptchaValidateFilter extends AccessControlFilter {
      */
     private String captchaType = "math" ;
 
+    @Autowired
+    private SysCaptchaTokenService captchaTokenService;
+
     public void setCaptchaEnabled(boolean captchaEnabled) {
         this.captchaEnabled = captchaEnabled;
     }
@@ -48,7 +54,11 @@ public class CaptchaValidateFilter extends AccessControlFilter {
         if (!captchaEnabled || !"post".equalsIgnoreCase(httpServletRequest.getMethod().toLowerCase())) {
             return true;
         }
-        return validateResponse(httpServletRequest.getParameter(ShiroConstants.CURRENT_VALIDATECODE));
+        String validateCode = httpServletRequest.getParameter(ShiroConstants.CURRENT_VALIDATECODE);
+        if (captchaTokenService.isTokenMode()) {
+            return captchaTokenService.verify(httpServletRequest, (HttpServletResponse) response, validateCode);
+        }
+        return validateResponse(validateCode);
     }
 
     private boolean validateResponse(String validateCode) {
@@ -0,0 +1,21 @@
+package com.ruoyi.framework.shiro.web.filter.mgt;
+
+import org.apache.shiro.util.AntPathMatcher;
+
+/**
+ * 路径过滤器使用的匹配器 /**和不含通配符的相同路径直接返回，其余交给AntPathMatcher
+ *
+ * @author ruoyi
+ */
+public class FastPathMatcher extends AntPathMatcher {
+
+    private static final String ALL_PATHS = "/**";
+
+    @Override
+    public boolean match(String pattern, String path) {
+        if (path != null && path.startsWith("/") && (ALL_PATHS.equals(pattern) || pattern.equals(path))) {
+            return true;
+        }
+        return super.match(pattern, path);
+    }
+}
@@ -0,0 +1,227 @@
+package com.ruoyi.framework.shiro.web.filter.mgt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shiro.util.AntPathMatcher;
+import org.apache.shiro.util.PatternMatcher;
+import org.apache.shiro.web.filter.mgt.FilterChainManager;
+import org.apache.shiro.web.filter.mgt.FilterChainResolver;
+import org.apache.shiro.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按路径段编译的过滤链解析器 启动时把过滤链定义编译为前缀树，一次遍历即可找到匹配的过滤链
+ * 支持精确路径、以/**结尾的目录前缀和末段前缀通配（如/favicon.ico**），其余Ant表达式按定义顺序逐个匹配
+ * 多个定义同时匹配时与PathMatchingFilterChainResolver一致，取定义顺序最靠前的一个
+ *
+ * @author ruoyi
+ */
+@Slf4j
+public class RadixFilterChainResolver implements FilterChainResolver {
+
+    private static final String SEPARATOR = "/";
+
+    private static final String ANY_PATH = "**";
+
+    private final FilterChainManager filterChainManager;
+
+    private final PatternMatcher pathMatcher = new AntPathMatcher();
+
+    private final Node root = new Node();
+
+    /**
+     * 无法编译进前缀树的定义 按定义顺序保存
+     */
+    private final List<Pattern> fallbackPatterns = new ArrayList<>();
+
+    private final List<String> chainNames = new ArrayList<>();
+
+    public RadixFilterChainResolver(FilterChainManager filterChainManager) {
+        this.filterChainManager = filterChainManager;
+        for (String chainName : filterChainManager.getChainNames()) {
+            compile(chainName, chainNames.size());
+            chainNames.add(chainName);
+        }
+        log.info("compiled {} filter chains, {} resolved by tree walk", chainNames.size(), chainNames.size() - fallbackPatterns.size());
+    }
+
+    @Override
+    public FilterChain getChain(ServletRequest request, ServletResponse response, FilterChain originalChain) {
+        if (chainNames.isEmpty()) {
+            return null;
+        }
+        String path = WebUtils.getPathWithinApplication(WebUtils.toHttp(request));
+        int order = find(path);
+        if (order < 0) {
+            return null;
+        }
+        String chainName = chainNames.get(order);
+        if (log.isTraceEnabled()) {
+            log.trace("Matched path pattern [{}] for requestURI [{}]. Utilizing corresponding filter chain...", chainName, path);
+        }
+        return filterChainManager.proxy(originalChain, chainName);
+    }
+
+    /**
+     * 查找匹配的过滤链
+     *
+     * @param path 请求路径
+     * @return 过滤链的定义顺序 未匹配返回-1
+     */
+    int find(String path) {
+        int best = Integer.MAX_VALUE;
+        if (path != null && path.startsWith(SEPARATOR)) {
+            String[] segments = tokenize(path);
+            boolean trailingSeparator = path.length() > 1 && path.endsWith(SEPARATOR);
+            Node node = root;
+            for (int i = 0; node != null; i++) {
+                best = Math.min(best, node.anyPathOrder);
+                if (i == segments.length) {
+                    if (!trailingSeparator) {
+                        best = Math.min(best, node.exactOrder);
+                    }
+                    break;
+                }
+                if (i == segments.length - 1 && !trailingSeparator) {
+                    for (SegmentPrefix prefix : node.segmentPrefixes) {
+                        if (prefix.order < best && segments[i].startsWith(prefix.prefix)) {
+                            best = prefix.order;
+                        }
+                    }
+                }
+                node = node.children.get(segments[i]);
+            }
+        }
+        for (Pattern pattern : fallbackPatterns) {
+            if (pattern.order >= best) {
+                break;
+            }
+            if (pathMatcher.matches(pattern.pattern, path)) {
+                best = pattern.order;
+                break;
+            }
+        }
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    private void compile(String pattern, int order) {
+        if (!pattern.startsWith(SEPARATOR)) {
+            fallbackPatterns.add(new Pattern(pattern, order));
+            return;
+        }
+        String[] segments = tokenize(pattern);
+        boolean trailingSeparator = pattern.length() > 1 && pattern.endsWith(SEPARATOR);
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (hasWildcard(segments[i])) {
+                fallbackPatterns.add(new Pattern(pattern, order));
+                return;
+            }
+        }
+        Node node = root;
+        if (last < 0) {
+            // 根路径
+            node.exactOrder = Math.min(node.exactOrder, order);
+            return;
+        }
+        for (int i = 0; i < last; i++) {
+            node = node.child(segments[i]);
+        }
+        String tail = segments[last];
+        if (ANY_PATH.equals(tail)) {
+            node.anyPathOrder = Math.min(node.anyPathOrder, order);
+        } else if (!hasWildcard(tail) && !trailingSeparator) {
+            node = node.child(tail);
+            node.exactOrder = Math.min(node.exactOrder, order);
+        } else if (!trailingSeparator && isPrefixWildcard(tail)) {
+            node.segmentPrefixes.add(new SegmentPrefix(tail.substring(0, tail.indexOf('*')), order));
+        } else {
+            fallbackPatterns.add(new Pattern(pattern, order));
+        }
+    }
+
+    /**
+     * 与AntPathMatcher相同的分段规则 去除空段并去掉首尾空白
+     */
+    private static String[] tokenize(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split(SEPARATOR)) {
+            String token = segment.trim();
+            if (!token.isEmpty()) {
+                segments.add(token);
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static boolean hasWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+    }
+
+    /**
+     * 末段为固定前缀加若干*，如favicon.ico**
+     */
+    private static boolean isPrefixWildcard(String segment) {
+        int star = segment.indexOf('*');
+        if (star <= 0 || segment.indexOf('?') >= 0) {
+            return false;
+        }
+        for (int i = star; i < segment.length(); i++) {
+            if (segment.charAt(i) != '*') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 前缀树节点 记录在此结束的各类定义中最靠前的定义顺序
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+
+        private final List<SegmentPrefix> segmentPrefixes = new ArrayList<>();
+
+        /**
+         * 路径恰好到此结束时匹配
+         */
+        private int exactOrder = Integer.MAX_VALUE;
+
+        /**
+         * 此路径及其下所有路径都匹配
+         */
+        private int anyPathOrder = Integer.MAX_VALUE;
+
+        Node child(String segment) {
+            return children.computeIfAbsent(segment, key -> new Node());
+        }
+    }
+
+    private static final class SegmentPrefix {
+        private final String prefix;
+
+        private final int order;
+
+        SegmentPrefix(String prefix, int order) {
+            this.prefix = prefix;
+            this.order = order;
+        }
+    }
+
+    private static final class Pattern {
+        private final String pattern;
+
+        private final int order;
+
+        Pattern(String pattern, int order) {
+            this.pattern = pattern;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ruoyi.framework.shiro.web.filter.mgt;
+
+import org.apache.shiro.spring.web.ShiroFilterFactoryBean;
+import org.apache.shiro.web.filter.mgt.FilterChainResolver;
+import org.apache.shiro.web.filter.mgt.PathMatchingFilterChainResolver;
+import org.apache.shiro.web.servlet.AbstractShiroFilter;
+
+/**
+ * 使用{@link RadixFilterChainResolver}解析过滤链的ShiroFilterFactoryBean
+ *
+ * @author ruoyi
+ */
+public class RadixShiroFilterFactoryBean extends ShiroFilterFactoryBean {
+
+    @Override
+    protected AbstractShiroFilter createInstance() throws Exception {
+        AbstractShiroFilter filter = super.createInstance();
+        FilterChainResolver resolver = filter.getFilterChainResolver();
+        if (resolver instanceof PathMatchingFilterChainResolver) {
+            filter.setFilterChainResolver(new RadixFilterChainResolver(((PathMatchingFilterChainResolver) resolver).getFilterChainManager()));
+        }
+        return filter;
+    }
+}
@@ -14,6 +14,7 @@ import com.ruoyi.common.constant.ShiroConstants;
 import com.ruoyi.common.enums.OnlineStatus;
 import com.ruoyi.framework.shiro.session.OnlineSession;
 import com.ruoyi.framework.shiro.session.OnlineSessionDAO;
+import com.ruoyi.framework.shiro.web.filter.mgt.FastPathMatcher;
 import com.ruoyi.framework.util.ShiroUtils;
 import com.ruoyi.system.domain.SysUser;
 
@@ -32,6 +33,11 @@ public class OnlineSessionFilter extends AccessControlFilter {
     @Autowired
     private OnlineSessionDAO onlineSessionDAO;
 
+    public OnlineSessionFilter() {
+        // 按/**配置时无需逐段匹配
+        this.pathMatcher = new FastPathMatcher();
+    }
+
     /**
      * 表示是否允许访问；mappedValue就是[urls]配置中拦截器参数部分，如果允许访问返回true，否则false；
      */
@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.ruoyi.common.constant.ShiroConstants;
 import com.ruoyi.framework.shiro.session.OnlineSession;
 import com.ruoyi.framework.shiro.session.OnlineSessionDAO;
+import com.ruoyi.framework.shiro.web.filter.mgt.FastPathMatcher;
 
 /**
  * 同步Session数据到Db
@@ -18,6 +19,11 @@ public class SyncOnlineSessionFilter extends PathMatchingFilter {
     @Autowired
     private OnlineSessionDAO onlineSessionDAO;
 
+    public SyncOnlineSessionFilter() {
+        // 按/**配置时无需逐段匹配
+        this.pathMatcher = new FastPathMatcher();
+    }
+
     /**
      * 同步会话数据到DB 一次请求最多同步一次 防止过多处理 需要放到Shiro过滤器之前
      */
@@ -2,6 +2,7 @@ package com.ruoyi.framework.shiro.web.session;
 
 import com.ruoyi.common.constant.ShiroConstants;
 import com.ruoyi.framework.shiro.session.OnlineSession;
+import com.ruoyi.framework.shiro.session.OnlineSessionDAO;
 import com.ruoyi.framework.util.SpringUtils;
 import com.ruoyi.system.domain.SysUserOnline;
 import com.ruoyi.system.service.ISysUserOnlineService;
@@ -10,6 +11,7 @@ import org.apache.commons.lang3.time.DateUtils;
 import org.apache.shiro.session.ExpiredSessionException;
 import org.apache.shiro.session.InvalidSessionException;
 import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.ValidatingSession;
 import org.apache.shiro.session.mgt.DefaultSessionKey;
 import org.apache.shiro.session.mgt.SessionKey;
 import org.apache.shiro.web.session.mgt.DefaultWebSessionManager;
@@ -27,6 +29,20 @@ import java.util.List;
 @Slf4j
 public class OnlineWebSessionManager extends DefaultWebSessionManager {
 
+    /**
+     * 过期会话清理时每页的条数
+     */
+    private int sweepPageSize = 500;
+
+    /**
+     * 过期会话清理时页与页之间的暂停时间 单位毫秒
+     */
+    private long sweepPauseMillis = 10;
+
+    private volatile int lastSweepCount;
+
+    private volatile long lastSweepMillis;
+
     @Override
     public void setAttribute(SessionKey sessionKey, Object attributeKey, Object value){
         super.setAttribute(sessionKey, attributeKey, value);
@@ -64,6 +80,8 @@ public class OnlineWebSessionManager extends DefaultWebSessionManager {
 
     /**
      * 验证session是否有效 用于删除过期session
+     * 按最后访问时间分页扫描过期会话，每页只执行一次批量删除，页与页之间让出执行权
+     * 内存中的会话由过期时间轮处理，这里只负责清理数据库中残留的会话记录
      */
     @Override
     public void validateSessions() {
@@ -71,41 +89,43 @@ public class OnlineWebSessionManager extends DefaultWebSessionManager {
             log.info("invalidation sessions...");
         }
 
+        long start = System.currentTimeMillis();
         int invalidCount = 0;
 
         int timeout = (int) this.getGlobalSessionTimeout();
         Date expiredDate = DateUtils.addMilliseconds(new Date(), 0 - timeout);
         ISysUserOnlineService userOnlineService = SpringUtils.getBean(ISysUserOnlineService.class);
-        List<SysUserOnline> userOnlineList = userOnlineService.selectOnlineByExpired(expiredDate);
-        // 批量过期删除
-        List<String> needOfflineIdList = new ArrayList<>();
-        for (SysUserOnline userOnline : userOnlineList) {
-            try {
-                SessionKey key = new DefaultSessionKey(userOnline.getSessionId());
-                Session session = retrieveSession(key);
-                if (session != null) {
-                    throw new InvalidSessionException();
+        SysUserOnline last = null;
+        while (true) {
+            List<SysUserOnline> page = userOnlineService.selectOnlineByExpired(expiredDate, last, sweepPageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            List<String> needOfflineIdList = new ArrayList<>(page.size());
+            for (SysUserOnline userOnline : page) {
+                if (isInvalid(userOnline.getSessionId())) {
+                    needOfflineIdList.add(userOnline.getSessionId());
                 }
-            } catch (InvalidSessionException e) {
-                if (log.isDebugEnabled()) {
-                    boolean expired = (e instanceof ExpiredSessionException);
-                    String msg = "Invalidated session with id [" + userOnline.getSessionId() + "]"
-                            + (expired ? " (expired)" : " (stopped)");
-                    log.debug(msg);
+            }
+            if (!needOfflineIdList.isEmpty()) {
+                try {
+                    userOnlineService.batchDeleteOnline(needOfflineIdList);
+                    invalidCount += needOfflineIdList.size();
+                } catch (Exception e) {
+                    log.error("batch delete db session error." , e);
                 }
-                invalidCount++;
-                needOfflineIdList.add(userOnline.getSessionId());
             }
-
-        }
-        if (!needOfflineIdList.isEmpty()) {
-            try {
-                userOnlineService.batchDeleteOnline(needOfflineIdList);
-            } catch (Exception e) {
-                log.error("batch delete db session error." , e);
+            if (page.size() < sweepPageSize) {
+                break;
+            }
+            last = page.get(page.size() - 1);
+            if (!pauseBetweenPages()) {
+                break;
             }
         }
 
+        lastSweepCount = invalidCount;
+        lastSweepMillis = System.currentTimeMillis() - start;
         if (log.isInfoEnabled()) {
             String msg = "Finished invalidation session." ;
             if (invalidCount > 0) {
@@ -113,9 +133,108 @@ public class OnlineWebSessionManager extends DefaultWebSessionManager {
             } else {
                 msg += " No sessions were stopped." ;
             }
+            msg += " Took [" + lastSweepMillis + "]ms.";
             log.info(msg);
         }
+    }
+
+    /**
+     * 处理时间轮上已超时的会话 移出内存并批量删除数据库记录
+     *
+     * @return 过期的会话数量
+     */
+    public int expireTimedOutSessions() {
+        if (!(getSessionDAO() instanceof OnlineSessionDAO)) {
+            return 0;
+        }
+        OnlineSessionDAO sessionDAO = (OnlineSessionDAO) getSessionDAO();
+        List<OnlineSession> expiredSessions = sessionDAO.pollExpiredSessions();
+        if (expiredSessions.isEmpty()) {
+            return 0;
+        }
+        List<String> expiredIdList = new ArrayList<>(expiredSessions.size());
+        for (OnlineSession session : expiredSessions) {
+            session.setExpired(true);
+            try {
+                notifyExpiration(session);
+            } finally {
+                sessionDAO.evict(session);
+            }
+            expiredIdList.add(String.valueOf(session.getId()));
+        }
+        try {
+            SpringUtils.getBean(ISysUserOnlineService.class).batchDeleteOnline(expiredIdList);
+        } catch (Exception e) {
+            log.error("batch delete db session error." , e);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] sessions expired by timing wheel.", expiredIdList.size());
+        }
+        return expiredIdList.size();
+    }
+
+    /**
+     * 判断数据库中过期的会话是否需要删除
+     * 内存中不存在或已失效的会话需要删除，内存中仍然有效的会话只是数据库同步滞后，保留
+     */
+    private boolean isInvalid(String sessionId) {
+        try {
+            SessionKey key = new DefaultSessionKey(sessionId);
+            Session session = retrieveSession(key);
+            if (session instanceof ValidatingSession) {
+                ((ValidatingSession) session).validate();
+            }
+            return false;
+        } catch (InvalidSessionException e) {
+            if (log.isDebugEnabled()) {
+                boolean expired = (e instanceof ExpiredSessionException);
+                String msg = "Invalidated session with id [" + sessionId + "]"
+                        + (expired ? " (expired)" : " (stopped)");
+                log.debug(msg);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 分页之间暂停 避免长时间占用调度线程和数据库
+     *
+     * @return 线程被中断时返回false
+     */
+    private boolean pauseBetweenPages() {
+        if (sweepPauseMillis <= 0) {
+            Thread.yield();
+            return true;
+        }
+        try {
+            Thread.sleep(sweepPauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 上一次清理删除的会话数量
+     */
+    public int getLastSweepCount() {
+        return lastSweepCount;
+    }
+
+    /**
+     * 上一次清理耗时 单位毫秒
+     */
+    public long getLastSweepMillis() {
+        return lastSweepMillis;
+    }
+
+    public void setSweepPageSize(int sweepPageSize) {
+        this.sweepPageSize = sweepPageSize;
+    }
 
+    public void setSweepPauseMillis(long sweepPauseMillis) {
+        this.sweepPauseMillis = sweepPauseMillis;
     }
 
     @Override
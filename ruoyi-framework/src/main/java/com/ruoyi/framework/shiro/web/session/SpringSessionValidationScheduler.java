@@ -39,6 +39,11 @@ public class SpringSessionValidationScheduler implements SessionValidationSchedu
      */
     private long sessionValidationInterval = DEFAULT_SESSION_VALIDATION_INTERVAL;
 
+    /**
+     * 会话过期时间轮的推进间隔 单位毫秒，小于等于0时不启用时间轮
+     */
+    private long expiryTickInterval = 0;
+
     /**
      * Default constructor.
      */
@@ -77,6 +82,16 @@ public class SpringSessionValidationScheduler implements SessionValidationSchedu
         this.sessionValidationInterval = sessionValidationInterval;
     }
 
+    /**
+     * 设置会话过期时间轮的推进间隔，会话管理器为{@link OnlineWebSessionManager}时按该间隔处理超时会话，
+     * 不再依赖全表扫描发现过期会话
+     *
+     * @param expiryTickInterval 推进间隔 单位毫秒
+     */
+    public void setExpiryTickInterval(long expiryTickInterval) {
+        this.expiryTickInterval = expiryTickInterval;
+    }
+
     /**
      * Starts session validation by creating a spring PeriodicTrigger.
      */
@@ -97,6 +112,19 @@ public class SpringSessionValidationScheduler implements SessionValidationSchedu
                 }
             }, 1000, sessionValidationInterval, TimeUnit.MILLISECONDS);
 
+            if (expiryTickInterval > 0 && sessionManager instanceof OnlineWebSessionManager) {
+                OnlineWebSessionManager onlineSessionManager = (OnlineWebSessionManager) sessionManager;
+                executorService.scheduleWithFixedDelay(() -> {
+                    if (enabled) {
+                        try {
+                            onlineSessionManager.expireTimedOutSessions();
+                        } catch (Exception e) {
+                            log.error("Error expiring timed out sessions.", e);
+                        }
+                    }
+                }, expiryTickInterval, expiryTickInterval, TimeUnit.MILLISECONDS);
+            }
+
             this.enabled = true;
 
             if (log.isDebugEnabled()) {
@@ -2,14 +2,12 @@ package com.ruoyi.framework.util;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 
-import org.apache.shiro.SecurityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.ruoyi.common.json.JSON;
 import com.ruoyi.common.utils.IpUtils;
+import com.ruoyi.framework.manager.AccessLogWriter;
 
 /**
  * 处理并记录日志文件
@@ -27,28 +25,12 @@ public class LogUtils {
 
     /**
      * 记录访问日志 [username][jsessionid][ip][accept][UserAgent][url][params][Referer]
+     * 由访问日志写入线程异步格式化并写入，请求经 AccessLogInterceptor 调用
      *
      * @param request
-     * @throws Exception
      */
-    public static void logAccess(HttpServletRequest request) throws Exception {
-        String username = getUsername();
-        String jsessionId = request.getRequestedSessionId();
-        String ip = IpUtils.getIpAddr(request);
-        String accept = request.getHeader("accept");
-        String userAgent = request.getHeader("User-Agent");
-        String url = request.getRequestURI();
-        String params = getParams(request);
-
-        String s = getBlock(username) +
-                getBlock(jsessionId) +
-                getBlock(ip) +
-                getBlock(accept) +
-                getBlock(userAgent) +
-                getBlock(url) +
-                getBlock(params) +
-                getBlock(request.getHeader("Referer"));
-        getAccessLog().info(s);
+    public static void logAccess(HttpServletRequest request) {
+        SpringUtils.getBean(AccessLogWriter.class).record(request, getUsername());
     }
 
     /**
@@ -103,20 +85,18 @@ public class LogUtils {
 
     }
 
-    public static String getBlock(Object msg) {
+    private static String getBlock(Object msg) {
         if (msg == null) {
             msg = "" ;
         }
         return "[" + msg.toString() + "]" ;
     }
 
-    protected static String getParams(HttpServletRequest request) throws Exception {
-        Map<String, String[]> params = request.getParameterMap();
-        return JSON.marshal(params);
-    }
-
+    /**
+     * 当前登录用户名 会话中保存的是用户对象，不能直接转换为字符串
+     */
     protected static String getUsername() {
-        return (String) SecurityUtils.getSubject().getPrincipal();
+        return ShiroUtils.getLoginName();
     }
 
     public static Logger getAccessLog() {
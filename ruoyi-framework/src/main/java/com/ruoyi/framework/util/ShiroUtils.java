@@ -1,9 +1,9 @@
 package com.ruoyi.framework.util;
 
-import com.ruoyi.common.utils.bean.BeanUtils;
+import com.ruoyi.common.utils.IpUtils;
+import com.ruoyi.framework.shiro.realm.SysUserPrincipal;
 import com.ruoyi.framework.shiro.realm.UserRealm;
 import com.ruoyi.system.domain.SysUser;
-import org.apache.commons.lang3.ObjectUtils;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.crypto.SecureRandomNumberGenerator;
 import org.apache.shiro.mgt.RealmSecurityManager;
@@ -11,6 +11,11 @@ import org.apache.shiro.session.Session;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.apache.shiro.subject.Subject;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Arrays;
 
 /**
  * shiro 工具类
@@ -19,6 +24,11 @@ import org.apache.shiro.subject.Subject;
  */
 public class ShiroUtils {
 
+    /**
+     * 请求内缓存当前用户快照的属性名
+     */
+    private static final String CURRENT_USER_ATTRIBUTE = ShiroUtils.class.getName() + ".CURRENT_USER";
+
     private ShiroUtils(){
         throw new IllegalStateException("Utility class");
     }
@@ -35,12 +45,23 @@ public class ShiroUtils {
         getSubject().logout();
     }
 
+    /**
+     * 获取当前登录用户 返回只读快照，需要修改时使用{@link SysUserPrincipal#copyOf(SysUser)}
+     */
     public static SysUser getSysUser() {
-        SysUser user = null;
         Object obj = getSubject().getPrincipal();
-        if (ObjectUtils.allNotNull(obj)) {
-            user = new SysUser();
-            BeanUtils.copyBeanProp(user, obj);
+        if (obj == null || obj instanceof SysUserPrincipal) {
+            return (SysUser) obj;
+        }
+        // 升级前建立的会话中保存的是普通SysUser，每个请求只转换一次
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return SysUserPrincipal.of((SysUser) obj);
+        }
+        SysUserPrincipal user = (SysUserPrincipal) attributes.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (user == null) {
+            user = SysUserPrincipal.of((SysUser) obj);
+            attributes.setAttribute(CURRENT_USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
         }
         return user;
     }
@@ -49,9 +70,13 @@ public class ShiroUtils {
         Subject subject = getSubject();
         PrincipalCollection principalCollection = subject.getPrincipals();
         String realmName = principalCollection.getRealmNames().iterator().next();
-        PrincipalCollection newPrincipalCollection = new SimplePrincipalCollection(user, realmName);
+        PrincipalCollection newPrincipalCollection = new SimplePrincipalCollection(SysUserPrincipal.of(user), realmName);
         // 重新加载Principal
         subject.runAs(newPrincipalCollection);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.removeAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
     }
 
     public static void clearCachedAuthorizationInfo() {
@@ -60,16 +85,37 @@ public class ShiroUtils {
         realm.clearCachedAuthorizationInfo();
     }
 
+    /**
+     * 角色或菜单变更后在后台刷新受影响用户的缓存权限
+     *
+     * @param roleIds 发生变化的角色ID 为空时刷新所有角色
+     */
+    public static void refreshCachedAuthorizationInfo(Long... roleIds) {
+        RealmSecurityManager rsm = (RealmSecurityManager) SecurityUtils.getSecurityManager();
+        UserRealm realm = (UserRealm) rsm.getRealms().iterator().next();
+        realm.refreshAuthorizationInfo(roleIds.length == 0 ? null : Arrays.asList(roleIds));
+    }
+
     public static Long getUserId() {
-        return getSysUser() == null ? null : getSysUser().getUserId();
+        SysUser user = getSysUser();
+        return user == null ? null : user.getUserId();
     }
 
     public static String getLoginName() {
-        return getSysUser() == null ? null : getSysUser().getLoginName();
+        SysUser user = getSysUser();
+        return user == null ? null : user.getLoginName();
     }
 
+    /**
+     * 当前请求的来源地址 与其他地方一样按代理头解析，不为获取地址而创建会话；不在请求线程中时使用会话记录的地址
+     */
     public static String getIp() {
-        return getSubject().getSession().getHost();
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            return IpUtils.getIpAddr(attributes.getRequest());
+        }
+        Session session = getSubject().getSession(false);
+        return session != null ? session.getHost() : null;
     }
 
     public static String getSessionId() {
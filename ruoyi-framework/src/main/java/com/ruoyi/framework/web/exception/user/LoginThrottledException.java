@@ -0,0 +1,14 @@
+package com.ruoyi.framework.web.exception.user;
+
+/**
+ * 登录尝试过于频繁异常类
+ *
+ * @author ruoyi
+ */
+public class LoginThrottledException extends UserException {
+    private static final long serialVersionUID = 1L;
+
+    public LoginThrottledException() {
+        super("user.login.throttled" , null);
+    }
+}
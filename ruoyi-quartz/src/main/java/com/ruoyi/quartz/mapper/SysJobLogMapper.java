@@ -34,6 +34,14 @@ public interface SysJobLogMapper {
      */
     int insertJobLog(SysJobLog jobLog);
 
+    /**
+     * 批量新增任务日志
+     *
+     * @param jobLogs 调度日志列表
+     * @return 结果
+     */
+    int batchInsertJobLog(List<SysJobLog> jobLogs);
+
     /**
      * 批量删除调度日志信息
      *
@@ -33,6 +33,13 @@ public interface ISysJobLogService {
      */
     void addJobLog(SysJobLog jobLog);
 
+    /**
+     * 批量新增任务日志
+     *
+     * @param jobLogs 调度日志列表
+     */
+    void batchInsertJobLog(List<SysJobLog> jobLogs);
+
     /**
      * 批量删除调度日志信息
      *
@@ -2,8 +2,11 @@ package com.ruoyi.quartz.service.impl;
 
 import java.util.List;
 
+import org.apache.commons.lang3.SerializationUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import com.ruoyi.common.journal.AuditJournal;
 import com.ruoyi.common.support.Convert;
 import com.ruoyi.quartz.domain.SysJobLog;
 import com.ruoyi.quartz.mapper.SysJobLogMapper;
@@ -19,9 +22,15 @@ public class SysJobLogServiceImpl implements ISysJobLogService {
 
     private final SysJobLogMapper jobLogMapper;
 
+    /**
+     * 审计日志文件 未启用时为null
+     */
+    private final AuditJournal journal;
+
     @Autowired
-    public SysJobLogServiceImpl(SysJobLogMapper jobLogMapper) {
+    public SysJobLogServiceImpl(SysJobLogMapper jobLogMapper, ObjectProvider<AuditJournal> journal) {
         this.jobLogMapper = jobLogMapper;
+        this.journal = journal.getIfAvailable();
     }
 
     /**
@@ -47,15 +56,31 @@ public class SysJobLogServiceImpl implements ISysJobLogService {
     }
 
     /**
-     * 新增任务日志
+     * 新增任务日志 启用审计日志文件时先追加到日志文件，由回放线程写入数据库
      *
      * @param jobLog 调度日志信息
      */
     @Override
     public void addJobLog(SysJobLog jobLog) {
+        if (journal != null && journal.append(AuditJournal.TYPE_JOB_LOG, SerializationUtils.serialize(jobLog))) {
+            return;
+        }
         jobLogMapper.insertJobLog(jobLog);
     }
 
+    /**
+     * 批量新增任务日志
+     *
+     * @param jobLogs 调度日志列表
+     */
+    @Override
+    public void batchInsertJobLog(List<SysJobLog> jobLogs) {
+        if (jobLogs == null || jobLogs.isEmpty()) {
+            return;
+        }
+        jobLogMapper.batchInsertJobLog(jobLogs);
+    }
+
     /**
      * 批量删除调度日志信息
      *
@@ -0,0 +1,45 @@
+package com.ruoyi.system.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 部门层级关系表 数据层
+ * 每个部门与自身及所有上级部门各有一条记录，depth 为两者之间的层级距离
+ *
+ * @author ruoyi
+ */
+public interface SysDeptClosureMapper {
+    /**
+     * 新增部门的层级关系 复制上级部门的所有祖先并加上自身
+     *
+     * @param deptId   部门ID
+     * @param parentId 上级部门ID
+     * @return 结果
+     */
+    int insertDeptClosure(@Param("deptId") Long deptId, @Param("parentId") Long parentId);
+
+    /**
+     * 断开子树与原上级部门的层级关系 子树内部的关系保留
+     *
+     * @param deptId 子树根部门ID
+     * @return 结果
+     */
+    int deleteSubtreeAncestors(Long deptId);
+
+    /**
+     * 将子树挂到新的上级部门下
+     *
+     * @param deptId   子树根部门ID
+     * @param parentId 新的上级部门ID
+     * @return 结果
+     */
+    int insertSubtreeAncestors(@Param("deptId") Long deptId, @Param("parentId") Long parentId);
+
+    /**
+     * 删除部门的层级关系
+     *
+     * @param deptId 部门ID
+     * @return 结果
+     */
+    int deleteDeptClosureByDeptId(Long deptId);
+}
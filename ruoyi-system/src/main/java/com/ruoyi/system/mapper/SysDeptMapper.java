@@ -60,12 +60,23 @@ public interface SysDeptMapper {
     int updateDept(SysDept dept);
 
     /**
-     * 修改子元素关系
+     * 修改所有下级部门的祖级列表 将原祖级列表前缀替换为新的祖级列表
      *
-     * @param depts 子元素
+     * @param deptId       部门ID
+     * @param oldAncestors 部门原祖级列表
+     * @param ancestors    部门新祖级列表
      * @return 结果
      */
-    int updateDeptChildren(@Param("depts") List<SysDept> depts);
+    int updateDeptChildren(@Param("deptId") Long deptId, @Param("oldAncestors") String oldAncestors,
+                           @Param("ancestors") String ancestors);
+
+    /**
+     * 修改所有下级部门的状态
+     *
+     * @param dept 部门
+     * @return 结果
+     */
+    int updateDeptChildrenStatus(SysDept dept);
 
     /**
      * 根据部门ID查询信息
@@ -17,6 +17,14 @@ public interface SysLogininforMapper {
      */
     void insertLogininfor(SysLogininfor logininfor);
 
+    /**
+     * 批量新增系统登录日志
+     *
+     * @param logininfors 访问日志列表
+     * @return 结果
+     */
+    int batchInsertLogininfor(List<SysLogininfor> logininfors);
+
     /**
      * 查询系统登录日志集合
      *
@@ -41,6 +41,14 @@ public interface SysMenuMapper {
      */
     List<String> selectPermsByUserId(Long userId);
 
+    /**
+     * 根据角色ID集合查询权限
+     *
+     * @param roleIds 角色ID集合
+     * @return 权限列表
+     */
+    List<String> selectPermsByRoleIds(List<Long> roleIds);
+
     /**
      * 根据角色ID查询菜单
      *
@@ -17,6 +17,14 @@ public interface SysOperLogMapper {
      */
     void insertOperlog(SysOperLog operLog);
 
+    /**
+     * 批量新增操作日志
+     *
+     * @param operLogs 操作日志列表
+     * @return 结果
+     */
+    int batchInsertOperlog(List<SysOperLog> operLogs);
+
     /**
      * 查询系统操作日志集合
      *
@@ -41,4 +41,12 @@ public interface SysRoleDeptMapper {
      * @return 结果
      */
     int batchRoleDept(List<SysRoleDept> roleDeptList);
+
+    /**
+     * 查询角色关联的部门
+     *
+     * @param roleIds 角色ID列表
+     * @return 部门ID列表
+     */
+    List<Long> selectDeptIdsByRoleIds(List<Long> roleIds);
 }
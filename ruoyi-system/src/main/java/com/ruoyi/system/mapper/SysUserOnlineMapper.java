@@ -1,8 +1,10 @@
 package com.ruoyi.system.mapper;
 
+import java.util.Date;
 import java.util.List;
 
 import com.ruoyi.system.domain.SysUserOnline;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * 在线用户 数据层
@@ -26,6 +28,14 @@ public interface SysUserOnlineMapper {
      */
     int deleteOnlineById(String sessionId);
 
+    /**
+     * 通过会话序号批量删除信息
+     *
+     * @param sessionIds 会话ID集合
+     * @return 结果
+     */
+    int deleteOnlineByIds(List<String> sessionIds);
+
     /**
      * 保存会话信息
      *
@@ -34,6 +44,14 @@ public interface SysUserOnlineMapper {
      */
     int saveOnline(SysUserOnline online);
 
+    /**
+     * 批量保存会话信息 已存在的会话按主键更新
+     *
+     * @param onlineList 会话信息集合
+     * @return 结果
+     */
+    int batchSaveOnline(List<SysUserOnline> onlineList);
+
     /**
      * 查询会话集合
      *
@@ -49,4 +67,18 @@ public interface SysUserOnlineMapper {
      * @return 会话集合
      */
     List<SysUserOnline> selectOnlineByExpired(String lastAccessTime);
+
+    /**
+     * 按最后访问时间顺序分页查询过期会话（键集分页）
+     *
+     * @param expiredTime 过期时间
+     * @param lastAccessTime 上一页最后一条的访问时间 第一页传null
+     * @param sessionId 上一页最后一条的会话ID
+     * @param pageSize 每页条数
+     * @return 会话集合
+     */
+    List<SysUserOnline> selectOnlineByExpiredPage(@Param("expiredTime") Date expiredTime,
+                                                  @Param("lastAccessTime") Date lastAccessTime,
+                                                  @Param("sessionId") String sessionId,
+                                                  @Param("pageSize") int pageSize);
 }
@@ -45,6 +45,14 @@ public interface ISysMenuService {
      */
     Set<String> selectPermsByUserId(Long userId);
 
+    /**
+     * 根据角色ID集合查询权限
+     *
+     * @param roleIds 角色ID集合
+     * @return 权限列表
+     */
+    Set<String> selectPermsByRoleIds(List<Long> roleIds);
+
     /**
      * 根据角色ID查询菜单
      *
@@ -17,6 +17,13 @@ public interface ISysOperLogService {
      */
     void insertOperlog(SysOperLog operLog);
 
+    /**
+     * 批量新增操作日志
+     *
+     * @param operLogs 操作日志列表
+     */
+    void batchInsertOperlog(List<SysOperLog> operLogs);
+
     /**
      * 查询系统操作日志集合
      *
@@ -35,6 +35,14 @@ public interface ISysRoleService {
      */
     List<SysRole> selectRolesByUserId(Long userId);
 
+    /**
+     * 查询用户拥有的角色
+     *
+     * @param userId 用户ID
+     * @return 角色列表
+     */
+    List<SysRole> selectUserRoles(Long userId);
+
     /**
      * 查询所有角色
      *
@@ -114,4 +122,12 @@ public interface ISysRoleService {
      * @return 结果
      */
     int countUserRoleByRoleId(Long roleId);
+
+    /**
+     * 查询角色的自定义数据权限可见的部门
+     *
+     * @param roleIds 角色ID列表
+     * @return 部门ID列表
+     */
+    List<Long> selectDataScopeDeptIds(List<Long> roleIds);
 }
@@ -40,6 +40,13 @@ public interface ISysUserOnlineService {
      */
     void saveOnline(SysUserOnline online);
 
+    /**
+     * 批量保存会话信息
+     *
+     * @param onlineList 会话信息集合
+     */
+    void batchSaveOnline(List<SysUserOnline> onlineList);
+
     /**
      * 查询会话集合
      *
@@ -62,4 +69,14 @@ public interface ISysUserOnlineService {
      * @return 会话集合
      */
     List<SysUserOnline> selectOnlineByExpired(Date expiredDate);
+
+    /**
+     * 按最后访问时间顺序分页查询过期会话
+     *
+     * @param expiredDate 有效期
+     * @param last 上一页的最后一条会话 第一页传null
+     * @param pageSize 每页条数
+     * @return 会话集合
+     */
+    List<SysUserOnline> selectOnlineByExpired(Date expiredDate, SysUserOnline last, int pageSize);
 }
@@ -5,12 +5,13 @@ import com.ruoyi.common.constant.UserConstants;
 import com.ruoyi.common.exception.BusinessException;
 import com.ruoyi.system.domain.SysDept;
 import com.ruoyi.system.domain.SysRole;
+import com.ruoyi.system.mapper.SysDeptClosureMapper;
 import com.ruoyi.system.mapper.SysDeptMapper;
 import com.ruoyi.system.service.ISysDeptService;
 import org.apache.commons.lang3.ObjectUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.util.CollectionUtils;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -27,9 +28,12 @@ public class SysDeptServiceImpl implements ISysDeptService {
 
     private final SysDeptMapper deptMapper;
 
+    private final SysDeptClosureMapper deptClosureMapper;
+
     @Autowired
-    public SysDeptServiceImpl(SysDeptMapper deptMapper) {
+    public SysDeptServiceImpl(SysDeptMapper deptMapper, SysDeptClosureMapper deptClosureMapper) {
         this.deptMapper = deptMapper;
+        this.deptClosureMapper = deptClosureMapper;
     }
 
     /**
@@ -134,7 +138,9 @@ public class SysDeptServiceImpl implements ISysDeptService {
      * @return 结果
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public int deleteDeptById(Long deptId) {
+        deptClosureMapper.deleteDeptClosureByDeptId(deptId);
         return deptMapper.deleteDeptById(deptId);
     }
 
@@ -145,6 +151,7 @@ public class SysDeptServiceImpl implements ISysDeptService {
      * @return 结果
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public int insertDept(SysDept dept) {
         SysDept info = deptMapper.selectDeptById(dept.getParentId());
         //如果父节点不为"正常"状态,则不允许新增子节点
@@ -152,7 +159,9 @@ public class SysDeptServiceImpl implements ISysDeptService {
             throw new BusinessException("上级部门不为正常状态,新增失败!");
         }
         dept.setAncestors(info.getAncestors() + "," + dept.getParentId());
-        return deptMapper.insertDept(dept);
+        int result = deptMapper.insertDept(dept);
+        deptClosureMapper.insertDeptClosure(dept.getDeptId(), dept.getParentId());
+        return result;
     }
 
     /**
@@ -162,17 +171,24 @@ public class SysDeptServiceImpl implements ISysDeptService {
      * @return 结果
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public int updateDept(SysDept dept) {
         SysDept info = deptMapper.selectDeptById(dept.getParentId());
-        if (ObjectUtils.allNotNull(info)) {
+        SysDept current = deptMapper.selectDeptById(dept.getDeptId());
+        if (ObjectUtils.allNotNull(info, current)) {
             String ancestors = info.getAncestors() + "," + info.getDeptId();
             dept.setAncestors(ancestors);
-            updateDeptChildren(dept, ancestors);
+            if (!ancestors.equals(current.getAncestors())) {
+                moveDept(dept.getDeptId(), info, current.getAncestors(), ancestors);
+            }
         }
         int result = deptMapper.updateDept(dept);
-        if(UserConstants.DEPT_NORMAL.equals(dept.getStatus())){
+        if (UserConstants.DEPT_NORMAL.equals(dept.getStatus())) {
             //如果该部门是启用状态,这启用该部门的所有上级部门
             updateParentDeptStatus(dept);
+        } else if (dept.getStatus() != null) {
+            //如果该部门是停用状态,则停用该部门的所有下级部门
+            deptMapper.updateDeptChildrenStatus(dept);
         }
         return result;
     }
@@ -189,28 +205,20 @@ public class SysDeptServiceImpl implements ISysDeptService {
     }
 
     /**
-     * 修改子元素关系
+     * 将部门及其下级部门移动到新的上级部门下 同时修改层级关系和祖级列表
      *
-     * @param sysDept   部门
-     * @param ancestors 元素列表
+     * @param deptId       部门ID
+     * @param parent       新的上级部门
+     * @param oldAncestors 部门原祖级列表
+     * @param ancestors    部门新祖级列表
      */
-    private void updateDeptChildren(SysDept sysDept, String ancestors) {
-        SysDept dept = new SysDept();
-        dept.setParentId(sysDept.getDeptId());
-        List<SysDept> childrens = deptMapper.selectDeptList(dept);
-        if (!CollectionUtils.isEmpty(childrens)) {
-            childrens.forEach(children -> {
-                children.setAncestors(ancestors + "," + dept.getParentId());
-                if (!UserConstants.DEPT_NORMAL.equals(sysDept.getStatus())) {
-                    children.setStatus(sysDept.getStatus());
-                }
-            });
-            deptMapper.updateDeptChildren(childrens);
-            childrens.stream().filter(children -> !UserConstants.DEPT_NORMAL.equals(children.getStatus()))
-                    .forEach(children ->
-                            updateDeptChildren(children, children.getAncestors())
-                    );
+    private void moveDept(Long deptId, SysDept parent, String oldAncestors, String ancestors) {
+        if (deptId.equals(parent.getDeptId()) || ("," + ancestors + ",").contains("," + deptId + ",")) {
+            throw new BusinessException("上级部门不能是自己或下级部门,修改失败!");
         }
+        deptClosureMapper.deleteSubtreeAncestors(deptId);
+        deptClosureMapper.insertSubtreeAncestors(deptId, parent.getDeptId());
+        deptMapper.updateDeptChildren(deptId, oldAncestors, ancestors);
     }
 
     /**
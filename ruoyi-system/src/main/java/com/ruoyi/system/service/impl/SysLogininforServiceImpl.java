@@ -34,6 +34,19 @@ public class SysLogininforServiceImpl implements ISysLogininforService {
         logininforMapper.insertLogininfor(logininfor);
     }
 
+    /**
+     * 批量新增系统登录日志
+     *
+     * @param logininfors 访问日志列表
+     */
+    @Override
+    public void batchInsertLogininfor(List<SysLogininfor> logininfors) {
+        if (logininfors == null || logininfors.isEmpty()) {
+            return;
+        }
+        logininforMapper.batchInsertLogininfor(logininfors);
+    }
+
     /**
      * 查询系统登录日志集合
      *
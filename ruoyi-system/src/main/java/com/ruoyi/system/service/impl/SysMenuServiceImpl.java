@@ -88,6 +88,23 @@ public class SysMenuServiceImpl implements ISysMenuService {
         return permsSet;
     }
 
+    /**
+     * 根据角色ID集合查询权限
+     *
+     * @param roleIds 角色ID集合
+     * @return 权限列表
+     */
+    @Override
+    public Set<String> selectPermsByRoleIds(List<Long> roleIds) {
+        Set<String> permsSet = new HashSet<>();
+        if (CollectionUtils.isEmpty(roleIds)) {
+            return permsSet;
+        }
+        List<String> perms = menuMapper.selectPermsByRoleIds(roleIds);
+        perms.stream().filter(StringUtils::isNotEmpty).forEach(perm -> permsSet.addAll(Arrays.asList(perm.trim().split(","))));
+        return permsSet;
+    }
+
     /**
      * 根据角色ID查询菜单
      *
@@ -34,6 +34,19 @@ public class SysOperLogServiceImpl implements ISysOperLogService {
         operLogMapper.insertOperlog(operLog);
     }
 
+    /**
+     * 批量新增操作日志
+     *
+     * @param operLogs 操作日志列表
+     */
+    @Override
+    public void batchInsertOperlog(List<SysOperLog> operLogs) {
+        if (operLogs == null || operLogs.isEmpty()) {
+            return;
+        }
+        operLogMapper.batchInsertOperlog(operLogs);
+    }
+
     /**
      * 查询系统操作日志集合
      *
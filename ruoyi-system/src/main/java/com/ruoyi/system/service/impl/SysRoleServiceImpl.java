@@ -15,9 +15,13 @@ import com.ruoyi.system.service.ISysRoleService;
 import org.apache.commons.lang3.ObjectUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.CollectionUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 角色 业务层处理
@@ -35,6 +39,21 @@ public class SysRoleServiceImpl implements ISysRoleService {
 
     private final SysRoleDeptMapper roleDeptMapper;
 
+    /**
+     * 最多缓存的角色组合
+     */
+    private static final int DATA_SCOPE_CACHE_CAPACITY = 1024;
+
+    /**
+     * 角色组合可见的部门 键为排序后的角色ID
+     */
+    private final Map<String, DataScopeDepts> dataScopeCache = new ConcurrentHashMap<>();
+
+    /**
+     * 角色部门关联的版本 修改数据权限后递增，版本不同的缓存不再使用
+     */
+    private final AtomicLong dataScopeVersion = new AtomicLong();
+
     @Autowired
     public SysRoleServiceImpl(SysRoleMapper roleMapper, SysRoleMenuMapper roleMenuMapper, SysUserRoleMapper userRoleMapper, SysRoleDeptMapper roleDeptMapper) {
         this.roleMapper = roleMapper;
@@ -90,6 +109,17 @@ public class SysRoleServiceImpl implements ISysRoleService {
         return roles;
     }
 
+    /**
+     * 查询用户拥有的角色
+     *
+     * @param userId 用户ID
+     * @return 角色列表
+     */
+    @Override
+    public List<SysRole> selectUserRoles(Long userId) {
+        return roleMapper.selectRolesByUserId(userId);
+    }
+
     /**
      * 查询所有角色
      *
@@ -181,7 +211,29 @@ public class SysRoleServiceImpl implements ISysRoleService {
         // 删除角色与部门关联
         roleDeptMapper.deleteRoleDeptByRoleId(role.getRoleId());
         // 新增角色和部门信息（数据权限）
-        return insertRoleDept(role);
+        int rows = insertRoleDept(role);
+        // 数据权限已变化 清除缓存
+        invalidateDataScopeCache();
+        return rows;
+    }
+
+    /**
+     * 清除数据权限缓存 在事务中时等事务结束后再清除，事务期间其他请求仍可能读到并缓存提交前的数据；
+     * 回滚时同样清除，事务内查询缓存的未提交数据不再使用
+     */
+    private void invalidateDataScopeCache() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dataScopeVersion.incrementAndGet();
+            dataScopeCache.clear();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                dataScopeVersion.incrementAndGet();
+                dataScopeCache.clear();
+            }
+        });
     }
 
     /**
@@ -266,4 +318,43 @@ public class SysRoleServiceImpl implements ISysRoleService {
     public int countUserRoleByRoleId(Long roleId) {
         return userRoleMapper.countUserRoleByRoleId(roleId);
     }
+
+    /**
+     * 查询角色的自定义数据权限可见的部门 按角色组合缓存，修改数据权限时失效
+     *
+     * @param roleIds 角色ID列表
+     * @return 部门ID列表
+     */
+    @Override
+    public List<Long> selectDataScopeDeptIds(List<Long> roleIds) {
+        List<Long> sorted = new ArrayList<>(roleIds);
+        Collections.sort(sorted);
+        String key = sorted.toString();
+        long version = dataScopeVersion.get();
+        DataScopeDepts cached = dataScopeCache.get(key);
+        if (cached != null && cached.version == version) {
+            return cached.deptIds;
+        }
+        List<Long> deptIds = Collections.unmodifiableList(roleDeptMapper.selectDeptIdsByRoleIds(sorted));
+        if (dataScopeCache.size() >= DATA_SCOPE_CACHE_CAPACITY) {
+            dataScopeCache.clear();
+        }
+        // 查询前读取的版本 查询期间数据权限被修改时该缓存不会被使用
+        dataScopeCache.put(key, new DataScopeDepts(version, deptIds));
+        return deptIds;
+    }
+
+    /**
+     * 缓存的可见部门
+     */
+    private static final class DataScopeDepts {
+        private final long version;
+
+        private final List<Long> deptIds;
+
+        DataScopeDepts(long version, List<Long> deptIds) {
+            this.version = version;
+            this.deptIds = deptIds;
+        }
+    }
 }
@@ -4,7 +4,6 @@ import com.ruoyi.common.utils.DateUtils;
 import com.ruoyi.system.domain.SysUserOnline;
 import com.ruoyi.system.mapper.SysUserOnlineMapper;
 import com.ruoyi.system.service.ISysUserOnlineService;
-import org.apache.commons.lang3.ObjectUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -44,10 +43,7 @@ public class SysUserOnlineServiceImpl implements ISysUserOnlineService {
      */
     @Override
     public void deleteOnlineById(String sessionId) {
-        SysUserOnline userOnline = selectOnlineById(sessionId);
-        if (ObjectUtils.allNotNull(userOnline)) {
-            userOnlineDao.deleteOnlineById(sessionId);
-        }
+        userOnlineDao.deleteOnlineById(sessionId);
     }
 
     /**
@@ -57,12 +53,10 @@ public class SysUserOnlineServiceImpl implements ISysUserOnlineService {
      */
     @Override
     public void batchDeleteOnline(List<String> sessions) {
-        sessions.forEach(sessionId -> {
-            SysUserOnline userOnline = selectOnlineById(sessionId);
-            if (ObjectUtils.allNotNull(userOnline)) {
-                userOnlineDao.deleteOnlineById(sessionId);
-            }
-        });
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+        userOnlineDao.deleteOnlineByIds(sessions);
     }
 
     /**
@@ -75,6 +69,19 @@ public class SysUserOnlineServiceImpl implements ISysUserOnlineService {
         userOnlineDao.saveOnline(online);
     }
 
+    /**
+     * 批量保存会话信息
+     *
+     * @param onlineList 会话信息集合
+     */
+    @Override
+    public void batchSaveOnline(List<SysUserOnline> onlineList) {
+        if (onlineList == null || onlineList.isEmpty()) {
+            return;
+        }
+        userOnlineDao.batchSaveOnline(onlineList);
+    }
+
     /**
      * 查询会话集合
      *
@@ -105,4 +112,19 @@ public class SysUserOnlineServiceImpl implements ISysUserOnlineService {
         String lastAccessTime = DateUtils.parseDateToStr(DateUtils.YYYY_MM_DD_HH_MM_SS, expiredDate);
         return userOnlineDao.selectOnlineByExpired(lastAccessTime);
     }
+
+    /**
+     * 按最后访问时间顺序分页查询过期会话
+     *
+     * @param expiredDate 失效日期
+     * @param last 上一页的最后一条会话
+     * @param pageSize 每页条数
+     */
+    @Override
+    public List<SysUserOnline> selectOnlineByExpired(Date expiredDate, SysUserOnline last, int pageSize) {
+        if (last == null) {
+            return userOnlineDao.selectOnlineByExpiredPage(expiredDate, null, null, pageSize);
+        }
+        return userOnlineDao.selectOnlineByExpiredPage(expiredDate, last.getLastAccessTime(), last.getSessionId(), pageSize);
+    }
 }
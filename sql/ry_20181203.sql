@@ -619,4 +619,27 @@ create table sys_notice (
 -- 初始化-公告信息表数据
 -- ----------------------------
 insert into sys_notice values('1', '温馨提醒：2018-07-01 若依新版本发布啦', '2', '新版本内容', '0', 'admin', '2018-03-16 11-33-00', 'ry', '2018-03-16 11-33-00', '管理员');
-insert into sys_notice values('2', '维护通知：2018-07-01 若依系统凌晨维护', '1', '维护内容',   '0', 'admin', '2018-03-16 11-33-00', 'ry', '2018-03-16 11-33-00', '管理员');
\ No newline at end of file
+insert into sys_notice values('2', '维护通知：2018-07-01 若依系统凌晨维护', '1', '维护内容',   '0', 'admin', '2018-03-16 11-33-00', 'ry', '2018-03-16 11-33-00', '管理员');
+
+-- ----------------------------
+-- 19、部门层级关系表
+-- ----------------------------
+drop table if exists sys_dept_closure;
+create table sys_dept_closure (
+  ancestor_id 		int(11) 		not null 				   comment '祖先部门ID',
+  descendant_id 	int(11) 		not null 				   comment '后代部门ID',
+  depth 			int(4) 			not null 				   comment '层级距离（0代表自身）',
+  primary key (ancestor_id, descendant_id),
+  key idx_dept_closure_descendant (descendant_id, depth)
+) engine=innodb default charset=utf8 comment = '部门层级关系表';
+
+-- ----------------------------
+-- 初始化-部门层级关系表数据 由部门表的祖级列表生成，已有数据升级时同样执行
+-- ----------------------------
+insert into sys_dept_closure (ancestor_id, descendant_id, depth)
+select d.dept_id, d.dept_id, 0 from sys_dept d;
+insert into sys_dept_closure (ancestor_id, descendant_id, depth)
+select a.dept_id, d.dept_id,
+       (length(d.ancestors) - length(replace(d.ancestors, ',', ''))) - (length(a.ancestors) - length(replace(a.ancestors, ',', '')))
+from sys_dept d
+     inner join sys_dept a on find_in_set(a.dept_id, d.ancestors);